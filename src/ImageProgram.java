@@ -1,11 +1,26 @@
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import controller.BatchRunner;
+import controller.DiskCache;
+import controller.ExecutionSettings;
 import controller.ImageControllerGUI;
 import controller.ImageControllerGUIImpl;
 import controller.ImageProcessorController;
 import controller.ImageProcessorControllerImpl;
+import controller.ResultCache;
+import model.BorderMode;
+import model.BudgetedImageStorage;
+import model.ConcurrentImageStorage;
 import model.Image;
 import model.ImageModel;
+import model.ImageStorage;
+import model.ImageStorageImpl;
 import view.ImageGUIView;
 import view.ImageProcessorView;
 import view.ImageProcessorViewImpl;
@@ -34,11 +49,36 @@ public class ImageProgram {
       controller = new ImageProcessorControllerImpl(view, readable);
       controller.runProcessor();
     }
-    else if (args.length == 2 && args[0].equals("-file")) {
+    else if (args.length >= 2 && args[0].equals("-file")) {
       Readable readable = new StringReader(args[0] + " " + args[1]);
       view = new ImageProcessorViewImpl();
-      controller = new ImageProcessorControllerImpl(view, readable);
+      Options options = Options.read(args, 2);
+      if (options == null) {
+        return;
+      }
+      ImageStorage images = options.newStorage();
+      controller = new ImageProcessorControllerImpl(view, readable, images, options.settings);
       controller.runProcessor();
+      options.printStatistics(images);
+    }
+    else if (args.length >= 4 && args[0].equals("-batch")) {
+      view = new ImageProcessorViewImpl();
+      Options options = Options.read(args, 4);
+      if (options == null) {
+        return;
+      }
+      try {
+        List<String> template = Files.readAllLines(Path.of(args[1]), Charset.defaultCharset());
+        BatchRunner batch = new BatchRunner(template, BatchRunner.findInputs(args[2]),
+                new File(args[3]), options.settings, options::newStorage, options.workers,
+                options.pipelined);
+        batch.run(view);
+      }
+      catch (IOException | IllegalArgumentException e) {
+        System.out.println("JAR file batch was not inputted correctly: " + e.getMessage());
+        return;
+      }
+      options.printStatistics(null);
     }
     else if (args.length == 0) {
       model = new Image();
@@ -50,4 +90,138 @@ public class ImageProgram {
       System.out.println("JAR file script was not inputted correctly");
     }
   }
+
+  /**
+   * The options that can follow a script file or a batch, which set up how commands are run.
+   */
+  private static class Options {
+    private final ExecutionSettings settings;
+    private long budget;
+    private ResultCache cache;
+    private DiskCache disk;
+    private int workers;
+    private boolean pipelined;
+
+    /**
+     * Creates the default options, with no budget and no caches.
+     */
+    private Options() {
+      this.settings = new ExecutionSettings();
+      this.budget = -1;
+      this.workers = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Reads the options given by the user, printing a message if they are wrong.
+     *
+     * @param args the arguments inputted by the user
+     * @param start the index of the first option
+     * @return the options, or null if they weren't inputted correctly
+     */
+    private static Options read(String[] args, int start) {
+      Options options = new Options();
+      ExecutionSettings settings = options.settings;
+      try {
+        for (int i = start; i < args.length; i++) {
+          switch (args[i]) {
+            case "-budget":
+              // the budget is given in megabytes
+              options.budget = Long.parseLong(args[i + 1]) * 1024 * 1024;
+              if (options.budget < 0) {
+                throw new IllegalArgumentException("Budget must not be negative");
+              }
+              i++;
+              break;
+            case "-deferred":
+              settings.setDeferred(true);
+              break;
+            case "-fold":
+              settings.setDeferred(true);
+              settings.setFoldingColors(true);
+              break;
+            case "-cache":
+              // the cache size is given in megabytes
+              options.cache = new ResultCache(Long.parseLong(args[i + 1]) * 1024 * 1024);
+              settings.setResultCache(options.cache);
+              i++;
+              break;
+            case "-disk-cache":
+              // the directory comes first, then its size limit in megabytes
+              options.disk = new DiskCache(new File(args[i + 1]),
+                      Long.parseLong(args[i + 2]) * 1024 * 1024);
+              settings.setDiskCache(options.disk);
+              i = i + 2;
+              break;
+            case "-threads":
+              settings.setParallelism(Integer.parseInt(args[i + 1]));
+              i++;
+              break;
+            case "-workers":
+              options.workers = Integer.parseInt(args[i + 1]);
+              if (options.workers < 1) {
+                throw new IllegalArgumentException("There must be at least one worker");
+              }
+              i++;
+              break;
+            case "-fixed-point":
+              settings.setFixedPointFilters(true);
+              break;
+            case "-border":
+              settings.setBorderMode(BorderMode.of(args[i + 1]));
+              i++;
+              break;
+            case "-pipeline":
+              options.pipelined = true;
+              break;
+            case "-concurrent":
+              settings.setConcurrentScripts(true);
+              break;
+            case "-optimize":
+              settings.setOptimizingScripts(true);
+              break;
+            default:
+              System.out.println("Unrecognized option: " + args[i]);
+              return null;
+          }
+        }
+      }
+      catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+        System.out.println("JAR file script options were not inputted correctly");
+        return null;
+      }
+      return options;
+    }
+
+    /**
+     * Creates a storage for images as asked for by these options.
+     *
+     * @return a budgeted storage if a budget was given, otherwise a plain storage that is safe to
+     *      share between threads if lines of scripts run at the same time
+     */
+    private ImageStorage newStorage() {
+      if (this.budget >= 0) {
+        return new BudgetedImageStorage(this.budget);
+      }
+      // lines running at the same time need a storage that is safe to share between threads
+      return this.settings.isConcurrentScripts() ? new ConcurrentImageStorage()
+              : new ImageStorageImpl();
+    }
+
+    /**
+     * Prints the statistics of the storage and the caches that were asked for.
+     *
+     * @param images the storage that was used, or null if there were several
+     */
+    private void printStatistics(ImageStorage images) {
+      if (images instanceof BudgetedImageStorage) {
+        System.out.println(System.lineSeparator() + "Image storage: " + images);
+      }
+      if (this.cache != null) {
+        System.out.println(System.lineSeparator() + "Result cache: " + this.cache);
+      }
+      if (this.disk != null) {
+        System.out.println(System.lineSeparator() + "Disk cache: " + this.disk);
+      }
+    }
+  }
 }
\ No newline at end of file
@@ -1,10 +1,15 @@
 package controller;
 
 import java.io.IOException;
-import model.Image;
+import model.ComputedTiledImage;
+import model.DeferredImage;
+import model.DerivedImage;
 import model.ImageModel;
 import model.ImageStorage;
-import model.Pixel;
+import model.PackedImage;
+import model.PointOperation;
+import model.TiledImage;
+import model.WritableImageModel;
 import view.ImageProcessorView;
 
 /**
@@ -18,6 +23,7 @@ public abstract class AImageProcessorCommand implements ImageProcessorCommand {
   protected String messageToUser;
   protected ImageStorage images;
   protected String maskedImage;
+  protected ExecutionSettings settings = new ExecutionSettings();
 
   /**
    * Default constructor, can be used to call specific methods that don't require arguments.
@@ -95,10 +101,18 @@ public abstract class AImageProcessorCommand implements ImageProcessorCommand {
     this.maskedImage = maskedImage;
   }
 
+  @Override
+  public void setSettings(ExecutionSettings settings) {
+    if (settings == null) {
+      throw new IllegalArgumentException("Settings can't be null");
+    }
+    this.settings = settings;
+  }
+
   @Override
   public void checkStorage() {
     // if the specified image name isn't in the processor at all
-    if (!(this.images.getImages().containsKey(this.originalImage))) {
+    if (!(this.images.containsImage(this.originalImage))) {
       try {
         this.view.renderMessage(this.messageToUser);
       }
@@ -109,7 +123,7 @@ public abstract class AImageProcessorCommand implements ImageProcessorCommand {
     // first, check if the maskedImage name is empty, if it is, the user only specified
     // the number of arguments needed for a script not requiring a masked image
     else if (!this.maskedImage.isEmpty()) {
-      if (!this.images.getImages().containsKey(this.maskedImage)) {
+      if (!this.images.containsImage(this.maskedImage)) {
         // check if the storage contains the maskedImage name
         try {
           this.view.renderMessage("Unable to locate the specified masked image");
@@ -120,36 +134,236 @@ public abstract class AImageProcessorCommand implements ImageProcessorCommand {
       }
       else {
         // make a change to the model, requires a masked image
-        ImageModel newModel = this.makeModelChangeWithMask(this.images.getImages().get(this.originalImage));
+        ImageModel newModel = this.changeWithCache(this.images.getImage(this.originalImage),
+                this.images.getImage(this.maskedImage));
         this.images.addImage(this.nameOfNewImage, newModel);
       }
     }
     else {
       // make a change to the model, doesn't require a masked image
-      ImageModel newModel = this.makeModelChange(this.images.getImages().get(this.originalImage));
+      ImageModel newModel = this.changeWithCache(this.images.getImage(this.originalImage), null);
       this.images.addImage(this.nameOfNewImage, newModel);
     }
   }
 
+  @Override
+  public String cacheKey() {
+    return null;
+  }
+
+  /**
+   * Makes the change of this command to an image, handing back an earlier result if the settings
+   * have a result cache in memory or a cache on disk that remembers one. Results are only
+   * remembered when the command has a cache key and actually made a new image, so changes that
+   * failed are never remembered.
+   *
+   * @param model the image to be changed
+   * @param mask the mask to apply the change with, or null to change the whole image
+   * @return the new image
+   */
+  private ImageModel changeWithCache(ImageModel model, ImageModel mask) {
+    ResultCache cache = this.settings.getResultCache();
+    DiskCache disk = this.settings.getDiskCache();
+    String key = this.cacheKey();
+    if ((cache == null && disk == null) || key == null) {
+      return this.change(model, mask);
+    }
+    // deferred and folded results aren't interchangeable with plain ones
+    key = key + (this.settings.isDeferred() ? " deferred" : "")
+            + (this.settings.isFoldingColors() ? " folded" : "");
+    ImageModel result = cache == null ? null : cache.get(key, model, mask);
+    if (result != null) {
+      return result;
+    }
+    String diskKey = disk == null ? null : disk.deriveKey(model, mask, key);
+    if (diskKey != null) {
+      result = disk.get(diskKey, model.getFilepath());
+    }
+    if (result == null) {
+      result = this.change(model, mask);
+      if (result == null || result == model) {
+        return result;
+      }
+      // images derived from others are cheap to make again, so only real pixels are written
+      if (diskKey != null && !(result instanceof DerivedImage)) {
+        disk.put(diskKey, result);
+      }
+    }
+    if (diskKey != null) {
+      disk.remember(result, diskKey);
+    }
+    if (cache != null) {
+      cache.put(key, model, mask, result);
+    }
+    return result;
+  }
+
+  /**
+   * Makes the change of this command to an image, with or without a mask.
+   *
+   * @param model the image to be changed
+   * @param mask the mask to apply the change with, or null to change the whole image
+   * @return the new image
+   */
+  private ImageModel change(ImageModel model, ImageModel mask) {
+    return mask == null ? this.makeModelChange(model) : this.makeModelChangeWithMask(model);
+  }
+
   @Override
   public ImageModel makeModelChangeWithMask(ImageModel model) {
     ImageModel maskImage = new Mask().makeModelChange(model);
     ImageModel modified = this.makeModelChange(model);
+    if (modified == model) {
+      // the change failed, so there is nothing to apply through the mask
+      return model;
+    }
 
-    Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
-    for (int i = 0; i < maskImage.getHeight(); i++) {
-      for (int j = 0; j < maskImage.getWidth(); j++) {
-        Pixel curr = maskImage.getPixel(i, j);
-        if (curr.getRed() < 127 && curr.getBlue() < 127 && curr.getGreen() < 127) {
-          // these pixels are more black than white, so these pixels should reflect the change
-          newContents[i][j] = modified.getPixel(i, j);
-        }
-        else {
-          newContents[i][j] = model.getPixel(i, j);
+    WritableImageModel newContents = this.createImage(model.getHeight(), model.getWidth(),
+            model.getFilepath());
+    this.forEachBand(model, (fromRow, toRow) -> {
+      int[] maskRow = new int[model.getWidth()];
+      int[] modifiedRow = new int[model.getWidth()];
+      int[] originalRow = new int[model.getWidth()];
+      for (int i = fromRow; i < toRow; i++) {
+        maskImage.getRow(i, maskRow);
+        modified.getRow(i, modifiedRow);
+        model.getRow(i, originalRow);
+        for (int j = 0; j < maskImage.getWidth(); j++) {
+          int curr = maskRow[j];
+          if (PackedImage.red(curr) < 127 && PackedImage.blue(curr) < 127
+                  && PackedImage.green(curr) < 127) {
+            // these pixels are more black than white, so these pixels should reflect the change
+            originalRow[j] = modifiedRow[j];
+          }
         }
+        newContents.setRow(i, originalRow);
       }
+    });
+    return newContents;
+  }
+
+  /**
+   * Creates a blank image for a command to write its result into. Every command creates its new
+   * image through here so that they all share the same compact storage for pixels, and so that
+   * images too big for the heap are given memory-mapped storage.
+   *
+   * @param height the height of the new image
+   * @param width the width of the new image
+   * @param filepath the path to the original image on the user's device
+   * @return a blank image with the given dimensions
+   */
+  protected WritableImageModel createImage(int height, int width, String filepath) {
+    return ImageUtil.createImage(height, width, filepath);
+  }
+
+  /**
+   * Runs a point operation over every pixel of an image, in bands of rows at the same time. If the
+   * settings defer
+   * point operations, the operation is only added to a deferred image and nothing is run yet.
+   * Tiled images get a tiled result that only runs the operation on a tile once it's read.
+   *
+   * @param model the image to run the operation on
+   * @param operation the operation to be run on each pixel
+   * @return the new image
+   */
+  protected ImageModel applyPointOperation(ImageModel model, PointOperation operation) {
+    if (this.settings.isDeferred()) {
+      return DeferredImage.of(model, operation);
+    }
+    if (model instanceof TiledImage) {
+      return new ComputedTiledImage((TiledImage) model, operation, ImageUtil.MAX_RESIDENT_TILES);
+    }
+    return this.mapRows(model, (i, row) -> operation.applyToRow(row, row.length));
+  }
+
+  /**
+   * Returns whether color operations created by this command must give exactly the same results
+   * as running each command on its own, which is the case unless the settings fold deferred color
+   * operations.
+   *
+   * @return true if color operations must be exact
+   */
+  protected boolean isExactColor() {
+    return !(this.settings.isDeferred() && this.settings.isFoldingColors());
+  }
+
+  /**
+   * Copies an image into real storage if it's derived from other images, such as a flipped view.
+   * Commands that read each pixel many times call this first so that the pixels are only worked
+   * out once.
+   *
+   * @param model the image that is about to be read
+   * @return the same image if it already stores its pixels, or a copy that does
+   */
+  protected ImageModel materialize(ImageModel model) {
+    if (!(model instanceof DerivedImage)) {
+      return model;
     }
-    return new Image(newContents, model.getFilepath());
+    return this.mapRows(model, (i, row) -> {
+      // the row is already copied, nothing else to do
+    });
+  }
+
+  /**
+   * Work done on a single row of an image, which changes the pixels of the row in place.
+   */
+  protected interface RowKernel {
+
+    /**
+     * Changes the pixels of a row.
+     *
+     * @param row the index of the row in the image
+     * @param pixels the packed colors of the row, changed in place
+     */
+    void apply(int row, int[] pixels);
+  }
+
+  /**
+   * Splits the rows of an image into bands and works on them at the same time, using the threads
+   * given by the settings. Each band must only write the rows it's given.
+   *
+   * @param height the number of rows
+   * @param width the number of pixels in each row
+   * @param band the work done on each band of rows
+   */
+  protected void forEachBand(int height, int width, RowBandExecutor.RowBand band) {
+    this.settings.getExecutor().forEachBand(height, width, band);
+  }
+
+  /**
+   * Splits the rows of an image that is being read into bands like the method above. The rows of
+   * a tiled image are split along the rows of its tiles, so that each band produces its own tiles.
+   *
+   * @param model the image whose rows are read
+   * @param band the work done on each band of rows
+   */
+  protected void forEachBand(ImageModel model, RowBandExecutor.RowBand band) {
+    int rowAlignment = model instanceof TiledImage ? ((TiledImage) model).getTileSize() : 1;
+    this.settings.getExecutor().forEachBand(model.getHeight(), model.getWidth(), rowAlignment,
+            band);
+  }
+
+  /**
+   * Creates a new image out of an existing one, one row at a time. Every row of the existing image
+   * is read, changed by the kernel, and written to the same row of the new image, with bands of
+   * rows being worked on at the same time.
+   *
+   * @param model the existing image
+   * @param kernel the work done on each row
+   * @return the new image
+   */
+  protected WritableImageModel mapRows(ImageModel model, RowKernel kernel) {
+    WritableImageModel newContents = this.createImage(model.getHeight(), model.getWidth(),
+            model.getFilepath());
+    this.forEachBand(model, (fromRow, toRow) -> {
+      int[] row = new int[model.getWidth()];
+      for (int i = fromRow; i < toRow; i++) {
+        model.getRow(i, row);
+        kernel.apply(i, row);
+        newContents.setRow(i, row);
+      }
+    });
+    return newContents;
   }
 
   /**
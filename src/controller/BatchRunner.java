@@ -0,0 +1,445 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import model.ImageStorage;
+import view.BufferedView;
+import view.ImageProcessorView;
+
+/**
+ * Runs the same script over many image files in a single run of the program, with a bounded
+ * number of files being worked on at the same time. The script is a template where {input} stands
+ * for the path of the file, {name} for its name without the extension, {ext} for its extension and
+ * {output} for the output directory. A file whose script shows any message, or fails outright, is
+ * reported without stopping the other files.
+ *
+ * <p>A batch can also be run as a pipeline, where the loads at the start of the template, the
+ * commands in the middle and the saves at the end are three stages with their own threads. Files
+ * are handed from one stage to the next through bounded queues, so reading the next file,
+ * processing the current one and writing the previous one all happen at the same time, and a
+ * stage that falls behind makes the stages before it wait instead of piling up images in memory.
+ */
+public class BatchRunner {
+  private final List<String> template;
+  private final List<File> inputs;
+  private final File outputDirectory;
+  private final ExecutionSettings settings;
+  private final Supplier<ImageStorage> storages;
+  private final int workers;
+  private final boolean pipelined;
+
+  /**
+   * A file on its way through the stages of a pipeline, along with everything its script needs.
+   */
+  private static class Job {
+    private final int index;
+    private final File input;
+    private final BufferedView messages;
+    private final ImageProcessorControllerImpl controller;
+    private boolean failed;
+
+    /**
+     * Creates the job for a file, with its own storage and messages.
+     *
+     * @param index the position of the file in the batch
+     * @param input the file
+     * @param images the storage for the images of the file
+     * @param settings the settings the script runs with
+     */
+    private Job(int index, File input, ImageStorage images, ExecutionSettings settings) {
+      this.index = index;
+      this.input = input;
+      this.messages = new BufferedView();
+      this.controller = new ImageProcessorControllerImpl(this.messages, new StringReader(""),
+              images, settings);
+    }
+  }
+
+  /**
+   * Creates a batch of files to run a script template over.
+   *
+   * @param template the lines of the script template
+   * @param inputs the files to run the template over
+   * @param outputDirectory the directory {output} stands for, created if it doesn't exist
+   * @param settings the settings every script runs with
+   * @param storages creates a fresh storage for the images of each file
+   * @param workers the number of files worked on at the same time
+   * @throws IllegalArgumentException if a parameter is null, the number of workers is less than 1,
+   *      or the output directory can't be created
+   */
+  public BatchRunner(List<String> template, List<File> inputs, File outputDirectory,
+                     ExecutionSettings settings, Supplier<ImageStorage> storages, int workers)
+          throws IllegalArgumentException {
+    this(template, inputs, outputDirectory, settings, storages, workers, false);
+  }
+
+  /**
+   * Creates a batch of files to run a script template over, either with every file running its
+   * whole script on one worker, or as a pipeline.
+   *
+   * @param template the lines of the script template
+   * @param inputs the files to run the template over
+   * @param outputDirectory the directory {output} stands for, created if it doesn't exist
+   * @param settings the settings every script runs with
+   * @param storages creates a fresh storage for the images of each file
+   * @param workers the number of files worked on at the same time, or in every stage of a pipeline
+   * @param pipelined true to run the loads, the processing and the saves as separate stages
+   * @throws IllegalArgumentException if a parameter is null, the number of workers is less than 1,
+   *      or the output directory can't be created
+   */
+  public BatchRunner(List<String> template, List<File> inputs, File outputDirectory,
+                     ExecutionSettings settings, Supplier<ImageStorage> storages, int workers,
+                     boolean pipelined) throws IllegalArgumentException {
+    if (template == null || inputs == null || outputDirectory == null || settings == null
+            || storages == null) {
+      throw new IllegalArgumentException("At least one of the given parameters was null");
+    }
+    if (workers < 1) {
+      throw new IllegalArgumentException("There must be at least one worker");
+    }
+    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+      throw new IllegalArgumentException("Couldn't create the output directory "
+              + outputDirectory);
+    }
+    this.template = template;
+    this.inputs = inputs;
+    this.outputDirectory = outputDirectory;
+    this.settings = settings;
+    this.storages = storages;
+    this.workers = workers;
+    this.pipelined = pipelined;
+  }
+
+  /**
+   * Finds the files a batch runs over. A directory stands for every file in it, and anything else
+   * is a glob pattern, such as res/*.png, matched against the names of the files in its directory.
+   *
+   * @param pattern a directory or a glob pattern
+   * @return the matching files, sorted by path
+   * @throws IllegalArgumentException if the directory of the pattern doesn't exist
+   */
+  public static List<File> findInputs(String pattern) throws IllegalArgumentException {
+    File file = new File(pattern);
+    File directory;
+    PathMatcher matcher;
+    if (file.isDirectory()) {
+      directory = file;
+      matcher = path -> true;
+    }
+    else {
+      directory = file.getAbsoluteFile().getParentFile();
+      matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+    }
+    File[] files = directory == null ? null : directory.listFiles(
+            candidate -> candidate.isFile() && matcher.matches(candidate.toPath().getFileName()));
+    if (files == null) {
+      throw new IllegalArgumentException("Directory of " + pattern + " not found!");
+    }
+    Arrays.sort(files);
+    return Arrays.asList(files);
+  }
+
+  /**
+   * Fills in lines of the template for a single file.
+   *
+   * @param input the file
+   * @param template the lines of the template to fill in
+   * @return the lines of the script for the file
+   */
+  List<String> fill(File input, List<String> template) {
+    String fileName = input.getName();
+    int dot = fileName.lastIndexOf('.');
+    String name = dot < 0 ? fileName : fileName.substring(0, dot);
+    String ext = dot < 0 ? "" : fileName.substring(dot + 1);
+    List<String> lines = new ArrayList<>();
+    for (String line : template) {
+      lines.add(line.replace("{input}", input.getPath()).replace("{name}", name)
+              .replace("{ext}", ext).replace("{output}", this.outputDirectory.getPath()));
+    }
+    return lines;
+  }
+
+  /**
+   * Runs the template over every file, then reports every file that failed, in the order of the
+   * files, followed by how long the whole batch took.
+   *
+   * @param report the view to report to
+   * @return the number of files that failed
+   * @throws IllegalStateException if the report couldn't be rendered
+   */
+  public int run(ImageProcessorView report) throws IllegalStateException {
+    long start = System.nanoTime();
+    List<List<String>> results = this.pipelined ? this.runPipelined() : this.runPooled();
+    try {
+      int failures = 0;
+      long bytes = 0;
+      for (int i = 0; i < this.inputs.size(); i++) {
+        bytes = bytes + this.inputs.get(i).length();
+        // a file without any messages at all never got to the end of its script
+        List<String> messages = results.get(i) == null
+                ? List.of("Stopped before the script finished") : results.get(i);
+        if (!messages.isEmpty()) {
+          failures++;
+          report.renderMessage("Failed " + this.inputs.get(i) + ": "
+                  + String.join(" ", messages) + System.lineSeparator());
+        }
+      }
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      report.renderMessage(String.format("Processed %d files (%d failed) in %.2f s,"
+              + " %.2f files/s, %.2f MB/s of input%n", this.inputs.size(), failures, seconds,
+              this.inputs.size() / seconds, bytes / 1e6 / seconds));
+      return failures;
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't render the batch report");
+    }
+  }
+
+  /**
+   * Runs the whole template for every file on a pool of workers.
+   *
+   * @return the messages of every file, in the order of the files
+   * @throws IllegalStateException if the batch was interrupted
+   */
+  private List<List<String>> runPooled() throws IllegalStateException {
+    ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+    List<Future<List<String>>> futures = new ArrayList<>();
+    try {
+      for (File input : this.inputs) {
+        futures.add(pool.submit(() -> this.runFile(input)));
+      }
+      List<List<String>> results = new ArrayList<>();
+      for (Future<List<String>> future : futures) {
+        try {
+          results.add(future.get());
+        }
+        catch (ExecutionException e) {
+          results.add(List.of(String.valueOf(e.getCause().getMessage())));
+        }
+      }
+      return results;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the batch");
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the template for every file as a pipeline of three stages: the loads at the start of the
+   * template, the commands in the middle, and the saves at the end. Each stage has its own
+   * workers, and the queues between the stages hold at most as many files as there are workers.
+   *
+   * @return the messages of every file, in the order of the files
+   * @throws IllegalStateException if the batch was interrupted
+   */
+  private List<List<String>> runPipelined() throws IllegalStateException {
+    List<String> template = this.template;
+    ExecutionSettings settings = this.settings;
+    if (this.settings.isOptimizingScripts()) {
+      // a stage is only part of the script, so lines that never reach a save are left out of the
+      // whole template up front rather than each stage on its own
+      ScriptAnalyzer analysis = ScriptAnalyzer.analyze(this.template);
+      if (analysis != null) {
+        template = new ArrayList<>();
+        for (int i = 0; i < analysis.size(); i++) {
+          if (analysis.isLive(i)) {
+            template.add(analysis.getLine(i).getText());
+          }
+        }
+      }
+      settings = new ExecutionSettings(this.settings);
+      settings.setOptimizingScripts(false);
+    }
+    ExecutionSettings stageSettings = settings;
+    List<List<String>> stages = splitStages(template);
+    List<BlockingQueue<Optional<Job>>> queues = new ArrayList<>();
+    for (int stage = 0; stage < stages.size(); stage++) {
+      queues.add(new ArrayBlockingQueue<>(this.workers));
+    }
+    // the first stage takes its files straight from the list instead of a queue
+    AtomicInteger next = new AtomicInteger();
+    List<List<String>> results = new ArrayList<>(Collections.nCopies(this.inputs.size(), null));
+
+    List<Thread> threads = new ArrayList<>();
+    for (int stage = 0; stage < stages.size(); stage++) {
+      List<String> lines = stages.get(stage);
+      BlockingQueue<Optional<Job>> in = stage == 0 ? null : queues.get(stage);
+      BlockingQueue<Optional<Job>> out = stage == stages.size() - 1 ? null
+              : queues.get(stage + 1);
+      // the last worker of a stage to finish tells every worker of the next stage to stop
+      AtomicInteger running = new AtomicInteger(this.workers);
+      for (int worker = 0; worker < this.workers; worker++) {
+        threads.add(new Thread(() -> {
+          try {
+            while (true) {
+              Job job;
+              if (in == null) {
+                int index = next.getAndIncrement();
+                if (index >= this.inputs.size()) {
+                  break;
+                }
+                try {
+                  job = new Job(index, this.inputs.get(index), this.storages.get(),
+                          stageSettings);
+                }
+                catch (RuntimeException e) {
+                  results.set(index, List.of(String.valueOf(e.getMessage())));
+                  continue;
+                }
+              }
+              else {
+                Optional<Job> taken = in.take();
+                if (taken.isEmpty()) {
+                  break;
+                }
+                job = taken.get();
+              }
+              this.runStage(job, lines);
+              if (out != null) {
+                out.put(Optional.of(job));
+              }
+              else {
+                results.set(job.index, job.messages.getMessages());
+              }
+            }
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          finally {
+            // even a worker that died tells the next stage it's done, so that stage never waits
+            // for files that aren't coming
+            if (running.decrementAndGet() == 0 && out != null) {
+              this.stop(out);
+            }
+          }
+        }));
+      }
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+    catch (InterruptedException e) {
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the batch");
+    }
+    return results;
+  }
+
+  /**
+   * Tells every worker of a stage that no more files are coming.
+   *
+   * @param in the queue the stage takes its files from
+   */
+  private void stop(BlockingQueue<Optional<Job>> in) {
+    try {
+      for (int i = 0; i < this.workers; i++) {
+        in.put(Optional.empty());
+      }
+    }
+    catch (InterruptedException e) {
+      // the whole batch is being interrupted, so every worker is stopping anyway
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Runs one stage of the template for a file. A file whose script failed outright in an earlier
+   * stage skips the rest of its stages.
+   *
+   * @param job the file
+   * @param lines the lines of the template in this stage
+   */
+  private void runStage(Job job, List<String> lines) {
+    if (job.failed || lines.isEmpty()) {
+      return;
+    }
+    try {
+      job.controller.runScript(this.fill(job.input, lines));
+    }
+    catch (RuntimeException e) {
+      job.failed = true;
+      job.messages.renderMessage(String.valueOf(e.getMessage()));
+    }
+  }
+
+  /**
+   * Splits a template into the loads at its start, the commands in the middle and the saves at its
+   * end. Blank lines are left out.
+   *
+   * @param template the lines of the template
+   * @return the lines of the three stages, any of which may be empty
+   */
+  static List<List<String>> splitStages(List<String> template) {
+    List<String> lines = new ArrayList<>();
+    for (String line : template) {
+      if (!line.isBlank()) {
+        lines.add(line);
+      }
+    }
+    int loads = 0;
+    while (loads < lines.size() && firstWord(lines.get(loads)).equals("load")) {
+      loads++;
+    }
+    int saves = lines.size();
+    while (saves > loads && firstWord(lines.get(saves - 1)).equals("save")) {
+      saves--;
+    }
+    return List.of(lines.subList(0, loads), lines.subList(loads, saves),
+            lines.subList(saves, lines.size()));
+  }
+
+  /**
+   * Returns the first word of a line.
+   *
+   * @param line the line
+   * @return the first word
+   */
+  private static String firstWord(String line) {
+    return line.trim().split("\\s+")[0];
+  }
+
+  /**
+   * Runs the template over a single file with its own storage.
+   *
+   * @param input the file
+   * @return the messages the script showed, empty if it ran without a problem
+   */
+  private List<String> runFile(File input) {
+    BufferedView messages = new BufferedView();
+    ImageProcessorControllerImpl controller = new ImageProcessorControllerImpl(messages,
+            new StringReader(""), this.storages.get(), this.settings);
+    controller.runScript(this.fill(input, this.template));
+    return messages.getMessages();
+  }
+}
@@ -1,10 +1,10 @@
 package controller;
 
 import java.io.IOException;
+import model.AffineColorOperation;
 import model.ImageModel;
-import model.Image;
 import model.ImageStorage;
-import model.Pixel;
+import model.LookupTableOperation;
 import view.ImageProcessorView;
 
 /**
@@ -42,24 +42,22 @@ public class BrightDark extends AImageProcessorCommand {
     this.value = value;
   }
 
+  @Override
+  public String cacheKey() {
+    return "offset " + this.value;
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     try {
       int value = Integer.parseInt(this.value);
-      Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
-      for (int i = 0; i < model.getHeight(); i++) {
-        for (int j = 0; j < model.getWidth(); j++) {
-          Pixel curr = model.getPixel(i, j);
-          int red = curr.getRed() + value;
-          int blue = curr.getBlue() + value;
-          int green = curr.getGreen() + value;
-          Pixel newPixel = new Pixel(this.colorBounds(red, model.getMaxValue()),
-                  this.colorBounds(green, model.getMaxValue()),
-                  this.colorBounds(blue, model.getMaxValue()));
-          newContents[i][j] = newPixel;
-        }
+      if (this.isExactColor()) {
+        // looking the new value up in a table is exact, and chains with other tables
+        return this.applyPointOperation(model, LookupTableOperation.offset(value,
+                model.getMaxValue()));
       }
-      return new Image(newContents, model.getFilepath());
+      return this.applyPointOperation(model, AffineColorOperation.offset(value,
+              model.getMaxValue(), false));
     }
     catch (NumberFormatException e) {
       try {
@@ -1,9 +1,8 @@
 package controller;
 
+import model.AffineColorOperation;
 import model.ImageModel;
-import model.Image;
 import model.ImageStorage;
-import model.Pixel;
 import view.ImageProcessorView;
 
 /**
@@ -39,6 +38,11 @@ public class ColorTransformation extends AImageProcessorCommand {
     this.operation = operation;
   }
 
+  @Override
+  public String cacheKey() {
+    return this.operation;
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     switch (this.operation) {
@@ -79,28 +83,7 @@ public class ColorTransformation extends AImageProcessorCommand {
    * @return a new image model with updated pixels
    */
   private ImageModel applyFilter(double[][] filter, ImageModel model) {
-    Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
-    for (int i = 0 ; i < model.getHeight(); i++) {
-      for (int j = 0; j < model.getWidth(); j++) {
-        Pixel curr = model.getPixel(i, j);
-        int redRed = (int) (curr.getRed() * filter[0][0]);
-        int redGreen = (int) (curr.getGreen() * filter[0][1]);
-        int redBlue = (int) (curr.getBlue() * filter[0][2]);
-        int greenRed = (int) (curr.getRed() * filter[1][0]);
-        int greenGreen = (int) (curr.getGreen() * filter[1][1]);
-        int greenBlue = (int) (curr.getBlue() * filter[1][2]);
-        int blueRed = (int) (curr.getRed() * filter[2][0]);
-        int blueGreen = (int) (curr.getGreen() * filter[2][1]);
-        int blueBlue = (int) (curr.getBlue() * filter[2][2]);
-
-        int newRed = this.colorBounds(redRed + redGreen + redBlue, model.getMaxValue());
-        int newGreen = this.colorBounds(greenRed + greenGreen + greenBlue, model.getMaxValue());
-        int newBlue = this.colorBounds(blueRed + blueGreen + blueBlue,model.getMaxValue());
-
-        Pixel newPixel = new Pixel(newRed, newGreen, newBlue);
-        newContents[i][j] = newPixel;
-      }
-    }
-    return new Image(newContents, model.getFilepath());
+    return this.applyPointOperation(model, new AffineColorOperation(filter, model.getMaxValue(),
+            this.isExactColor()));
   }
 }
@@ -1,9 +1,10 @@
 package controller;
 
+import model.AffineColorOperation;
+import model.ComponentOperation;
 import model.ImageModel;
-import model.Image;
 import model.ImageStorage;
-import model.Pixel;
+import model.PointOperation;
 import view.ImageProcessorView;
 
 /**
@@ -39,38 +40,41 @@ public class Component extends AImageProcessorCommand {
     this.operation = operation;
   }
 
+  @Override
+  public String cacheKey() {
+    return this.operation;
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
-    Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
-    for (int i = 0; i < model.getHeight(); i++) {
-      for (int j = 0; j < model.getWidth(); j++) {
-        Pixel curr = model.getPixel(i, j);
-        Pixel grey;
-        switch (this.operation) {
-          case "red-component":
-            grey = new Pixel(curr.getRed(), curr.getRed(), curr.getRed());
-            break;
-          case "green-component":
-            grey = new Pixel(curr.getGreen(), curr.getGreen(), curr.getGreen());
-            break;
-          case "blue-component":
-            grey = new Pixel(curr.getBlue(), curr.getBlue(), curr.getBlue());
-            break;
-          case "luma-component":
-            grey = new Pixel(curr.getLuma(), curr.getLuma(), curr.getLuma());
-            break;
-          case "value-component":
-            grey = new Pixel(curr.getValue(), curr.getValue(), curr.getValue());
-            break;
-          case "intensity-component":
-            grey = new Pixel(curr.getIntensity(), curr.getIntensity(), curr.getIntensity());
-            break;
-          default:
-            throw new IllegalArgumentException("Invalid kind of component");
-        }
-        newContents[i][j] = grey;
-      }
+    return this.applyPointOperation(model, this.component(model.getMaxValue()));
+  }
+
+  /**
+   * Returns the point operation that greyscales a pixel with the component of this command. The
+   * components that are weighted sums of the colors are color matrices, so they can be folded
+   * with other color operations.
+   *
+   * @param maxValue the largest value a component may have
+   * @return the operation for this component
+   * @throws IllegalArgumentException if the operation isn't a valid component
+   */
+  private PointOperation component(int maxValue) throws IllegalArgumentException {
+    switch (this.operation) {
+      case "red-component":
+        return AffineColorOperation.grey(1, 0, 0, maxValue, this.isExactColor());
+      case "green-component":
+        return AffineColorOperation.grey(0, 1, 0, maxValue, this.isExactColor());
+      case "blue-component":
+        return AffineColorOperation.grey(0, 0, 1, maxValue, this.isExactColor());
+      case "luma-component":
+        return AffineColorOperation.grey(.2126, .7152, .0722, maxValue, this.isExactColor());
+      case "value-component":
+        return ComponentOperation.value();
+      case "intensity-component":
+        return ComponentOperation.intensity();
+      default:
+        throw new IllegalArgumentException("Invalid kind of component");
     }
-    return new Image(newContents, model.getFilepath());
   }
 }
@@ -0,0 +1,181 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import model.Convolution;
+import model.ConvolutionMode;
+import model.ImageModel;
+import model.ImageStorage;
+import model.WritableImageModel;
+import view.ImageProcessorView;
+
+/**
+ * The command for running a kernel given by the user over an image, such as an edge detector, an
+ * emboss or a large blur. The kernel is read from a file with one row of weights per line, or
+ * given inline with its rows separated by semicolons and its weights by commas, such as
+ * 0,-1,0;-1,5,-1;0,-1,0. A weight may also be written as a fraction, such as 1/16.
+ *
+ * <p>Unlike blur and sharpen, the weighted components of a pixel are only truncated once they are
+ * added up, which lets large kernels be run in two passes when they are separable, or through a
+ * Fourier transform when that is faster.</p>
+ */
+public class Convolve extends AImageProcessorCommand {
+  private final String kernel;
+  // the weights of the kernel, read the first time they're needed, so the cache key and the
+  // change itself always agree on them
+  private double[][] weights;
+
+  /**
+   * Takes in the kernel the user wants to run, as well as the view for rendering error messages.
+   *
+   * @param kernel the path of a file holding the kernel, or the kernel itself
+   * @param view the view for rendering messages
+   */
+  public Convolve(String kernel, ImageProcessorView view) {
+    super(view);
+    this.kernel = kernel;
+  }
+
+  /**
+   * Takes in the relevant arguments for being able to run a kernel over an image.
+   *
+   * @param kernel the path of a file holding the kernel, or the kernel itself
+   * @param originalImage the name of the original image to be operated on
+   * @param nameOfNewImage the name of the new image to be created
+   * @param maskedImage the name of the masked image, could be empty
+   * @param images the storage of processed images so far
+   * @param view the view that transmits output to the user
+   * @param messageToUser a message to be shown to the user based on input
+   */
+  public Convolve(String kernel, String originalImage, String nameOfNewImage, String maskedImage,
+                  ImageStorage images, ImageProcessorView view, String messageToUser) {
+    super(originalImage, nameOfNewImage, maskedImage, images, view, messageToUser);
+    this.kernel = kernel;
+  }
+
+  @Override
+  public String cacheKey() {
+    try {
+      // keyed by the weights rather than the file, so a file that changes isn't a stale hit
+      return "convolve " + Arrays.deepToString(this.getWeights()) + " "
+              + this.settings.getBorderMode();
+    }
+    catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public ImageModel makeModelChange(ImageModel original) {
+    Convolution convolution;
+    try {
+      convolution = new Convolution(this.getWeights(), ConvolutionMode.FASTEST,
+              this.settings.getBorderMode());
+    }
+    catch (IllegalArgumentException e) {
+      try {
+        this.view.renderMessage(e.getMessage());
+        return original;
+      }
+      catch (IOException e2) {
+        throw new IllegalStateException("The kernel error couldn't be rendered");
+      }
+    }
+    // every pixel is read once per cell of the kernel, so derived images are copied first
+    ImageModel model = this.materialize(original);
+    WritableImageModel newContents = this.createImage(model.getHeight(), model.getWidth(),
+            model.getFilepath());
+    this.forEachBand(model,
+            (fromRow, toRow) -> convolution.convolve(model, newContents, fromRow, toRow));
+    return newContents;
+  }
+
+  /**
+   * Returns the weights of the kernel, reading them the first time.
+   *
+   * @return the weights of the kernel, row after row
+   * @throws IllegalArgumentException if the kernel can't be read
+   */
+  private double[][] getWeights() throws IllegalArgumentException {
+    if (this.weights == null) {
+      this.weights = readKernel(this.kernel);
+    }
+    return this.weights;
+  }
+
+  /**
+   * Reads a kernel from the file at a path, or from the text itself if no such file exists.
+   *
+   * @param kernel the path of a file holding the kernel, or the kernel itself
+   * @return the weights of the kernel, row after row
+   * @throws IllegalArgumentException if the kernel can't be read, has a weight that isn't a number,
+   *     or isn't square with an odd size
+   */
+  public static double[][] readKernel(String kernel) throws IllegalArgumentException {
+    if (kernel == null || kernel.isBlank()) {
+      throw new IllegalArgumentException("A kernel must be given");
+    }
+    List<String> rows = new ArrayList<>();
+    File file = new File(kernel);
+    if (file.isFile()) {
+      try {
+        for (String line : Files.readAllLines(file.toPath(), Charset.defaultCharset())) {
+          if (!line.isBlank() && !line.trim().startsWith("#")) {
+            rows.add(line.trim());
+          }
+        }
+      }
+      catch (IOException e) {
+        throw new IllegalArgumentException("Kernel file " + kernel + " couldn't be read");
+      }
+    }
+    else {
+      rows.addAll(Arrays.asList(kernel.split(";")));
+    }
+
+    double[][] weights = new double[rows.size()][];
+    for (int x = 0; x < rows.size(); x++) {
+      String[] cells = rows.get(x).trim().split("[,\\s]+");
+      weights[x] = new double[cells.length];
+      for (int y = 0; y < cells.length; y++) {
+        weights[x][y] = parseWeight(cells[y]);
+      }
+      if (cells.length != rows.size()) {
+        throw new IllegalArgumentException("Kernel must be square");
+      }
+    }
+    if (rows.size() % 2 == 0) {
+      throw new IllegalArgumentException("Kernel must have an odd size");
+    }
+    return weights;
+  }
+
+  /**
+   * Reads a single weight, which is a number or a fraction of two numbers.
+   *
+   * @param cell the weight as written
+   * @return the weight
+   * @throws IllegalArgumentException if the weight isn't a number
+   */
+  private static double parseWeight(String cell) throws IllegalArgumentException {
+    double weight;
+    try {
+      int slash = cell.indexOf('/');
+      weight = slash < 0 ? Double.parseDouble(cell)
+              : Double.parseDouble(cell.substring(0, slash))
+              / Double.parseDouble(cell.substring(slash + 1));
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Kernel weight " + cell + " is not a number");
+    }
+    if (!Double.isFinite(weight)) {
+      throw new IllegalArgumentException("Kernel weight " + cell + " is not a number");
+    }
+    return weight;
+  }
+}
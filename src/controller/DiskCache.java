@@ -0,0 +1,388 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import model.ImageModel;
+import model.PackedImage;
+import model.WritableImageModel;
+
+/**
+ * Keeps the images that were loaded and created in a directory, so that later runs of the program
+ * can read them back instead of decoding files and running commands all over again. Every image is
+ * stored under a key that describes where it came from: a loaded image is keyed by a hash of the
+ * bytes of its file, and the result of a command is keyed by a hash of the key of its input and the
+ * change the command made. A file that hasn't changed therefore finds the same results as before,
+ * and a file that has changed finds none of them. Every key also includes the version of the
+ * program's output, so a new version that works images out differently doesn't read back the
+ * results of an old one.
+ *
+ * <p>Each stored image ends with a checksum of its contents, and one that doesn't match is
+ * deleted and worked out again. The directory is kept under a size limit by deleting the images
+ * that were least recently used, across runs.
+ */
+public class DiskCache {
+  private static final int MAGIC = 0x49504331;
+  private static final String SUFFIX = ".img";
+  // part of every key, and raised whenever a command or a reader starts producing different
+  // pixels, so that images cached by an older version of the program are never found again
+  private static final int VERSION = 3;
+
+  private final File directory;
+  private final long limit;
+  // access-ordered, so the least recently used image always comes first
+  private final LinkedHashMap<String, Long> entries;
+  // where each image in memory came from, dropped once the image itself is no longer used
+  private final Map<ImageModel, String> provenance;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long corrupt;
+
+  /**
+   * Opens the cache in a directory, creating the directory if it doesn't exist yet. Images left
+   * there by earlier runs are picked up, oldest first.
+   *
+   * @param directory the directory the images are kept in
+   * @param limit the number of bytes the images in the directory may take up
+   * @throws IllegalArgumentException if the limit is negative or the directory can't be used
+   */
+  public DiskCache(File directory, long limit) throws IllegalArgumentException {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit must not be negative");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Couldn't use " + directory + " as a cache directory");
+    }
+    this.directory = directory;
+    this.limit = limit;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.provenance = Collections.synchronizedMap(new WeakHashMap<>());
+
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+    if (files != null) {
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (File file : files) {
+        String name = file.getName();
+        this.entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+        this.bytes = this.bytes + file.length();
+      }
+    }
+    this.evict();
+  }
+
+  /**
+   * Works out the key of an image loaded from a file, which is a hash of all the bytes in the file
+   * and the way it's read.
+   *
+   * @param filename the path of the file
+   * @param format the way the file is read, such as ppm
+   * @return the key, or null if the file couldn't be read
+   */
+  public String fileKey(String filename, String format) {
+    MessageDigest digest = newDigest();
+    digest.update(("v" + VERSION + " load " + format + "\n").getBytes(StandardCharsets.UTF_8));
+    try (InputStream input = new FileInputStream(filename)) {
+      byte[] buffer = new byte[1 << 16];
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    catch (IOException e) {
+      return null;
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Works out the key of the image a command creates, out of the keys of the images it reads and
+   * the change it makes.
+   *
+   * @param input the image the command is run on
+   * @param mask the mask the command is run with, or null if it has none
+   * @param operation the change the command makes, as given by its cache key
+   * @return the key, or null if it isn't known where one of the images came from
+   */
+  public String deriveKey(ImageModel input, ImageModel mask, String operation) {
+    String inputKey = this.provenance.get(input);
+    String maskKey = mask == null ? "" : this.provenance.get(mask);
+    if (inputKey == null || maskKey == null) {
+      return null;
+    }
+    MessageDigest digest = newDigest();
+    digest.update(("v" + VERSION + "\n" + inputKey + "\n" + maskKey + "\n" + operation)
+            .getBytes(StandardCharsets.UTF_8));
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Records where an image came from, so that the results of commands run on it can be keyed.
+   *
+   * @param image the image
+   * @param key the key of the image
+   */
+  public void remember(ImageModel image, String key) {
+    this.provenance.put(image, key);
+  }
+
+  /**
+   * Reads an image back from the cache. An image whose checksum doesn't match is deleted. The
+   * image is decoded without holding on to the cache, so other images can be looked up and
+   * written in the meantime.
+   *
+   * @param key the key of the image
+   * @param filepath the path to the original image on the user's device, given to the image read
+   * @return the image, or null if the cache doesn't have it
+   */
+  public ImageModel get(String key, String filepath) {
+    synchronized (this) {
+      if (this.entries.get(key) == null) {
+        this.misses++;
+        return null;
+      }
+    }
+    File file = this.fileFor(key);
+    ImageModel image;
+    try {
+      image = read(file, filepath);
+    }
+    catch (IOException e) {
+      synchronized (this) {
+        this.misses++;
+        // a damaged or partly written image is worked out again, but one that was only deleted
+        // to make room while it was being read isn't damaged
+        if (this.entries.containsKey(key)) {
+          this.corrupt++;
+          this.delete(key);
+        }
+      }
+      return null;
+    }
+    synchronized (this) {
+      this.hits++;
+    }
+    file.setLastModified(System.currentTimeMillis());
+    return image;
+  }
+
+  /**
+   * Writes an image to the cache, deleting the least recently used images if the directory goes
+   * over its size limit. The image is written to a temporary file first and then moved into place,
+   * so other runs never see half of it. Like reading, writing doesn't hold on to the cache, which
+   * is only locked to record the image once it's in place. Failing to write only means the image
+   * isn't cached.
+   *
+   * @param key the key of the image
+   * @param image the image to be written
+   */
+  public void put(String key, ImageModel image) {
+    long size = 3L * image.getHeight() * image.getWidth() + 20;
+    synchronized (this) {
+      if (this.entries.containsKey(key) || size > this.limit) {
+        return;
+      }
+    }
+    File temporary = null;
+    try {
+      temporary = File.createTempFile(key, ".tmp", this.directory);
+      try (CheckedOutputStream checked = new CheckedOutputStream(
+              new BufferedOutputStream(new FileOutputStream(temporary)), new CRC32());
+           DataOutputStream output = new DataOutputStream(checked)) {
+        output.writeInt(MAGIC);
+        output.writeInt(image.getHeight());
+        output.writeInt(image.getWidth());
+        byte[] bytes = new byte[3 * image.getWidth()];
+        int[] row = new int[image.getWidth()];
+        for (int i = 0; i < image.getHeight(); i++) {
+          image.getRow(i, row);
+          for (int j = 0; j < row.length; j++) {
+            bytes[3 * j] = (byte) PackedImage.red(row[j]);
+            bytes[3 * j + 1] = (byte) PackedImage.green(row[j]);
+            bytes[3 * j + 2] = (byte) PackedImage.blue(row[j]);
+          }
+          output.write(bytes);
+        }
+        output.writeLong(checked.getChecksum().getValue());
+      }
+      try {
+        Files.move(temporary.toPath(), this.fileFor(key).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary.toPath(), this.fileFor(key).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+      }
+      synchronized (this) {
+        // another thread may have written the same image in the meantime
+        if (this.entries.put(key, size) == null) {
+          this.bytes = this.bytes + size;
+        }
+        this.evict();
+      }
+    }
+    catch (IOException e) {
+      if (temporary != null) {
+        temporary.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of images that were read back from the cache.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of images that had to be worked out because the cache didn't have them.
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Returns the number of cached images that were deleted because their checksum didn't match.
+   *
+   * @return the number of damaged images
+   */
+  public synchronized long getCorrupt() {
+    return this.corrupt;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "hits: " + this.hits + ", misses: " + this.misses + ", damaged: " + this.corrupt
+            + ", images: " + this.entries.size() + ", bytes: " + this.bytes + " of " + this.limit;
+  }
+
+  /**
+   * Decodes an image kept in a file, checking its dimensions and checksum.
+   *
+   * @param file the file the image is kept in
+   * @param filepath the path to the original image on the user's device, given to the image read
+   * @return the image
+   * @throws IOException if the file can't be read or isn't a whole, undamaged image
+   */
+  private static ImageModel read(File file, String filepath) throws IOException {
+    try (CheckedInputStream checked = new CheckedInputStream(
+            new BufferedInputStream(new FileInputStream(file)), new CRC32());
+         DataInputStream input = new DataInputStream(checked)) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not a cached image");
+      }
+      int height = input.readInt();
+      int width = input.readInt();
+      if (height <= 0 || width <= 0 || 3L * height * width + 20 != file.length()) {
+        throw new IOException("Dimensions don't match the size of the file");
+      }
+      WritableImageModel image = ImageUtil.createImage(height, width, filepath);
+      byte[] bytes = new byte[3 * width];
+      int[] row = new int[width];
+      for (int i = 0; i < height; i++) {
+        input.readFully(bytes);
+        for (int j = 0; j < width; j++) {
+          row[j] = PackedImage.pack(bytes[3 * j] & 0xFF, bytes[3 * j + 1] & 0xFF,
+                  bytes[3 * j + 2] & 0xFF);
+        }
+        image.setRow(i, row);
+      }
+      long expected = checked.getChecksum().getValue();
+      if (input.readLong() != expected) {
+        throw new IOException("Checksum doesn't match");
+      }
+      return image;
+    }
+  }
+
+  /**
+   * Deletes the least recently used images until the directory fits its size limit.
+   */
+  private void evict() {
+    Iterator<Map.Entry<String, Long>> oldestFirst = this.entries.entrySet().iterator();
+    while (this.bytes > this.limit && oldestFirst.hasNext()) {
+      Map.Entry<String, Long> oldest = oldestFirst.next();
+      this.fileFor(oldest.getKey()).delete();
+      this.bytes = this.bytes - oldest.getValue();
+      oldestFirst.remove();
+    }
+  }
+
+  /**
+   * Deletes a single image from the cache.
+   *
+   * @param key the key of the image
+   */
+  private void delete(String key) {
+    Long size = this.entries.remove(key);
+    if (size != null) {
+      this.bytes = this.bytes - size;
+    }
+    this.fileFor(key).delete();
+  }
+
+  /**
+   * Returns the file an image is kept in.
+   *
+   * @param key the key of the image
+   * @return the file
+   */
+  private File fileFor(String key) {
+    return new File(this.directory, key + SUFFIX);
+  }
+
+  /**
+   * Creates a new SHA-256 digest, which every Java platform is required to support.
+   *
+   * @return the digest
+   */
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 isn't available");
+    }
+  }
+
+  /**
+   * Writes bytes as a string of hexadecimal digits.
+   *
+   * @param bytes the bytes
+   * @return the hexadecimal string
+   */
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -1,16 +1,20 @@
 package controller;
 
 import java.io.IOException;
-import model.Image;
 import model.ImageModel;
 import model.ImageStorage;
-import model.Pixel;
+import model.IntegralImage;
+import model.PackedImage;
+import model.WritableImageModel;
 import view.ImageProcessorView;
 
 /**
- * The command for downsizing an image by a particular size.
+ * The command for downsizing an image by a particular size. Downsize blends the four pixels
+ * nearest to where each new pixel falls, and downsize-area averages every pixel of the rectangle
+ * of the image that each new pixel covers, which doesn't skip over any detail.
  */
 public class Downsize extends AImageProcessorCommand {
+  private final String operation;
   private final String width;
   private final String height;
 
@@ -23,7 +27,21 @@ public class Downsize extends AImageProcessorCommand {
    * @param view the view for transmitting important messages
    */
   public Downsize(String width, String height, ImageProcessorView view) {
+    this("downsize", width, height, view);
+  }
+
+  /**
+   * Takes in the way to downsize, and the width and height that the user wants to downsize an
+   * image by, as well as the view for rendering error messages.
+   *
+   * @param operation downsize to blend nearby pixels, or downsize-area to average them
+   * @param width the desired width by the user
+   * @param height the desired height by the user
+   * @param view the view for transmitting important messages
+   */
+  public Downsize(String operation, String width, String height, ImageProcessorView view) {
     super(view);
+    this.operation = operation;
     this.width = width;
     this.height = height;
   }
@@ -41,11 +59,35 @@ public class Downsize extends AImageProcessorCommand {
    */
   public Downsize(String width, String height, String originalImage, String nameOfNewImage,
                   ImageStorage images, ImageProcessorView view, String messageToUser) {
+    this("downsize", width, height, originalImage, nameOfNewImage, images, view, messageToUser);
+  }
+
+  /**
+   * Takes in the relevant arguments for being able to downsize an image in a given way.
+   *
+   * @param operation downsize to blend nearby pixels, or downsize-area to average them
+   * @param width the desired width by the user
+   * @param height the desired height by the user
+   * @param originalImage the name of the original image to be operated on
+   * @param nameOfNewImage the name of the new image to be created
+   * @param images the storage of processed images so far
+   * @param view the view that transmits output to the user
+   * @param messageToUser a message to be shown to the user based on input
+   */
+  public Downsize(String operation, String width, String height, String originalImage,
+                  String nameOfNewImage, ImageStorage images, ImageProcessorView view,
+                  String messageToUser) {
     super(originalImage, nameOfNewImage, images, view, messageToUser);
+    this.operation = operation;
     this.width = width;
     this.height = height;
   }
 
+  @Override
+  public String cacheKey() {
+    return this.operation + " " + this.width + " " + this.height;
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     if (this.width == null || this.height == null) {
@@ -76,18 +118,25 @@ public class Downsize extends AImageProcessorCommand {
         }
       }
 
+      if (this.operation.equals("downsize-area")) {
+        return this.averageAreas(model, newHeight, newWidth);
+      }
       double heightRatio = (double) model.getHeight() / newHeight;
       double widthRatio = (double) model.getWidth() / newWidth;
 
-      Pixel[][] newContents = new Pixel[newHeight][newWidth];
-      for (int i = 0; i < newHeight; i++) {
-        for (int j = 0; j < newWidth; j++) {
-          Pixel newPixel = this.floatingPixel(i * heightRatio, j * widthRatio, model);
-          newContents[i][j] = newPixel;
+      WritableImageModel newContents = this.createImage(newHeight, newWidth,
+              model.getFilepath());
+      this.forEachBand(newHeight, newWidth, (fromRow, toRow) -> {
+        int[] row = new int[newWidth];
+        for (int i = fromRow; i < toRow; i++) {
+          for (int j = 0; j < newWidth; j++) {
+            row[j] = this.floatingPixel(i * heightRatio, j * widthRatio, model);
+          }
+          newContents.setRow(i, row);
         }
-      }
+      });
 
-      return new Image(newContents, model.getFilepath());
+      return newContents;
     }
 
     catch (NumberFormatException e) {
@@ -102,15 +151,47 @@ public class Downsize extends AImageProcessorCommand {
   }
 
   /**
-   * Returns a new pixel that represents the collection of four different pixels' colors in the
+   * Downsizes an image by averaging the rectangle of pixels that each new pixel covers. The rows
+   * and columns of the image are split as evenly as they can be, so every pixel of the image
+   * counts toward exactly one new pixel, and every average is looked up in the summed-area table
+   * of the image whatever the size of its rectangle.
+   *
+   * @param model the image to downsize
+   * @param newHeight the height of the new image
+   * @param newWidth the width of the new image
+   * @return the new image
+   */
+  private ImageModel averageAreas(ImageModel model, int newHeight, int newWidth) {
+    IntegralImage table = IntegralImage.of(model);
+    int height = model.getHeight();
+    int width = model.getWidth();
+    WritableImageModel newContents = this.createImage(newHeight, newWidth, model.getFilepath());
+    this.forEachBand(newHeight, newWidth, (fromRow, toRow) -> {
+      int[] row = new int[newWidth];
+      for (int i = fromRow; i < toRow; i++) {
+        int top = (int) ((long) i * height / newHeight);
+        int bottom = (int) ((long) (i + 1) * height / newHeight);
+        for (int j = 0; j < newWidth; j++) {
+          int left = (int) ((long) j * width / newWidth);
+          int right = (int) ((long) (j + 1) * width / newWidth);
+          row[j] = table.average(top, left, bottom - top, right - left);
+        }
+        newContents.setRow(i, row);
+      }
+    });
+    return newContents;
+  }
+
+  /**
+   * Returns a new packed color that represents the collection of four different pixels' colors in the
    * original model, uses floor and ceiling values.
    *
    * @param xPos the approximate x-position of the pixel
    * @param yPos the approximate y-position of the pixel
    * @param model the model to get the four pixels from
-   * @return a new Pixel with new colors representing a collection of colors
+   * @return a new packed color representing a collection of colors
    */
-  private Pixel floatingPixel(double xPos, double yPos, ImageModel model) {
+  private int floatingPixel(double xPos, double yPos, ImageModel model) {
     int floorXPos = (int) xPos;
     int ceilingXPos = (int) xPos + 1;
     int floorYPos = (int) yPos;
@@ -130,23 +211,29 @@ public class Downsize extends AImageProcessorCommand {
       ceilingYPos = ceilingYPos - 1;
     }
 
-    Pixel a = model.getPixel(floorXPos, floorYPos);
-    Pixel b = model.getPixel(ceilingXPos, floorYPos);
-    Pixel c = model.getPixel(floorXPos, ceilingYPos);
-    Pixel d = model.getPixel(ceilingXPos, ceilingYPos);
+    int a = model.getRGB(floorXPos, floorYPos);
+    int b = model.getRGB(ceilingXPos, floorYPos);
+    int c = model.getRGB(floorXPos, ceilingYPos);
+    int d = model.getRGB(ceilingXPos, ceilingYPos);
 
-    double mRed = (b.getRed() * (xPos - floorXPos)) + (a.getRed() * (ceilingXPos - xPos));
-    double nRed = (d.getRed() * (xPos - floorXPos)) + (c.getRed() * (ceilingXPos - xPos));
+    double mRed = (PackedImage.red(b) * (xPos - floorXPos))
+            + (PackedImage.red(a) * (ceilingXPos - xPos));
+    double nRed = (PackedImage.red(d) * (xPos - floorXPos))
+            + (PackedImage.red(c) * (ceilingXPos - xPos));
     int red = (int) ((nRed * (yPos - floorYPos)) + (mRed * (ceilingYPos - yPos)));
 
-    double mGreen = (b.getGreen() * (xPos - floorXPos)) + (a.getGreen() * (ceilingXPos - xPos));
-    double nGreen = (d.getGreen() * (xPos - floorXPos)) + (c.getGreen() * (ceilingXPos - xPos));
+    double mGreen = (PackedImage.green(b) * (xPos - floorXPos))
+            + (PackedImage.green(a) * (ceilingXPos - xPos));
+    double nGreen = (PackedImage.green(d) * (xPos - floorXPos))
+            + (PackedImage.green(c) * (ceilingXPos - xPos));
     int green = (int) ((nGreen * (yPos - floorYPos)) + (mGreen * (ceilingYPos - yPos)));
 
-    double mBlue = (b.getBlue() * (xPos - floorXPos)) + (a.getBlue() * (ceilingXPos - xPos));
-    double nBlue = (d.getBlue() * (xPos - floorXPos)) + (c.getBlue() * (ceilingXPos - xPos));
+    double mBlue = (PackedImage.blue(b) * (xPos - floorXPos))
+            + (PackedImage.blue(a) * (ceilingXPos - xPos));
+    double nBlue = (PackedImage.blue(d) * (xPos - floorXPos))
+            + (PackedImage.blue(c) * (ceilingXPos - xPos));
     int blue = (int) ((nBlue * (yPos - floorYPos)) + (mBlue * (ceilingYPos - yPos)));
 
-    return new Pixel(red, green, blue);
+    return PackedImage.pack(red, green, blue);
   }
 }
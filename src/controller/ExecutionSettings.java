@@ -0,0 +1,267 @@
+package controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import model.BorderMode;
+
+/**
+ * Settings that change how commands carry out their work, without changing what a command does.
+ * A controller hands the same settings to every command it runs.
+ */
+public class ExecutionSettings {
+  // one executor for every number of threads, shared by all settings so that changing the
+  // parallelism, even back and forth, never starts a pool that is already there
+  private static final Map<Integer, RowBandExecutor> EXECUTORS = new ConcurrentHashMap<>();
+
+  private boolean deferred;
+  private boolean foldColors;
+  private boolean optimizeScripts;
+  private boolean concurrentScripts;
+  private ResultCache resultCache;
+  private DiskCache diskCache;
+  private RowBandExecutor executor;
+  private BorderMode borderMode;
+  private boolean fixedPointFilters;
+
+  /**
+   * Creates the default settings, where every command runs as soon as it's given.
+   */
+  public ExecutionSettings() {
+    this.deferred = false;
+    this.foldColors = false;
+    this.optimizeScripts = false;
+    this.concurrentScripts = false;
+    this.resultCache = null;
+    this.diskCache = null;
+    this.executor = executorFor(Runtime.getRuntime().availableProcessors());
+    this.borderMode = BorderMode.ZERO;
+    this.fixedPointFilters = false;
+  }
+
+  /**
+   * Creates a copy of other settings, sharing their caches and threads.
+   *
+   * @param other the settings to copy
+   * @throws IllegalArgumentException if the settings are null
+   */
+  public ExecutionSettings(ExecutionSettings other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Settings can't be null");
+    }
+    this.deferred = other.deferred;
+    this.foldColors = other.foldColors;
+    this.optimizeScripts = other.optimizeScripts;
+    this.concurrentScripts = other.concurrentScripts;
+    this.resultCache = other.resultCache;
+    this.diskCache = other.diskCache;
+    this.executor = other.executor;
+    this.borderMode = other.borderMode;
+    this.fixedPointFilters = other.fixedPointFilters;
+  }
+
+  /**
+   * Returns whether point operations such as brighten or greyscale are deferred. A deferred
+   * operation only records itself on the image, and a chain of them is run in a single pass when
+   * the image is saved, displayed or used by a command that needs the real pixels.
+   *
+   * @return true if point operations are deferred
+   */
+  public boolean isDeferred() {
+    return this.deferred;
+  }
+
+  /**
+   * Sets whether point operations such as brighten or greyscale are deferred.
+   *
+   * @param deferred true to defer point operations, false to run them right away
+   */
+  public void setDeferred(boolean deferred) {
+    this.deferred = deferred;
+  }
+
+  /**
+   * Returns whether deferred color operations (brighten, darken, greyscale, sepia and the red,
+   * green, blue and luma components) are folded into a single color matrix. Folded operations only
+   * truncate and clamp once at the end instead of after every step, so their results can be off by
+   * a little from running the commands one at a time. When this is false, every command gives
+   * exactly the same result as it always has.
+   *
+   * @return true if color operations are folded
+   */
+  public boolean isFoldingColors() {
+    return this.foldColors;
+  }
+
+  /**
+   * Sets whether deferred color operations are folded into a single color matrix. Has no effect
+   * unless point operations are deferred.
+   *
+   * @param foldColors true to fold color operations, false to keep exact results
+   */
+  public void setFoldingColors(boolean foldColors) {
+    this.foldColors = foldColors;
+  }
+
+  /**
+   * Returns whether a script is looked at as a whole before it's run. Commands whose images never
+   * reach a save are skipped, along with any error messages they would have shown, and every image
+   * is removed from storage as soon as the last command that reads it is done.
+   *
+   * @return true if scripts are optimized
+   */
+  public boolean isOptimizingScripts() {
+    return this.optimizeScripts;
+  }
+
+  /**
+   * Sets whether a script is looked at as a whole before it's run. Images that a script only
+   * creates along the way are not left in storage when this is on, so it should only be used when
+   * nothing else needs them afterwards.
+   *
+   * @param optimizeScripts true to skip unused commands and free images early, false to run every
+   *                        command and keep every image
+   */
+  public void setOptimizingScripts(boolean optimizeScripts) {
+    this.optimizeScripts = optimizeScripts;
+  }
+
+  /**
+   * Returns whether the lines of a script that don't depend on each other are run at the same
+   * time. Messages are still shown in the order of the script, and the images stored at the end are
+   * the same as running one line at a time.
+   *
+   * @return true if scripts run concurrently
+   */
+  public boolean isConcurrentScripts() {
+    return this.concurrentScripts;
+  }
+
+  /**
+   * Sets whether the lines of a script that don't depend on each other are run at the same time,
+   * with as many threads as the parallelism of these settings. The storage the images are kept in
+   * must be safe to use from several threads when this is on.
+   *
+   * @param concurrentScripts true to run independent lines at the same time, false to run one line
+   *                          at a time
+   */
+  public void setConcurrentScripts(boolean concurrentScripts) {
+    this.concurrentScripts = concurrentScripts;
+  }
+
+  /**
+   * Returns the cache that commands look their results up in before working them out.
+   *
+   * @return the result cache, or null if results aren't remembered
+   */
+  public ResultCache getResultCache() {
+    return this.resultCache;
+  }
+
+  /**
+   * Sets the cache that commands look their results up in before working them out.
+   *
+   * @param resultCache the result cache, or null to stop remembering results
+   */
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * Returns the cache on disk that loaded images and the results of commands are kept in across
+   * runs of the program.
+   *
+   * @return the disk cache, or null if nothing is kept on disk
+   */
+  public DiskCache getDiskCache() {
+    return this.diskCache;
+  }
+
+  /**
+   * Sets the cache on disk that loaded images and the results of commands are kept in across runs
+   * of the program.
+   *
+   * @param diskCache the disk cache, or null to not keep anything on disk
+   */
+  public void setDiskCache(DiskCache diskCache) {
+    this.diskCache = diskCache;
+  }
+
+  /**
+   * Returns the executor that commands split the rows of an image across threads with. By
+   * default it uses one thread for every core.
+   *
+   * @return the row band executor
+   */
+  public RowBandExecutor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * Sets how many threads commands may use to work on an image at the same time. Results are
+   * exactly the same no matter how many threads are used. Settings that use the same number of
+   * threads share their executor, so its pool is only ever started once.
+   *
+   * @param parallelism the number of threads, 1 to do all work on the calling thread
+   * @throws IllegalArgumentException if the parallelism is less than 1
+   */
+  public void setParallelism(int parallelism) throws IllegalArgumentException {
+    this.executor = executorFor(parallelism);
+  }
+
+  /**
+   * Returns the executor shared by all settings with a given number of threads, creating it the
+   * first time it's asked for.
+   *
+   * @param parallelism the number of threads
+   * @return the executor
+   * @throws IllegalArgumentException if the parallelism is less than 1
+   */
+  private static RowBandExecutor executorFor(int parallelism) throws IllegalArgumentException {
+    return EXECUTORS.computeIfAbsent(parallelism, RowBandExecutor::new);
+  }
+
+  /**
+   * Returns how filters such as blur treat the pixels their kernel reaches past the edges of an
+   * image. By default those pixels are black.
+   *
+   * @return the border mode
+   */
+  public BorderMode getBorderMode() {
+    return this.borderMode;
+  }
+
+  /**
+   * Sets how filters such as blur treat the pixels their kernel reaches past the edges of an
+   * image.
+   *
+   * @param borderMode the border mode
+   * @throws IllegalArgumentException if the border mode is null
+   */
+  public void setBorderMode(BorderMode borderMode) throws IllegalArgumentException {
+    if (borderMode == null) {
+      throw new IllegalArgumentException("Border mode can't be null");
+    }
+    this.borderMode = borderMode;
+  }
+
+  /**
+   * Returns whether filters such as blur only truncate the sum of each pixel, in fixed point,
+   * instead of truncating every product on its own like they always have.
+   * The results can differ slightly, but are faster to work out.
+   *
+   * @return true if filters don't have to match exactly
+   */
+  public boolean isFixedPointFilters() {
+    return this.fixedPointFilters;
+  }
+
+  /**
+   * Sets whether filters such as blur only truncate the sum of each pixel instead of every
+   * product on its own.
+   *
+   * @param fixedPointFilters true to let filters run in fixed point
+   */
+  public void setFixedPointFilters(boolean fixedPointFilters) {
+    this.fixedPointFilters = fixedPointFilters;
+  }
+}
@@ -7,6 +7,24 @@ import model.ImageModel;
  * the graphical user interface in order to make changes to the model as well as write new files.
  */
 public class FeaturesImpl implements Features {
+  private final ResultCache cache;
+
+  /**
+   * Creates the features with a result cache that may remember up to an eighth of the heap, so
+   * that going back to an earlier change of the same image is instant.
+   */
+  public FeaturesImpl() {
+    this(new ResultCache());
+  }
+
+  /**
+   * Creates the features with a specific result cache.
+   *
+   * @param cache the cache to remember the results of changes in, or null to not remember them
+   */
+  public FeaturesImpl(ResultCache cache) {
+    this.cache = cache;
+  }
 
   @Override
   public ImageModel loadImage(ImageProcessorCommand command, ImageModel model) {
@@ -20,6 +38,18 @@ public class FeaturesImpl implements Features {
 
   @Override
   public ImageModel changeImage(ImageProcessorCommand command, ImageModel model) {
-    return command.makeModelChange(model);
+    String key = command.cacheKey();
+    if (this.cache == null || key == null) {
+      return command.makeModelChange(model);
+    }
+    ImageModel result = this.cache.get(key, model, null);
+    if (result == null) {
+      result = command.makeModelChange(model);
+      // a command that failed hands back the same image, which isn't worth remembering
+      if (result != null && result != model) {
+        this.cache.put(key, model, null, result);
+      }
+    }
+    return result;
   }
 }
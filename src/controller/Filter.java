@@ -1,9 +1,10 @@
 package controller;
 
+import model.Convolution;
+import model.ConvolutionMode;
 import model.ImageModel;
-import model.Image;
 import model.ImageStorage;
-import model.Pixel;
+import model.WritableImageModel;
 import view.ImageProcessorView;
 
 /**
@@ -39,6 +40,12 @@ public class Filter extends AImageProcessorCommand {
     this.operation = operation;
   }
 
+  @Override
+  public String cacheKey() {
+    // results near the edges depend on the border mode, and every result on how it's added up
+    return this.operation + " " + this.settings.getBorderMode() + " " + this.filterMode();
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     switch (this.operation) {
@@ -88,42 +95,34 @@ public class Filter extends AImageProcessorCommand {
   }
 
   /**
-   * Applies a filter to the pixels of the original image in order to create a new one.
+   * Applies a filter to the pixels of the original image in order to create a new one. Bands of
+   * rows are worked out at the same time, which gives exactly the same image as working them out
+   * one after another.
    *
    * @param filter the specific filter to be applied to the model
-   * @param model the model to be operated on
+   * @param original the model to be operated on
    * @return a new image model with updated pixels
    */
-  private ImageModel applyFilter(double[][] filter, ImageModel model) {
-    Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
-    for (int i = 0; i < model.getHeight(); i++) {
-      for (int j = 0; j < model.getWidth(); j++) {
-        int red = 0;
-        int green = 0;
-        int blue = 0;
-        for (int x = -(filter.length / 2); x < (filter.length / 2) + 1; x++) {
-          for (int y = -(filter.length / 2); y < (filter.length / 2) + 1; y++) {
-            try {
-              int addRed = (int) (model.getPixel(i + x, j + y).getRed() *
-                      filter[x + (filter.length / 2)][y + (filter.length / 2)]);
-              int addGreen = (int) (model.getPixel(i + x, j + y).getGreen() *
-                      filter[x + (filter.length / 2)][y + (filter.length / 2)]);
-              int addBlue = (int) (model.getPixel(i + x, j + y).getBlue() *
-                      filter[x + (filter.length / 2)][y + (filter.length / 2)]);
-              red = red + addRed;
-              green = green + addGreen;
-              blue = blue + addBlue;
-            }
-            catch (IllegalArgumentException e) {
-              // this represents when a specific cell in the kernel is outside the image boundaries
-            }
-          }
-        }
-        newContents[i][j] = new Pixel(this.colorBounds(red, model.getMaxValue()),
-                this.colorBounds(green, model.getMaxValue()),
-                this.colorBounds(blue, model.getMaxValue()));
-      }
-    }
-    return new Image(newContents, model.getFilepath());
+  private ImageModel applyFilter(double[][] filter, ImageModel original) {
+    // every pixel is read once per cell of the kernel, so derived images are copied first
+    ImageModel model = this.materialize(original);
+    WritableImageModel newContents = this.createImage(model.getHeight(), model.getWidth(),
+            model.getFilepath());
+    Convolution convolution = new Convolution(filter, this.filterMode(),
+            this.settings.getBorderMode());
+    this.forEachBand(model,
+            (fromRow, toRow) -> convolution.convolve(model, newContents, fromRow, toRow));
+    return newContents;
+  }
+
+  /**
+   * Returns how the filter adds up the weighted components of each pixel: truncating every product
+   * on its own, like it always has, unless the settings ask for fixed-point filters.
+   *
+   * @return the mode of the filter
+   */
+  private ConvolutionMode filterMode() {
+    return this.settings.isFixedPointFilters() ? ConvolutionMode.FIXED_POINT
+            : ConvolutionMode.EXACT;
   }
 }
\ No newline at end of file
@@ -1,9 +1,8 @@
 package controller;
 
 import model.ImageModel;
-import model.Image;
 import model.ImageStorage;
-import model.Pixel;
+import model.RemappedImage;
 import view.ImageProcessorView;
 
 /**
@@ -33,15 +32,20 @@ public class HorizontalFlip extends AImageProcessorCommand {
     super(originalImage, nameOfNewImage, images, view, messageToUser);
   }
 
+  @Override
+  public String cacheKey() {
+    return "horizontal-flip";
+  }
+
+  /**
+   * Returns a view of the image that reads the original pixels in flipped order instead of copying
+   * them, so flipping takes no extra memory no matter how large the image is.
+   *
+   * @param model the specific model to be flipped
+   * @return a flipped view of the model
+   */
   @Override
   public ImageModel makeModelChange(ImageModel model) {
-    Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
-    for (int i = 0; i < model.getHeight(); i++) {
-      for (int j = 0; j < model.getWidth(); j++) {
-        Pixel newPixel = model.getPixel(i, model.getWidth() - 1 - j);
-        newContents[i][j] = newPixel;
-      }
-    }
-    return new Image(newContents, model.getFilepath());
+    return RemappedImage.horizontalFlip(model);
   }
 }
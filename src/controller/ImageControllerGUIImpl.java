@@ -97,13 +97,10 @@ public class ImageControllerGUIImpl implements ImageControllerGUI {
     else {
       BufferedImage image = new BufferedImage(this.model.getWidth(), this.model.getHeight(),
               TYPE_INT_RGB);
+      int[] row = new int[this.model.getWidth()];
       for (int i = 0; i < image.getHeight(); i++) {
-        for (int j = 0; j < image.getWidth(); j++) {
-          Color color = new Color(this.model.getPixel(i, j).getRed(),
-                  this.model.getPixel(i, j).getGreen(), this.model.getPixel(i, j).getBlue());
-          int colorValue = color.getRGB();
-          image.setRGB(j, i, colorValue);
-        }
+        this.model.getRow(i, row);
+        image.setRGB(0, i, row.length, 1, row, 0, row.length);
       }
       return image;
     }
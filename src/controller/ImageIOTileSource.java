@@ -0,0 +1,80 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import model.TileSource;
+
+/**
+ * Decodes a region of a non PPM image file whenever it's needed, by asking the image reader for
+ * just that region of the file. Used to load images that are too big to decode all at once, which
+ * ask for a whole row of tiles at a time, since formats like PNG and JPEG have to decode every row
+ * before the region anyway.
+ */
+class ImageIOTileSource implements TileSource {
+  private final File file;
+
+  /**
+   * Takes in the image file that tiles are decoded from.
+   *
+   * @param file the image file on the user's device
+   */
+  ImageIOTileSource(File file) {
+    this.file = file;
+  }
+
+  @Override
+  public void computeTile(int row, int col, int height, int width, int[] dest)
+          throws IllegalStateException {
+    try (ImageInputStream stream = ImageIO.createImageInputStream(this.file)) {
+      ImageReader reader = readerFor(stream);
+      try {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(col, row, width, height));
+        BufferedImage tile = reader.read(0, param);
+        tile.getRGB(0, 0, width, height, dest, 0, width);
+        for (int i = 0; i < dest.length; i++) {
+          dest[i] = dest[i] & 0xFFFFFF;
+        }
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't decode part of " + this.file.getPath());
+    }
+  }
+
+  @Override
+  public boolean prefersWholeRows() {
+    // PNG and JPEG readers decode every row before the region anyway
+    return true;
+  }
+
+  /**
+   * Finds an image reader for a stream and points it at the stream.
+   *
+   * @param stream the stream of the image file
+   * @return a reader that is ready to read from the stream
+   * @throws IOException if no reader supports the format of the file
+   */
+  static ImageReader readerFor(ImageInputStream stream) throws IOException {
+    if (stream == null) {
+      throw new IOException("Image file couldn't be opened");
+    }
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+    if (!readers.hasNext()) {
+      throw new IOException("Image format isn't supported");
+    }
+    ImageReader reader = readers.next();
+    reader.setInput(stream, true, true);
+    return reader;
+  }
+}
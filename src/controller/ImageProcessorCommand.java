@@ -32,4 +32,22 @@ public interface ImageProcessorCommand {
    * @return a model with the new image representation
    */
   ImageModel makeModelChangeWithMask(ImageModel model);
+
+  /**
+   * Sets how this command carries out its work, such as whether it may defer point operations.
+   * Commands use the default settings unless this is called before they are run.
+   *
+   * @param settings the settings to be used by this command
+   */
+  void setSettings(ExecutionSettings settings);
+
+  /**
+   * Returns a description of the change this command makes, which is the same for every command
+   * that makes the same change to the same image. Results are only remembered for commands that
+   * have one.
+   *
+   * @return the description of the change, or null if the results of this command shouldn't be
+   *      remembered
+   */
+  String cacheKey();
 }
@@ -1,14 +1,23 @@
 package controller;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
 import model.ImageModel;
 import model.ImageStorage;
 import model.ImageStorageImpl;
+import view.BufferedView;
 import view.ImageProcessorView;
 
 /**
@@ -18,8 +27,10 @@ import view.ImageProcessorView;
 public class ImageProcessorControllerImpl implements ImageProcessorController {
   private final ImageProcessorView view;
   private final Readable readable;
-  private final HashMap<String, Function<Scanner, ImageProcessorCommand>> commands;
+  private final HashMap<String, BiFunction<Scanner, ImageProcessorView,
+          ImageProcessorCommand>> commands;
   private final ImageStorage images;
+  private final ExecutionSettings settings;
 
   /**
    * Represents an implementation for the image processor controller that updates the different
@@ -31,69 +42,137 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
    */
   public ImageProcessorControllerImpl(ImageProcessorView view, Readable readable)
           throws IllegalArgumentException {
-    if (view == null || readable == null) {
+    this(view, readable, new ImageStorageImpl());
+  }
+
+  /**
+   * Represents an implementation for the image processor controller that keeps its images in a
+   * specific storage system, such as one that is safe to use from several threads.
+   *
+   * @param view the view to transmit output to
+   * @param readable where user input comes from
+   * @param images the storage system to keep processed images in
+   * @throws IllegalArgumentException if any of the parameters are null
+   */
+  public ImageProcessorControllerImpl(ImageProcessorView view, Readable readable,
+                                      ImageStorage images) throws IllegalArgumentException {
+    this(view, readable, images, new ExecutionSettings());
+  }
+
+  /**
+   * Represents an implementation for the image processor controller that keeps its images in a
+   * specific storage system and runs every command with the given settings.
+   *
+   * @param view the view to transmit output to
+   * @param readable where user input comes from
+   * @param images the storage system to keep processed images in
+   * @param settings the settings handed to every command, such as whether to defer them
+   * @throws IllegalArgumentException if any of the parameters are null
+   */
+  public ImageProcessorControllerImpl(ImageProcessorView view, Readable readable,
+                                      ImageStorage images, ExecutionSettings settings)
+          throws IllegalArgumentException {
+    if (view == null || readable == null || images == null || settings == null) {
       throw new IllegalArgumentException("At least one of the given parameters was null");
     }
 
     this.view = view;
     this.readable = readable;
-    this.images = new ImageStorageImpl();
+    this.images = images;
+    this.settings = settings;
     this.commands = new HashMap<>();
-    this.commands.put("load", s -> new Load(s.next(), s.next(), this.images, this.view,
+    this.commands.put("load", (s, v) -> new Load(s.next(), s.next(), this.images, v,
             "An error occurred while trying to process the file. Make sure that it"
                     + " falls under the supported formats"));
-    this.commands.put("save", s -> new Save(s.next(), s.next(), this.images, this.view,
+    this.commands.put("save", (s, v) -> new Save(s.next(), s.next(), this.images, v,
             "Cannot save an image that has not been stored in the program"));
-    this.commands.put("vertical-flip", s -> new VerticalFlip(s.next(), s.next(), this.images,
-            this.view, "Cannot flip an image that has not been stored in the program"));
-    this.commands.put("horizontal-flip", s -> new HorizontalFlip(s.next(), s.next(), this.images,
-            this.view, "Cannot flip an image that has not been stored in the program"));
-    this.commands.put("brighten", s -> new BrightDark(s.next(), s.next(), s.next(), s.nextLine().trim(),
-            this.images, this.view, "Cannot brighten an image that has not been stored in the program"));
-    this.commands.put("darken", s -> new BrightDark(s.next(), s.next(), s.next(), s.nextLine().trim(),
-            this.images, this.view, "Cannot darken an image that has not been stored in the program"));
-    this.commands.put("red-component", s -> new Component("red-component", s.next(),
-            s.next(), s.nextLine().trim(), this.images, this.view, "Cannot get the"
+    this.commands.put("vertical-flip", (s, v) -> new VerticalFlip(s.next(), s.next(),
+            this.images, v, "Cannot flip an image that has not been stored in the program"));
+    this.commands.put("horizontal-flip", (s, v) -> new HorizontalFlip(s.next(), s.next(),
+            this.images, v, "Cannot flip an image that has not been stored in the program"));
+    this.commands.put("brighten", (s, v) -> new BrightDark(s.next(), s.next(), s.next(),
+            s.nextLine().trim(), this.images, v, "Cannot brighten an image that has not been"
+            + " stored in the program"));
+    this.commands.put("darken", (s, v) -> new BrightDark(s.next(), s.next(), s.next(),
+            s.nextLine().trim(), this.images, v, "Cannot darken an image that has not been"
+            + " stored in the program"));
+    this.commands.put("red-component", (s, v) -> new Component("red-component", s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot get the"
             + " red-component of an image that has not been stored in the program"));
-    this.commands.put("green-component", s -> new Component("green-component", s.next(),
-            s.next(), s.nextLine().trim(), this.images, this.view, "Cannot get the"
+    this.commands.put("green-component", (s, v) -> new Component("green-component", s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot get the"
             + " green-component of an image that has not been stored in the program"));
-    this.commands.put("blue-component", s -> new Component("blue-component", s.next(),
-            s.next(), s.nextLine().trim(), this.images, this.view, "Cannot get the"
+    this.commands.put("blue-component", (s, v) -> new Component("blue-component", s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot get the"
             + " blue-component of an image that has not been stored in the program"));
-    this.commands.put("value-component", s -> new Component("value-component", s.next(),
-            s.next(), s.nextLine().trim(), this.images, this.view, "Cannot get the"
+    this.commands.put("value-component", (s, v) -> new Component("value-component", s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot get the"
             + " value-component of an image that has not been stored in the program"));
-    this.commands.put("luma-component", s -> new Component("luma-component", s.next(),
-            s.next(), s.nextLine().trim(), this.images, this.view, "Cannot get the"
+    this.commands.put("luma-component", (s, v) -> new Component("luma-component", s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot get the"
             + " luma-component of an image that has not been stored in the program"));
-    this.commands.put("intensity-component", s -> new Component("intensity-component",
-            s.next(), s.next(), s.nextLine().trim(), this.images, this.view, "Cannot"
+    this.commands.put("intensity-component", (s, v) -> new Component("intensity-component",
+            s.next(), s.next(), s.nextLine().trim(), this.images, v, "Cannot"
             + " get the intensity-component of an image that has not been stored in the program"));
-    this.commands.put("blur", s -> new Filter("blur", s.next(), s.next(), s.nextLine().trim(),
-            this.images, this.view, "Cannot apply a filter to an image that has not"
+    this.commands.put("blur", (s, v) -> new Filter("blur", s.next(), s.next(), s.nextLine().trim(),
+            this.images, v, "Cannot apply a filter to an image that has not"
+            + " been stored in the program"));
+    this.commands.put("sharpen", (s, v) -> new Filter("sharpen", s.next(), s.next(),
+            s.nextLine().trim(), this.images, v, "Cannot apply a filter to an image that has not"
+            + " been stored in the program"));
+    this.commands.put("convolve", (s, v) -> new Convolve(s.next(), s.next(), s.next(),
+            s.nextLine().trim(), this.images, v, "Cannot convolve an image that has not been"
+            + " stored in the program"));
+    this.commands.put("box-blur", (s, v) -> new RadiusBlur("box-blur", s.next(), s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot blur an image that has not"
             + " been stored in the program"));
-    this.commands.put("sharpen", s -> new Filter("sharpen", s.next(), s.next(), s.nextLine().trim(),
-            this.images, this.view, "Cannot apply a filter to an image that has not"
+    this.commands.put("blur-radius", (s, v) -> new RadiusBlur("blur-radius", s.next(), s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot blur an image that has not"
             + " been stored in the program"));
-    this.commands.put("greyscale", s -> new ColorTransformation("greyscale", s.next(), s.next(),
-            s.nextLine().trim(), this.images, this.view, "Cannot apply a"
+    this.commands.put("greyscale", (s, v) -> new ColorTransformation("greyscale", s.next(),
+            s.next(), s.nextLine().trim(), this.images, v, "Cannot apply a"
             + " color transformation to an image that has not been stored in the program"));
-    this.commands.put("sepia", s -> new ColorTransformation("sepia", s.next(), s.next(),
-            s.nextLine().trim(), this.images, this.view, "Cannot apply a"
+    this.commands.put("sepia", (s, v) -> new ColorTransformation("sepia", s.next(), s.next(),
+            s.nextLine().trim(), this.images, v, "Cannot apply a"
             + " color transformation to an image that has not been stored in the program"));
-    this.commands.put("mosaic", s -> new Mosaic(s.next(), s.next(), s.next(), this.images,
-            this.view, "Cannot mosaic an image that has not been stored in the program"));
-    this.commands.put("mask", s -> new Mask(s.next(), s.next(), this.images, this.view,
+    this.commands.put("mosaic", (s, v) -> new Mosaic(s.next(), s.next(), s.next(), this.images,
+            v, "Cannot mosaic an image that has not been stored in the program"));
+    this.commands.put("mask", (s, v) -> new Mask(s.next(), s.next(), this.images, v,
             "Cannot mask an image that has not been stored in the program"));
-    this.commands.put("downsize", s -> new Downsize(s.next(), s.next(), s.next(), s.next(),
-            this.images, this.view, "Cannot downsize an image that has not been stored"
+    this.commands.put("downsize", (s, v) -> new Downsize(s.next(), s.next(), s.next(), s.next(),
+            this.images, v, "Cannot downsize an image that has not been stored"
+            + " in the program"));
+    this.commands.put("downsize-area", (s, v) -> new Downsize("downsize-area", s.next(), s.next(),
+            s.next(), s.next(), this.images, v, "Cannot downsize an image that has not been stored"
             + " in the program"));
   }
 
   @Override
   public void runProcessor() throws IllegalStateException {
-    Scanner scanner = new Scanner(this.readable);
+    this.run(new Scanner(this.readable));
+  }
+
+  /**
+   * Runs a whole script given as lines of text, the same way as a script given with -file. This
+   * lets a script that was put together in memory run without being written to a file first.
+   *
+   * @param lines the lines of the script, in order
+   * @throws IllegalStateException if an error message couldn't be rendered
+   */
+  public void runScript(List<String> lines) throws IllegalStateException {
+    if (!this.runAnalyzed(lines)) {
+      // every line ends with a separator, since commands with a mask read to the end of the line
+      this.run(new Scanner(String.join(System.lineSeparator(), lines) + System.lineSeparator()));
+    }
+  }
+
+  /**
+   * Runs commands read from a scanner until it runs out or the user quits.
+   *
+   * @param scanner where the commands come from
+   * @throws IllegalStateException if an error message couldn't be rendered
+   */
+  private void run(Scanner scanner) throws IllegalStateException {
     while (scanner.hasNext()) {
       String next = scanner.next();
       if (next.equalsIgnoreCase("q") || (next.equalsIgnoreCase("quit"))) {
@@ -103,9 +182,14 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
         String scriptName = scanner.next();
         File file = new File(scriptName);
         try {
+          if ((this.settings.isOptimizingScripts() || this.settings.isConcurrentScripts())
+                  && this.runAnalyzed(Files.readAllLines(file.toPath(),
+                  Charset.defaultCharset()))) {
+            return;
+          }
           scanner = new Scanner(file);
         }
-        catch (FileNotFoundException e) {
+        catch (IOException e) {
           try {
             this.view.renderMessage("File " + scriptName + " not found!");
           }
@@ -115,22 +199,195 @@ public class ImageProcessorControllerImpl implements ImageProcessorController {
         }
       }
       else {
-        ImageProcessorCommand command;
-        Function<Scanner, ImageProcessorCommand> cmd = this.commands.getOrDefault(next, null);
-        if (cmd == null) {
-          try {
-            this.view.renderMessage("Could not recognize the command: " + next);
+        this.runCommand(next, scanner, this.view);
+      }
+    }
+  }
+
+  /**
+   * Runs a script as a whole if the settings ask for scripts to be optimized or run concurrently
+   * and the script can be analyzed.
+   *
+   * @param lines the lines of the script, in order
+   * @return true if the script was run, false if it still has to be run one token at a time
+   * @throws IllegalStateException if an error message couldn't be rendered
+   */
+  private boolean runAnalyzed(List<String> lines) throws IllegalStateException {
+    if (!this.settings.isOptimizingScripts() && !this.settings.isConcurrentScripts()) {
+      return false;
+    }
+    ScriptAnalyzer script = ScriptAnalyzer.analyze(lines);
+    if (script == null) {
+      return false;
+    }
+    if (this.settings.isConcurrentScripts()) {
+      this.runConcurrently(script);
+    }
+    else {
+      this.runOptimized(script);
+    }
+    return true;
+  }
+
+  /**
+   * Runs a single command, reading its arguments from a scanner.
+   *
+   * @param next the name of the command
+   * @param scanner where the arguments of the command come from
+   * @param view the view the command renders its messages to
+   * @throws IllegalStateException if an error message couldn't be rendered
+   */
+  private void runCommand(String next, Scanner scanner, ImageProcessorView view)
+          throws IllegalStateException {
+    ImageProcessorCommand command;
+    BiFunction<Scanner, ImageProcessorView, ImageProcessorCommand> cmd =
+            this.commands.getOrDefault(next, null);
+    if (cmd == null) {
+      try {
+        view.renderMessage("Could not recognize the command: " + next);
+      }
+      catch (IOException e) {
+        throw new IllegalStateException("'Could not recognize the command' couldn't be"
+                + " rendered");
+      }
+    }
+    else {
+      command = cmd.apply(scanner, view);
+      command.setSettings(this.settings);
+      command.checkStorage();
+    }
+  }
+
+  /**
+   * Runs an analyzed script, skipping the lines whose images never reach a save and removing
+   * every image from storage right after the last line that reads it.
+   *
+   * @param script the analyzed script
+   * @throws IllegalStateException if an error message couldn't be rendered
+   */
+  private void runOptimized(ScriptAnalyzer script) throws IllegalStateException {
+    for (int i = 0; i < script.size(); i++) {
+      if (!script.isLive(i)) {
+        continue;
+      }
+      Scanner line = new Scanner(script.getLine(i).getText() + System.lineSeparator());
+      this.runCommand(line.next(), line, this.view);
+      for (String name : script.lastUsedBy(i)) {
+        this.images.removeImage(name);
+      }
+    }
+  }
+
+  /**
+   * Runs an analyzed script with lines that don't depend on each other running at the same time.
+   * A line waits for the lines before it that create the images it reads, that read or create the
+   * image it replaces, and that use the same file. Every line renders its messages into its own
+   * buffer, and the buffers are shown in script order, so the messages and the images stored at
+   * the end are the same as running the script one line at a time. If the settings optimize
+   * scripts, unused lines are skipped and images are removed once every line that reads them is
+   * done.
+   *
+   * @param script the analyzed script
+   * @throws IllegalStateException if an error message couldn't be rendered, or a line failed
+   */
+  private void runConcurrently(ScriptAnalyzer script) throws IllegalStateException {
+    boolean optimize = this.settings.isOptimizingScripts();
+    ExecutorService workers = Executors.newFixedThreadPool(
+            this.settings.getExecutor().getParallelism());
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    List<BufferedView> buffers = new ArrayList<>();
+    // for every image name and file, the last line that wrote it, the lines that read it since,
+    // and the removal of its last version, which a line replacing it has to wait for
+    Map<String, CompletableFuture<Void>> lastWriter = new HashMap<>();
+    Map<String, List<CompletableFuture<Void>>> readers = new HashMap<>();
+    Map<String, CompletableFuture<Void>> removals = new HashMap<>();
+    try {
+      for (int i = 0; i < script.size(); i++) {
+        if (optimize && !script.isLive(i)) {
+          done.add(null);
+          buffers.add(null);
+          continue;
+        }
+        ScriptLine line = script.getLine(i);
+        List<String> reads = new ArrayList<>();
+        List<String> writes = new ArrayList<>();
+        for (String input : line.getInputs()) {
+          reads.add("image " + input);
+        }
+        if (line.getOutput() != null) {
+          writes.add("image " + line.getOutput());
+        }
+        if (line.getFile() != null) {
+          (line.writesFile() ? writes : reads).add("file " + line.getFile());
+        }
+
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (String resource : reads) {
+          if (lastWriter.containsKey(resource)) {
+            dependencies.add(lastWriter.get(resource));
+          }
+        }
+        for (String resource : writes) {
+          if (lastWriter.containsKey(resource)) {
+            dependencies.add(lastWriter.get(resource));
           }
-          catch (IOException e) {
-            throw new IllegalStateException("'Could not recognize the command' couldn't be"
-                    + " rendered");
+          dependencies.addAll(readers.getOrDefault(resource, List.of()));
+          if (removals.containsKey(resource)) {
+            dependencies.add(removals.remove(resource));
           }
         }
-        else {
-          command = cmd.apply(scanner);
-          command.checkStorage();
+
+        BufferedView buffer = new BufferedView();
+        CompletableFuture<Void> future = CompletableFuture.allOf(
+                dependencies.toArray(new CompletableFuture<?>[0])).thenRunAsync(() -> {
+                  Scanner scanner = new Scanner(line.getText() + System.lineSeparator());
+                  this.runCommand(scanner.next(), scanner, buffer);
+                }, workers);
+        done.add(future);
+        buffers.add(buffer);
+
+        for (String resource : reads) {
+          readers.computeIfAbsent(resource, r -> new ArrayList<>()).add(future);
+        }
+        for (String resource : writes) {
+          lastWriter.put(resource, future);
+          readers.put(resource, new ArrayList<>());
+        }
+        if (optimize) {
+          for (String name : script.lastUsedBy(i)) {
+            // every line reading this version of the image has to be done before it's removed
+            List<CompletableFuture<Void>> users = readers.get("image " + name);
+            removals.put("image " + name, CompletableFuture.allOf(
+                    users.toArray(new CompletableFuture<?>[0])).thenRun(
+                        () -> this.images.removeImage(name)));
+          }
         }
       }
+
+      for (int i = 0; i < done.size(); i++) {
+        if (done.get(i) == null) {
+          continue;
+        }
+        try {
+          done.get(i).join();
+          buffers.get(i).flushTo(this.view);
+        }
+        catch (CompletionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw e;
+        }
+        catch (IOException e) {
+          throw new IllegalStateException("Couldn't render the error message");
+        }
+      }
+      for (CompletableFuture<Void> removal : removals.values()) {
+        removal.join();
+      }
+    }
+    finally {
+      workers.shutdown();
     }
   }
 
@@ -1,118 +1,240 @@
 package controller;
 
 import java.awt.image.BufferedImage;
-import java.awt.Color;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.InputStream;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
 import javax.imageio.ImageIO;
-import model.Pixel;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import model.ImageModel;
+import model.MappedImage;
+import model.PackedImage;
+import model.TiledImage;
+import model.WritableImageModel;
 
 /**
  * This class contains utility methods to read PPM or non PPM files and simply return its contents.
  */
 public class ImageUtil {
+  // enough 256x256 tiles to fill 64MB
+  static final int MAX_RESIDENT_TILES = 256;
+  private static long mappedThreshold = Math.min(Integer.MAX_VALUE - 8,
+          Long.getLong("imageprocessor.mappedThreshold", Runtime.getRuntime().maxMemory() / 16));
 
   /**
-   * Read an image file in the PPM format and return a 2D array of pixels representing the image.
+   * Read an image file in the PPM format straight into packed storage, without creating a pixel
+   * object for every position or holding the text of the whole file in memory. Files with a
+   * maximum value above 255 are scaled down to 8 bits per component, which is all packed storage
+   * can hold.
    *
    * @param filename the path of the file
-   * @return a 2D array of pixels with each pixel containing colors from the PPM file
+   * @return an image with the colors from the PPM file
    * @throws IllegalArgumentException if the file isn't found, the PPM does not start with P3, or
    *      if the width, height, or maximum value are non-positive integers
    */
-  public static Pixel[][] readPPM(String filename) throws IllegalArgumentException {
-    Scanner sc;
+  public static WritableImageModel readPackedPPM(String filename) throws IllegalArgumentException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(filename), 1 << 16)) {
+      if (!"P3".equals(nextToken(in))) {
+        throw new IllegalArgumentException("Invalid PPM file: plain RAW file should begin with P3");
+      }
+      int width = nextInt(in);
+      if (width <= 0) {
+        throw new IllegalArgumentException("Provided width is a non-positive integer");
+      }
+      int height = nextInt(in);
+      if (height <= 0) {
+        throw new IllegalArgumentException("Provided height is a non-positive integer");
+      }
+      int maxValue = nextInt(in);
+      if (maxValue <= 0) {
+        throw new IllegalArgumentException("Provided maximum value of a color is a non-positive"
+                + " integer");
+      }
 
-    try {
-      sc = new Scanner(new FileInputStream(filename));
+      WritableImageModel image = createImage(height, width, filename);
+      int[] row = new int[width];
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          int r = nextInt(in);
+          int g = nextInt(in);
+          int b = nextInt(in);
+          if (r < 0 || r > maxValue || g < 0 || g > maxValue || b < 0 || b > maxValue) {
+            throw new IllegalArgumentException("Invalid component value, either negative or"
+                    + " higher than the maximum value: " + maxValue);
+          }
+          if (maxValue > 255) {
+            r = (int) ((long) r * 255 / maxValue);
+            g = (int) ((long) g * 255 / maxValue);
+            b = (int) ((long) b * 255 / maxValue);
+          }
+          row[j] = PackedImage.pack(r, g, b);
+        }
+        image.setRow(i, row);
+      }
+      return image;
     }
     catch (FileNotFoundException e) {
       throw new IllegalArgumentException("File " + filename + " not found!");
     }
-
-    StringBuilder builder = new StringBuilder();
-    // read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s).append(System.lineSeparator());
-        // technically gets rid of the '# Created by GIMP version 2.10.20 PNM plug-in' line
-      }
+    catch (IOException e) {
+      throw new IllegalArgumentException("File " + filename + " could not be read");
     }
+  }
 
-    // now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
-
-    String token;
-
-    token = sc.next();
-    if (!token.equals("P3")) {
-      throw new IllegalArgumentException("Invalid PPM file: plain RAW file should begin with P3");
+  /**
+   * Read an image file in a non PPM format straight into packed storage, copying a whole row at a
+   * time instead of creating a pixel object for every position. Images with more pixels than the
+   * mapped threshold aren't decoded up front at all; they are loaded as a tiled image that only
+   * decodes the tiles that are actually read.
+   *
+   * @param filename the path of the file
+   * @return an image with the colors from the non PPM file, or null if it couldn't be read
+   * @throws IllegalArgumentException if the file isn't found
+   */
+  public static ImageModel readPackedNonPPM(String filename) throws IllegalArgumentException {
+    File file = new File(filename);
+    if (!file.isFile()) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
     }
-    int width = sc.nextInt();
-    if (width <= 0) {
-      throw new IllegalArgumentException("Provided width is a non-positive integer");
+    try {
+      int height;
+      int width;
+      try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+        ImageReader reader = ImageIOTileSource.readerFor(stream);
+        height = reader.getHeight(0);
+        width = reader.getWidth(0);
+        reader.dispose();
+      }
+      if ((long) height * width > mappedThreshold) {
+        return new TiledImage(height, width, filename, new ImageIOTileSource(file),
+                MAX_RESIDENT_TILES);
+      }
+
+      BufferedImage originalImage = ImageIO.read(file);
+      if (originalImage == null) {
+        return null;
+      }
+      WritableImageModel image = createImage(height, width, filename);
+      int[] row = new int[width];
+      for (int i = 0; i < height; i++) {
+        originalImage.getRGB(0, i, width, 1, row, 0, width);
+        for (int j = 0; j < width; j++) {
+          row[j] = row[j] & 0xFFFFFF;
+          // drop the alpha channel, packed images only hold red, green, and blue
+        }
+        image.setRow(i, row);
+      }
+      return image;
     }
-    int height = sc.nextInt();
-    if (height <= 0) {
-      throw new IllegalArgumentException("Provided height is a non-positive integer");
+    catch (IOException e) {
+      // a proper error message will be rendered by the classes that call this
+      return null;
     }
-    int maxValue = sc.nextInt();
-    if (maxValue <= 0) {
-      throw new IllegalArgumentException("Provided maximum value of a color is a non-positive"
-              + " integer");
+  }
+
+  /**
+   * Creates a blank image with packed storage for the given dimensions. Images that would take up
+   * more than the allowed share of the heap are backed by a memory-mapped file instead.
+   *
+   * @param height the height of the new image
+   * @param width the width of the new image
+   * @param filepath the path to the original image on the user's device
+   * @return a blank image with the given dimensions
+   */
+  public static WritableImageModel createImage(int height, int width, String filepath) {
+    if ((long) height * width > mappedThreshold) {
+      return new MappedImage(height, width, filepath);
     }
+    return new PackedImage(height, width, filepath);
+  }
 
-    Pixel[][] image = new Pixel[height][width];
-    for (int i = 0; i < image.length; i++) {
-      for (int j = 0; j < image[i].length; j++) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-        if (r < 0 || r > maxValue || g < 0 || g > maxValue || b < 0 || b > maxValue) {
-          throw new IllegalArgumentException("Invalid component value, either negative or higher" +
-                  " than the maximum value: " + maxValue);
-        }
-        image[i][j] = new Pixel(r, g, b);
-      }
+  /**
+   * Sets the number of pixels above which new images are backed by a memory-mapped file instead
+   * of the heap.
+   *
+   * @param pixels the largest number of pixels an image on the heap may have
+   * @throws IllegalArgumentException if the number of pixels is negative
+   */
+  public static void setMappedThreshold(long pixels) throws IllegalArgumentException {
+    if (pixels < 0) {
+      throw new IllegalArgumentException("Threshold must not be negative");
     }
+    mappedThreshold = Math.min(pixels, Integer.MAX_VALUE - 8);
+  }
 
-    return image;
+  /**
+   * Reads the next whitespace-separated token of a PPM file, skipping comments.
+   *
+   * @param in the stream to read from
+   * @return the token, or null if the end of the file was reached
+   * @throws IOException if the file couldn't be read
+   */
+  private static String nextToken(InputStream in) throws IOException {
+    int c = skipWhitespace(in);
+    if (c == -1) {
+      return null;
+    }
+    StringBuilder token = new StringBuilder();
+    while (c != -1 && !Character.isWhitespace(c)) {
+      token.append((char) c);
+      c = in.read();
+    }
+    return token.toString();
   }
 
   /**
-   * Read an image file in a non PPM format and return a 2D array of pixels representing the image.
+   * Reads the next integer of a PPM file, skipping comments, without creating a String for it.
    *
-   * @param filename the path of the file
-   * @return a 2D array of pixels with each pixel containing colors from the non PPM file
+   * @param in the stream to read from
+   * @return the integer
+   * @throws IOException if the file couldn't be read
+   * @throws IllegalArgumentException if the file ends early or the token isn't an integer
    */
-  public static Pixel[][] readNonPPM(String filename) {
-    try {
-      FileInputStream file = new FileInputStream(filename);
-      // checks if the file exists at all
+  private static int nextInt(InputStream in) throws IOException, IllegalArgumentException {
+    int c = skipWhitespace(in);
+    if (c == -1) {
+      throw new IllegalArgumentException("Invalid PPM file: ended before all values were read");
     }
-    catch (FileNotFoundException e) {
-      throw new IllegalArgumentException("File " + filename + " not found!");
+    boolean negative = c == '-';
+    if (negative) {
+      c = in.read();
     }
-    Pixel[][] image = null;
-    try {
-      BufferedImage originalImage = ImageIO.read(new File(filename));
-      image = new Pixel[originalImage.getHeight()][originalImage.getWidth()];
-      for (int i = 0; i < originalImage.getHeight(); i++) {
-        for (int j = 0; j < originalImage.getWidth(); j++) {
-          Color color = new Color(originalImage.getRGB(j, i));
-          image[i][j] = new Pixel(color.getRed(), color.getGreen(), color.getBlue());
+    long value = 0;
+    int digits = 0;
+    while (c >= '0' && c <= '9') {
+      value = Math.min(value * 10 + (c - '0'), Integer.MAX_VALUE);
+      digits++;
+      c = in.read();
+    }
+    if (digits == 0 || (c != -1 && !Character.isWhitespace(c))) {
+      throw new IllegalArgumentException("Invalid PPM file: expected an integer");
+    }
+    return (int) (negative ? -value : value);
+  }
+
+  /**
+   * Skips whitespace and comments, which run from a '#' to the end of the line.
+   *
+   * @param in the stream to read from
+   * @return the first character after the skipped part, or -1 at the end of the file
+   * @throws IOException if the file couldn't be read
+   */
+  private static int skipWhitespace(InputStream in) throws IOException {
+    int c = in.read();
+    while (c != -1 && (Character.isWhitespace(c) || c == '#')) {
+      if (c == '#') {
+        while (c != -1 && c != '\n') {
+          c = in.read();
         }
       }
+      else {
+        c = in.read();
+      }
     }
-    catch (IOException e) {
-      // do nothing, (return a null image)
-      // a proper error message will be thrown in the classes that call this
-      // if I write an error message here, a similar message will render twice
-    }
-    return image;
+    return c;
   }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import model.ImageModel;
 import model.Image;
 import model.ImageStorage;
+import model.TiledImage;
 import view.ImageProcessorView;
 
 /**
@@ -49,6 +50,13 @@ public class Load extends AImageProcessorCommand {
     this.supportedFormats.add("bmp");
   }
 
+  /**
+   * Reads the image from its file. If the settings have a cache on disk, an image that was read
+   * from a file with exactly the same bytes before is read back from the cache instead.
+   *
+   * @param model not used, since a loaded image doesn't depend on any other image
+   * @return the loaded image, or null if the format isn't supported or the file couldn't be read
+   */
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     String format = "empty";
@@ -58,15 +66,32 @@ public class Load extends AImageProcessorCommand {
       }
     }
     if (this.filename.endsWith("ppm")) {
-      return new Image(ImageUtil.readPPM(this.filename), this.filename);
+      format = "ppm";
     }
-    else if (!format.equals("empty")) {
-      return new Image(ImageUtil.readNonPPM(this.filename), this.filename);
-    }
-    else {
+    else if (format.equals("empty")) {
       return null;
       // other methods check for null
     }
+
+    DiskCache disk = this.settings.getDiskCache();
+    String key = disk == null ? null : disk.fileKey(this.filename, format);
+    ImageModel image = key == null ? null : disk.get(key, this.filename);
+    if (image == null) {
+      if (format.equals("ppm")) {
+        image = ImageUtil.readPackedPPM(this.filename);
+      }
+      else {
+        image = ImageUtil.readPackedNonPPM(this.filename);
+      }
+      // tiled images are only decoded where they are read, so writing all of them would cost more
+      if (key != null && image != null && !(image instanceof TiledImage)) {
+        disk.put(key, image);
+      }
+    }
+    if (key != null && image != null) {
+      disk.remember(image, key);
+    }
+    return image;
   }
 
   @Override
@@ -31,6 +31,11 @@ public class Mask extends AImageProcessorCommand {
     super(originalImage, nameOfNewImage, images, view, messageToUser);
   }
 
+  @Override
+  public String cacheKey() {
+    return "mask";
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     return new ColorTransformation("greyscale").makeModelChange(model);
@@ -2,13 +2,12 @@ package controller;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 import java.util.Random;
-import model.Image;
 import model.ImageModel;
 import model.ImageStorage;
-import model.Pixel;
+import model.PackedImage;
+import model.WritableImageModel;
 import view.ImageProcessorView;
 
 /**
@@ -73,8 +72,10 @@ public class Mosaic extends AImageProcessorCommand {
    */
   public static class Seed {
     private final Posn position;
-    private final List<Pixel> cluster;
-    private final List<Posn> pixelPositions;
+    private long totalRed;
+    private long totalGreen;
+    private long totalBlue;
+    private int clusterSize;
 
     /**
      * Represents a seed of the mosaic that has an average color based on the pixels surrounding it.
@@ -85,45 +86,50 @@ public class Mosaic extends AImageProcessorCommand {
      */
     public Seed(Posn position) {
       this.position = position;
-      this.cluster = new ArrayList<>();
-      this.pixelPositions = new ArrayList<>();
     }
 
     /**
-     * Adds a specific pixel to this seed for processing the average colors later on. This method
-     * adds the pixel for the RGB values, as well as the position of that pixel relative to the
-     * image because there is no supported functionality of getting the position of a pixel.
+     * Adds a specific pixel to this seed's cluster for processing the average colors later on.
+     * Only the running totals of the colors are kept, the position of the pixel is remembered by
+     * the caller.
      *
-     * @param pixel the pixel to be added
-     * @param posn the position of the pixel
+     * @param rgb the packed color of the pixel to be added
      */
-    private void addPixelAndPosition(Pixel pixel, Posn posn) {
-      this.cluster.add(pixel);
-      this.pixelPositions.add(posn);
+    private void addPixel(int rgb) {
+      this.totalRed = this.totalRed + PackedImage.red(rgb);
+      this.totalGreen = this.totalGreen + PackedImage.green(rgb);
+      this.totalBlue = this.totalBlue + PackedImage.blue(rgb);
+      this.clusterSize++;
     }
 
     /**
      * Gets the average color of the pixels in a seed's cluster. Should only be used when the
      * cluster is completely filled.
      *
-     * @return the pixel with the average colors of the pixels in the cluster.
+     * @return the packed average color of the pixels in the cluster.
      */
-    private Pixel getAverageColor() {
-      int totalRed = 0;
-      int totalGreen = 0;
-      int totalBlue = 0;
-      for (Pixel pixel : this.cluster) {
-        totalRed = totalRed + pixel.getRed();
-        totalGreen = totalGreen + pixel.getGreen();
-        totalBlue = totalBlue + pixel.getBlue();
+    private int getAverageColor() {
+      if (this.clusterSize == 0) {
+        return 0;
       }
-      int averageRed = totalRed / this.cluster.size();
-      int averageGreen = totalGreen / this.cluster.size();
-      int averageBlue = totalBlue / this.cluster.size();
-      return new Pixel(averageRed, averageGreen, averageBlue);
+      int averageRed = (int) (this.totalRed / this.clusterSize);
+      int averageGreen = (int) (this.totalGreen / this.clusterSize);
+      int averageBlue = (int) (this.totalBlue / this.clusterSize);
+      return PackedImage.pack(averageRed, averageGreen, averageBlue);
     }
   }
 
+  /**
+   * Returns null, since the seeds are placed at random and running the same mosaic twice gives a
+   * different image each time.
+   *
+   * @return null
+   */
+  @Override
+  public String cacheKey() {
+    return null;
+  }
+
   @Override
   public ImageModel makeModelChange(ImageModel model) {
     try {
@@ -138,30 +144,47 @@ public class Mosaic extends AImageProcessorCommand {
                   + " couldn't be rendered");
         }
       }
-      Pixel[][] newContents = new Pixel[model.getHeight()][model.getWidth()];
 
       // initializes all the positions for the number of seeds specified by the user
       ArrayList<Seed> seeds = this.initializeSeeds(model, numSeeds);
 
-      // goes through each pixel in the copy, gets the closest seed to the pixel at position (i, j)
-      // when the seed is identified, add the pixel at position (i, j) to the seed's cluster
+      // goes through each pixel and remembers the closest seed to the pixel at position (i, j),
+      // with bands of rows being worked on at the same time
+      int[][] closestSeeds = new int[model.getHeight()][model.getWidth()];
+      this.forEachBand(model.getHeight(), model.getWidth(), (fromRow, toRow) -> {
+        for (int i = fromRow; i < toRow; i++) {
+          for (int j = 0; j < model.getWidth(); j++) {
+            closestSeeds[i][j] = this.getClosestSeedIndex(seeds, i, j);
+          }
+        }
+      });
+
+      // add every pixel to the cluster of the seed it belongs to, one row at a time
+      int[] row = new int[model.getWidth()];
       for (int i = 0; i < model.getHeight(); i++) {
+        model.getRow(i, row);
         for (int j = 0; j < model.getWidth(); j++) {
-          int indexOfClosestSeed = this.getClosestSeedIndex(seeds, i, j);
-          seeds.get(indexOfClosestSeed).addPixelAndPosition(model.getPixel(i, j), new Posn(i, j));
+          seeds.get(closestSeeds[i][j]).addPixel(row[j]);
         }
       }
 
-      // reconstruct the image based on the new information in the list of seeds
-      for (Seed seed : seeds) {
-        Pixel averageColor = seed.getAverageColor();
-        for (int pixelCount = 0; pixelCount < seed.cluster.size(); pixelCount++) {
-          int xPos = seed.pixelPositions.get(pixelCount).x;
-          int yPos = seed.pixelPositions.get(pixelCount).y;
-          newContents[xPos][yPos] = averageColor;
-        }
+      // reconstruct the image based on the average color of each seed
+      int[] averageColors = new int[seeds.size()];
+      for (int seed = 0; seed < seeds.size(); seed++) {
+        averageColors[seed] = seeds.get(seed).getAverageColor();
       }
-      return new Image(newContents, model.getFilepath());
+      WritableImageModel newContents = this.createImage(model.getHeight(), model.getWidth(),
+              model.getFilepath());
+      this.forEachBand(model.getHeight(), model.getWidth(), (fromRow, toRow) -> {
+        int[] averages = new int[model.getWidth()];
+        for (int i = fromRow; i < toRow; i++) {
+          for (int j = 0; j < averages.length; j++) {
+            averages[j] = averageColors[closestSeeds[i][j]];
+          }
+          newContents.setRow(i, averages);
+        }
+      });
+      return newContents;
     }
     catch (NumberFormatException e) {
       try {
@@ -0,0 +1,99 @@
+package controller;
+
+import java.io.IOException;
+import model.BoxBlur;
+import model.ImageModel;
+import model.ImageStorage;
+import model.WritableImageModel;
+import view.ImageProcessorView;
+
+/**
+ * The command for blurring an image out to a given radius, either with a box blur or with a blur
+ * that approximates a Gaussian. Unlike blur, which has a fixed 3x3 kernel, the time these take
+ * doesn't depend on the radius, so a single large blur replaces running blur over and over.
+ */
+public class RadiusBlur extends AImageProcessorCommand {
+  private final String operation;
+  private final String radius;
+
+  /**
+   * Takes in the kind of blur and the radius the user wants, as well as the view for rendering
+   * error messages.
+   *
+   * @param operation box-blur for a box blur, or blur-radius for a Gaussian one
+   * @param radius how far the blur reaches from each pixel
+   * @param view the view for rendering messages
+   */
+  public RadiusBlur(String operation, String radius, ImageProcessorView view) {
+    super(view);
+    this.operation = operation;
+    this.radius = radius;
+  }
+
+  /**
+   * Takes in the relevant arguments for being able to blur an image out to a radius.
+   *
+   * @param operation box-blur for a box blur, or blur-radius for a Gaussian one
+   * @param radius how far the blur reaches from each pixel
+   * @param originalImage the name of the original image to be operated on
+   * @param nameOfNewImage the name of the new image to be created
+   * @param maskedImage the name of the masked image, could be empty
+   * @param images the storage of processed images so far
+   * @param view the view that transmits output to the user
+   * @param messageToUser a message to be shown to the user based on input
+   */
+  public RadiusBlur(String operation, String radius, String originalImage, String nameOfNewImage,
+                    String maskedImage, ImageStorage images, ImageProcessorView view,
+                    String messageToUser) {
+    super(originalImage, nameOfNewImage, maskedImage, images, view, messageToUser);
+    this.operation = operation;
+    this.radius = radius;
+  }
+
+  @Override
+  public String cacheKey() {
+    // results near the edges depend on the border mode
+    return this.operation + " " + this.radius + " " + this.settings.getBorderMode();
+  }
+
+  @Override
+  public ImageModel makeModelChange(ImageModel original) {
+    boolean gaussian;
+    switch (this.operation) {
+      case "box-blur":
+        gaussian = false;
+        break;
+      case "blur-radius":
+        gaussian = true;
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid type of blur");
+    }
+    BoxBlur blur;
+    try {
+      blur = new BoxBlur(original, Integer.parseInt(this.radius), gaussian,
+              this.settings.getBorderMode());
+    }
+    catch (IllegalArgumentException e) {
+      // a radius that isn't a number is a NumberFormatException, which is one of these too
+      String message = e instanceof NumberFormatException ? "Specified radius must be an integer"
+              : e.getMessage();
+      try {
+        this.view.renderMessage(message);
+        return original;
+      }
+      catch (IOException e2) {
+        throw new IllegalStateException("'" + message + "' couldn't be rendered");
+      }
+    }
+    WritableImageModel newContents = this.createImage(original.getHeight(), original.getWidth(),
+            original.getFilepath());
+    // every step reads what the one before it wrote anywhere in the image, so each one finishes
+    // before the next starts, and the columns are split into bands just like rows are
+    this.forEachBand(original.getHeight(), original.getWidth(), blur::blurRows);
+    this.forEachBand(original.getWidth(), original.getHeight(), blur::blurColumns);
+    this.forEachBand(original.getHeight(), original.getWidth(),
+            (fromRow, toRow) -> blur.writeRows(newContents, fromRow, toRow));
+    return newContents;
+  }
+}
@@ -0,0 +1,227 @@
+package controller;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import model.DerivedImage;
+import model.ImageModel;
+
+/**
+ * Remembers the images that commands have created, so that running the same command with the same
+ * parameters on the same image again hands back the earlier result instead of working it out from
+ * scratch. Images are never changed once a command has created them, so an image is recognized by
+ * its identity rather than by comparing every pixel. The remembered images are kept under a budget,
+ * and the least recently used ones are forgotten first.
+ *
+ * <p>The images a result was created from are only held on to weakly, so remembering a result
+ * doesn't keep its input in memory, and a result is forgotten once its input or mask is no longer
+ * in use, since it can't be looked up again.</p>
+ *
+ * <p>Results that are only views of other images, such as a flip or deferred changes, aren't
+ * remembered. A view holds on to the image it was made from, so remembering it would keep its input
+ * in use and the result would never be forgotten, and making the view again is cheap anyway.</p>
+ */
+public class ResultCache {
+  private final long budget;
+  // access-ordered, so the least recently used result always comes first
+  private final LinkedHashMap<Key, ImageModel> results;
+  // the images of keys that are no longer in use
+  private final ReferenceQueue<ImageModel> unused;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Identifies a result by the command that created it and the images it was created from.
+   */
+  private static class Key {
+    private final String operation;
+    private final ImageReference input;
+    private final ImageReference mask;
+    // worked out while the images are still around, so it stays the same once they're gone
+    private final int hash;
+
+    /**
+     * Creates the key of a result.
+     *
+     * @param operation the command and parameters that created the result
+     * @param input the image the command was run on
+     * @param mask the mask the command was run with, or null if it had none
+     * @param queue the queue the images are put on once they are no longer in use, or null if the
+     *     key is only used for a lookup
+     */
+    private Key(String operation, ImageModel input, ImageModel mask,
+                ReferenceQueue<ImageModel> queue) {
+      this.operation = operation;
+      this.input = new ImageReference(input, this, queue);
+      this.mask = mask == null ? null : new ImageReference(mask, this, queue);
+      this.hash = 31 * (31 * operation.hashCode() + System.identityHashCode(input))
+              + System.identityHashCode(mask);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      // a key whose images are gone is only equal to itself
+      ImageModel input = this.input.get();
+      if (input == null || !this.operation.equals(key.operation) || input != key.input.get()) {
+        return false;
+      }
+      if (this.mask == null || key.mask == null) {
+        return this.mask == key.mask;
+      }
+      ImageModel mask = this.mask.get();
+      return mask != null && mask == key.mask.get();
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  /**
+   * A weak reference to an image a result was created from, which knows the key it belongs to so
+   * that the result can be forgotten once the image is no longer in use.
+   */
+  private static class ImageReference extends WeakReference<ImageModel> {
+    private final Key key;
+
+    /**
+     * Creates a reference to an image of a key.
+     *
+     * @param image the image
+     * @param key the key the image belongs to
+     * @param queue the queue the reference is put on once the image is no longer in use, or null
+     */
+    private ImageReference(ImageModel image, Key key, ReferenceQueue<ImageModel> queue) {
+      super(image, queue);
+      this.key = key;
+    }
+  }
+
+  /**
+   * Creates an empty cache that keeps the pixels of its results under a budget.
+   *
+   * @param budget the number of bytes of pixels that may be remembered
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public ResultCache(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget must not be negative");
+    }
+    this.budget = budget;
+    this.results = new LinkedHashMap<>(16, 0.75f, true);
+    this.unused = new ReferenceQueue<>();
+  }
+
+  /**
+   * Creates an empty cache that may remember up to an eighth of the heap.
+   */
+  public ResultCache() {
+    this(Runtime.getRuntime().maxMemory() / 8);
+  }
+
+  /**
+   * Looks up the result of running a command on an image.
+   *
+   * @param operation the command and parameters, as given by the command's cache key
+   * @param input the image the command is run on
+   * @param mask the mask the command is run with, or null if it has none
+   * @return the earlier result, or null if there isn't one
+   */
+  public synchronized ImageModel get(String operation, ImageModel input, ImageModel mask) {
+    this.forgetUnused();
+    ImageModel result = this.results.get(new Key(operation, input, mask, null));
+    if (result == null) {
+      this.misses++;
+    }
+    else {
+      this.hits++;
+    }
+    return result;
+  }
+
+  /**
+   * Remembers the result of running a command on an image, forgetting the least recently used
+   * results if it goes over the budget. A result bigger than the whole budget or derived from
+   * another image isn't remembered.
+   *
+   * @param operation the command and parameters, as given by the command's cache key
+   * @param input the image the command was run on
+   * @param mask the mask the command was run with, or null if it had none
+   * @param result the image the command created
+   */
+  public synchronized void put(String operation, ImageModel input, ImageModel mask,
+                               ImageModel result) {
+    this.forgetUnused();
+    long size = bytes(result);
+    if (size > this.budget || result instanceof DerivedImage) {
+      return;
+    }
+    ImageModel old = this.results.put(new Key(operation, input, mask, this.unused), result);
+    if (old != null) {
+      this.bytes = this.bytes - bytes(old);
+    }
+    this.bytes = this.bytes + size;
+    Iterator<ImageModel> oldestFirst = this.results.values().iterator();
+    while (this.bytes > this.budget) {
+      this.bytes = this.bytes - bytes(oldestFirst.next());
+      oldestFirst.remove();
+    }
+  }
+
+  /**
+   * Returns the number of lookups that found an earlier result.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of lookups that didn't find an earlier result.
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "hits: " + this.hits + ", misses: " + this.misses + ", results: "
+            + this.results.size() + ", bytes: " + this.bytes + " of " + this.budget;
+  }
+
+  /**
+   * Forgets the results whose input or mask is no longer in use.
+   */
+  private void forgetUnused() {
+    for (Object gone = this.unused.poll(); gone != null; gone = this.unused.poll()) {
+      ImageModel old = this.results.remove(((ImageReference) gone).key);
+      if (old != null) {
+        this.bytes = this.bytes - bytes(old);
+      }
+    }
+  }
+
+  /**
+   * Estimates how many bytes the pixels of a result take up.
+   *
+   * @param image the result to be estimated
+   * @return the number of bytes
+   */
+  private static long bytes(ImageModel image) {
+    return 4L * image.getHeight() * image.getWidth();
+  }
+}
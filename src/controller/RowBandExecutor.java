@@ -0,0 +1,153 @@
+package controller;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the rows of an image into bands and works on the bands at the same time on a fork/join
+ * pool. Each band is handed to the work as a range of rows, so the work only has to be written
+ * once for a single thread, and it's up to the work to only write the rows it's given.
+ */
+public class RowBandExecutor {
+  // bands smaller than this many pixels cost more to hand out than to work on
+  private static final int MIN_BAND_PIXELS = 1 << 15;
+  // more bands than threads, so that threads that finish early can take over some work
+  private static final int BANDS_PER_THREAD = 4;
+
+  private final int parallelism;
+  private ForkJoinPool pool;
+
+  /**
+   * Work done on a band of rows.
+   */
+  public interface RowBand {
+
+    /**
+     * Works on a band of rows.
+     *
+     * @param fromRow the first row of the band
+     * @param toRow the row just after the last row of the band
+     */
+    void run(int fromRow, int toRow);
+  }
+
+  /**
+   * Work split in halves until each part is a single band.
+   */
+  private static class BandTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final RowBand band;
+    private final int fromRow;
+    private final int toRow;
+    private final int bandRows;
+    private final int rowAlignment;
+
+    /**
+     * Creates the work for a range of rows.
+     *
+     * @param band the work done on each band
+     * @param fromRow the first row of the range
+     * @param toRow the row just after the last row of the range
+     * @param bandRows the largest number of rows worked on without splitting
+     * @param rowAlignment the rows are only split at multiples of this many rows
+     */
+    private BandTask(RowBand band, int fromRow, int toRow, int bandRows, int rowAlignment) {
+      this.band = band;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+      this.bandRows = bandRows;
+      this.rowAlignment = rowAlignment;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.toRow - this.fromRow <= this.bandRows) {
+        this.band.run(this.fromRow, this.toRow);
+      }
+      else {
+        // bands hold at least one whole block of aligned rows, so there are at least two here
+        int blocks = (this.toRow - this.fromRow + this.rowAlignment - 1) / this.rowAlignment;
+        int middle = this.fromRow + blocks / 2 * this.rowAlignment;
+        invokeAll(new BandTask(this.band, this.fromRow, middle, this.bandRows, this.rowAlignment),
+                new BandTask(this.band, middle, this.toRow, this.bandRows, this.rowAlignment));
+      }
+    }
+  }
+
+  /**
+   * Creates an executor that works on up to a given number of bands at the same time. The threads
+   * are only started the first time there is enough work to split.
+   *
+   * @param parallelism the number of threads to use
+   * @throws IllegalArgumentException if the parallelism is less than 1
+   */
+  public RowBandExecutor(int parallelism) throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Returns the number of threads this executor uses.
+   *
+   * @return the parallelism
+   */
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Runs work over every row of an image, splitting the rows into bands that are worked on at the
+   * same time. Small images and executors with a single thread run everything on the calling
+   * thread. Returns once every band is done.
+   *
+   * @param height the number of rows
+   * @param width the number of pixels in each row, used to keep bands from getting too small
+   * @param band the work done on each band
+   */
+  public void forEachBand(int height, int width, RowBand band) {
+    this.forEachBand(height, width, 1, band);
+  }
+
+  /**
+   * Runs work over every row of an image like the method above, but only starts a band at a
+   * multiple of the given number of rows. Work that reads a tiled image splits it along the rows
+   * of its tiles, so that each band produces its own tiles and no tile is produced by two bands.
+   *
+   * @param height the number of rows
+   * @param width the number of pixels in each row, used to keep bands from getting too small
+   * @param rowAlignment the number of rows that every band but the last is a multiple of
+   * @param band the work done on each band
+   * @throws IllegalArgumentException if the alignment is less than 1
+   */
+  public void forEachBand(int height, int width, int rowAlignment, RowBand band)
+          throws IllegalArgumentException {
+    if (rowAlignment < 1) {
+      throw new IllegalArgumentException("Row alignment must be at least 1");
+    }
+    int minRows = Math.max(1, MIN_BAND_PIXELS / Math.max(1, width));
+    int bandRows = Math.max(minRows,
+            (height + this.parallelism * BANDS_PER_THREAD - 1)
+                    / (this.parallelism * BANDS_PER_THREAD));
+    bandRows = (bandRows + rowAlignment - 1) / rowAlignment * rowAlignment;
+    if (this.parallelism == 1 || height <= bandRows) {
+      band.run(0, height);
+      return;
+    }
+    this.getPool().invoke(new BandTask(band, 0, height, bandRows, rowAlignment));
+  }
+
+  /**
+   * Returns the pool of this executor, starting it the first time it's needed.
+   *
+   * @return the pool
+   */
+  private synchronized ForkJoinPool getPool() {
+    if (this.pool == null) {
+      this.pool = new ForkJoinPool(this.parallelism);
+    }
+    return this.pool;
+  }
+}
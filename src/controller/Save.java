@@ -2,14 +2,17 @@ package controller;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import javax.imageio.ImageIO;
 import model.ImageModel;
 import model.ImageStorage;
+import model.PackedImage;
 import view.ImageProcessorView;
 import static java.awt.image.BufferedImage.TYPE_INT_RGB;
 
@@ -75,7 +78,7 @@ public class Save extends AImageProcessorCommand {
       myModel = this.model;
       // can only be null if the model doesn't need some sort of storage system (relevant for GUI)
     }
-    else if (!this.images.getImages().containsKey(this.originalImage)) {
+    else if (!this.images.containsImage(this.originalImage)) {
       try {
         this.view.renderMessage(this.messageToUser);
         return;
@@ -87,7 +90,7 @@ public class Save extends AImageProcessorCommand {
       }
     }
     else {
-      myModel = this.images.getImages().get(this.originalImage);
+      myModel = this.images.getImage(this.originalImage);
     }
     /*
     FIVE CASES TO CONSIDER:
@@ -103,10 +106,9 @@ public class Save extends AImageProcessorCommand {
       try {
         if (myModel.getFilepath().endsWith("ppm")) {
           // if the original image is in a PPM format
-          String ppm = this.fromPPMtoPPM(myModel);
-          FileWriter toWrite = new FileWriter(this.filename);
-          toWrite.write(ppm);
-          toWrite.close();
+          try (Writer toWrite = new BufferedWriter(new FileWriter(this.filename), 1 << 16)) {
+            this.fromPPMtoPPM(myModel, toWrite);
+          }
         }
         else {
           // if the user wants a PPM file out of a non-PPM file: (ex.) JPG -> PPM
@@ -198,26 +200,28 @@ public class Save extends AImageProcessorCommand {
   }
 
   /**
-   * Converts a PPM file to another PPM file.
+   * Converts a PPM file to another PPM file, writing it out one row at a time so that the text of
+   * the whole file never has to be held in memory.
    *
    * @param model the relevant data for making a new PPM file
-   * @return a new PPM file with the updated data
+   * @param output where the new PPM file is written to
+   * @throws IOException if the file couldn't be written
    */
-  private String fromPPMtoPPM(ImageModel model) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("P3").append(System.lineSeparator());
-    builder.append(model.getWidth()).append(" ").append(model.getHeight())
-            .append(System.lineSeparator());
-    builder.append(model.getMaxValue()).append(System.lineSeparator());
+  private void fromPPMtoPPM(ImageModel model, Writer output) throws IOException {
+    output.append("P3").append(System.lineSeparator());
+    output.append(Integer.toString(model.getWidth())).append(" ")
+            .append(Integer.toString(model.getHeight())).append(System.lineSeparator());
+    output.append(Integer.toString(model.getMaxValue())).append(System.lineSeparator());
 
+    int[] row = new int[model.getWidth()];
     for (int i = 0; i < model.getHeight(); i++) {
+      model.getRow(i, row);
       for (int j = 0; j < model.getWidth(); j++) {
-        builder.append(model.getPixel(i, j).getRed()).append(System.lineSeparator());
-        builder.append(model.getPixel(i, j).getGreen()).append(System.lineSeparator());
-        builder.append(model.getPixel(i, j).getBlue()).append(System.lineSeparator());
+        output.append(Integer.toString(PackedImage.red(row[j]))).append(System.lineSeparator());
+        output.append(Integer.toString(PackedImage.green(row[j]))).append(System.lineSeparator());
+        output.append(Integer.toString(PackedImage.blue(row[j]))).append(System.lineSeparator());
       }
     }
-    return builder.toString();
   }
 
   /**
@@ -253,13 +257,11 @@ public class Save extends AImageProcessorCommand {
    */
   private BufferedImage createNonPPM(ImageModel model) {
     BufferedImage image = new BufferedImage(model.getWidth(), model.getHeight(), TYPE_INT_RGB);
+    int[] row = new int[model.getWidth()];
     for (int i = 0; i < image.getHeight(); i++) {
-      for (int j = 0; j < image.getWidth(); j++) {
-        Color color = new Color(model.getPixel(i, j).getRed(),
-                model.getPixel(i, j).getGreen(), model.getPixel(i, j).getBlue());
-        int colorValue = color.getRGB();
-        image.setRGB(j, i, colorValue);
-      }
+      // packed colors are laid out the same way as TYPE_INT_RGB, so a whole row can be copied
+      model.getRow(i, row);
+      image.setRGB(0, i, row.length, 1, row, 0, row.length);
     }
     return image;
   }
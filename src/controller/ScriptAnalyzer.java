@@ -0,0 +1,117 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Looks at a whole script before it's run to work out which commands matter. A command matters if
+ * the image it creates is saved, or is used by another command that matters. Every other command
+ * can be skipped, and every image can be let go as soon as the last command that reads it is done.
+ */
+class ScriptAnalyzer {
+  private final List<ScriptLine> lines;
+  private final boolean[] live;
+  private final List<List<String>> lastUses;
+
+  /**
+   * Works out which lines of an already broken down script matter, and after which line every
+   * image is no longer needed.
+   *
+   * @param lines the lines of the script, in order
+   */
+  private ScriptAnalyzer(List<ScriptLine> lines) {
+    this.lines = lines;
+    this.live = new boolean[lines.size()];
+    this.lastUses = new ArrayList<>(Collections.nCopies(lines.size(), List.of()));
+
+    // walking backwards, this holds the images that are still needed after the current line
+    Set<String> needed = new HashSet<>();
+    for (int i = lines.size() - 1; i >= 0; i--) {
+      ScriptLine line = lines.get(i);
+      String output = line.getOutput();
+      if (output != null && !needed.contains(output)) {
+        continue;
+      }
+      this.live[i] = true;
+      List<String> freed = new ArrayList<>();
+      for (String input : line.getInputs()) {
+        if (!needed.contains(input) && !input.equals(output) && !freed.contains(input)) {
+          freed.add(input);
+        }
+      }
+      this.lastUses.set(i, freed);
+      needed.remove(output);
+      needed.addAll(line.getInputs());
+    }
+  }
+
+  /**
+   * Analyzes the lines of a script. Blank lines are left out, and the script ends at the first line
+   * that quits. A script with a line that isn't a single well-formed command can't be analyzed,
+   * since it's not known for sure which images that line uses.
+   *
+   * @param text the lines of the script, in order
+   * @return the analysis of the script, or null if it can't be analyzed
+   */
+  static ScriptAnalyzer analyze(List<String> text) {
+    List<ScriptLine> lines = new ArrayList<>();
+    for (String line : text) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      if (trimmed.equalsIgnoreCase("q") || trimmed.equalsIgnoreCase("quit")) {
+        break;
+      }
+      ScriptLine parsed = ScriptLine.parse(trimmed);
+      if (parsed == null) {
+        return null;
+      }
+      lines.add(parsed);
+    }
+    return new ScriptAnalyzer(lines);
+  }
+
+  /**
+   * Returns the number of lines in the analyzed script.
+   *
+   * @return the number of lines
+   */
+  int size() {
+    return this.lines.size();
+  }
+
+  /**
+   * Returns a line of the analyzed script.
+   *
+   * @param index the position of the line, starting from 0
+   * @return the line
+   */
+  ScriptLine getLine(int index) {
+    return this.lines.get(index);
+  }
+
+  /**
+   * Checks whether a line of the script has to be run for its result to reach a save.
+   *
+   * @param index the position of the line, starting from 0
+   * @return true if the line has to be run, false if it can be skipped
+   */
+  boolean isLive(int index) {
+    return this.live[index];
+  }
+
+  /**
+   * Returns the images that no line reads after the given one, so they can be let go once it's
+   * done.
+   *
+   * @param index the position of the line, starting from 0
+   * @return the names of the images, empty if every image is still needed
+   */
+  List<String> lastUsedBy(int index) {
+    return this.lastUses.get(index);
+  }
+}
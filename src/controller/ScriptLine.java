@@ -0,0 +1,183 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single command of a script, broken down into the names of the images it reads and the name of
+ * the image it creates. This lets a script be looked at as a whole before any of it is run.
+ */
+class ScriptLine {
+  private final String text;
+  private final String command;
+  private final List<String> inputs;
+  private final String output;
+  private final String file;
+
+  /**
+   * Represents a command of a script that has already been broken down.
+   *
+   * @param text the line of the script, exactly as it was written
+   * @param command the name of the command
+   * @param inputs the names of the images the command reads
+   * @param output the name of the image the command creates, or null if it doesn't create one
+   * @param file the path of the file the command loads, saves or reads a kernel from, or null if
+   *     it uses no file
+   */
+  private ScriptLine(String text, String command, List<String> inputs, String output,
+                     String file) {
+    this.text = text;
+    this.command = command;
+    this.inputs = Collections.unmodifiableList(inputs);
+    this.output = output;
+    this.file = file;
+  }
+
+  /**
+   * Breaks down a line of a script. Only lines that hold exactly one command with the arguments it
+   * expects can be broken down, since the images used by anything else can't be known for sure.
+   *
+   * @param text the line of the script
+   * @return the broken down line, or null if the line isn't a single well-formed command
+   */
+  static ScriptLine parse(String text) {
+    String[] tokens = text.trim().split("\\s+");
+    String command = tokens[0];
+    int arguments = tokens.length - 1;
+    List<String> inputs = new ArrayList<>();
+    switch (command) {
+      case "load":
+        if (arguments != 2) {
+          return null;
+        }
+        return new ScriptLine(text, command, inputs, tokens[2], tokens[1]);
+      case "save":
+        if (arguments != 2) {
+          return null;
+        }
+        inputs.add(tokens[2]);
+        return new ScriptLine(text, command, inputs, null, tokens[1]);
+      case "brighten":
+      case "darken":
+      case "box-blur":
+      case "blur-radius":
+        // the value or radius comes first, then the image, its new name and an optional mask
+        if (arguments != 3 && arguments != 4) {
+          return null;
+        }
+        inputs.add(tokens[2]);
+        if (arguments == 4) {
+          inputs.add(tokens[4]);
+        }
+        return new ScriptLine(text, command, inputs, tokens[3], null);
+      case "convolve":
+        // the kernel comes first, which may be a file that is read
+        if (arguments != 3 && arguments != 4) {
+          return null;
+        }
+        inputs.add(tokens[2]);
+        if (arguments == 4) {
+          inputs.add(tokens[4]);
+        }
+        return new ScriptLine(text, command, inputs, tokens[3], tokens[1]);
+      case "red-component":
+      case "green-component":
+      case "blue-component":
+      case "value-component":
+      case "luma-component":
+      case "intensity-component":
+      case "blur":
+      case "sharpen":
+      case "greyscale":
+      case "sepia":
+        if (arguments != 2 && arguments != 3) {
+          return null;
+        }
+        inputs.add(tokens[1]);
+        if (arguments == 3) {
+          inputs.add(tokens[3]);
+        }
+        return new ScriptLine(text, command, inputs, tokens[2], null);
+      case "vertical-flip":
+      case "horizontal-flip":
+      case "mask":
+        if (arguments != 2) {
+          return null;
+        }
+        inputs.add(tokens[1]);
+        return new ScriptLine(text, command, inputs, tokens[2], null);
+      case "mosaic":
+        if (arguments != 3) {
+          return null;
+        }
+        inputs.add(tokens[2]);
+        return new ScriptLine(text, command, inputs, tokens[3], null);
+      case "downsize":
+      case "downsize-area":
+        if (arguments != 4) {
+          return null;
+        }
+        inputs.add(tokens[3]);
+        return new ScriptLine(text, command, inputs, tokens[4], null);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the line of the script exactly as it was written.
+   *
+   * @return the text of the line
+   */
+  String getText() {
+    return this.text;
+  }
+
+  /**
+   * Returns the name of the command on this line.
+   *
+   * @return the name of the command
+   */
+  String getCommand() {
+    return this.command;
+  }
+
+  /**
+   * Returns the names of the images the command reads, including its mask if it has one.
+   *
+   * @return a read-only list of image names
+   */
+  List<String> getInputs() {
+    return this.inputs;
+  }
+
+  /**
+   * Returns the name of the image the command creates.
+   *
+   * @return the name of the image, or null if the command only saves an image
+   */
+  String getOutput() {
+    return this.output;
+  }
+
+  /**
+   * Returns the path of the file this command loads, saves or reads a kernel from. The kernel of
+   * a convolve is treated as a file even when it's written inline, which only means it waits for
+   * saves to a file with that name.
+   *
+   * @return the path of the file, or null if the command doesn't use a file
+   */
+  String getFile() {
+    return this.file;
+  }
+
+  /**
+   * Returns whether this command writes to its file rather than reading from it.
+   *
+   * @return true if the command saves an image
+   */
+  boolean writesFile() {
+    return this.command.equals("save");
+  }
+}
@@ -0,0 +1,238 @@
+package model;
+
+/**
+ * A point operation where each new color component is a weighted sum of the old red, green and
+ * blue components plus an offset, clamped to the range of the image. Greyscale, sepia,
+ * brightening, darkening and most of the components are all of this form, and running two of
+ * them one after the other is the same as running a single one whose matrix is the product of
+ * theirs, so a whole chain of them can be folded into one.
+ *
+ * <p>Commands have always truncated every weighted component on its own and clamped after every
+ * step. An exact operation does the same, so its results match exactly, but it can't be folded
+ * because the product of two matrices knows nothing about the clamping in between. An operation
+ * that isn't exact only truncates and clamps once, at the very end, and can be folded. As long as
+ * no step of a chain clamps, a folded chain is never darker than the exact one: each exact step
+ * with weights that aren't whole numbers truncates less than 3 levels away, which the steps after
+ * it stretch by the sum of their weights, 1 for greyscale and luma and up to 1.351 for sepia.</p>
+ *
+ * <p>Exact operations work out rows one component plane at a time, adding up truncated products
+ * looked up in tables instead of multiplying, and matrices whose three rows are the same, like
+ * greyscale and the components, only work out a single plane.</p>
+ */
+public class AffineColorOperation implements PointOperation {
+  // three rows of red, green and blue weights followed by an offset, one row per new component
+  private final double[] matrix;
+  private final int maxValue;
+  private final boolean exact;
+  private final boolean grey;
+  // for an exact operation, the truncated product of every weight with every possible component
+  private final int[][] products;
+
+  /**
+   * Creates an operation out of a 3x3 matrix of weights, or a 3x4 matrix where the last column
+   * holds the offsets. Row 0 works out the new red component, row 1 green and row 2 blue.
+   *
+   * @param matrix the weights, and possibly offsets, of the operation
+   * @param maxValue the largest value a component may have
+   * @param exact whether to truncate each weighted component on its own and refuse to be folded
+   * @throws IllegalArgumentException if the matrix doesn't have 3 rows of 3 or 4 columns
+   */
+  public AffineColorOperation(double[][] matrix, int maxValue, boolean exact)
+          throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3) {
+      throw new IllegalArgumentException("Color matrix must have 3 rows");
+    }
+    this.matrix = new double[12];
+    for (int i = 0; i < 3; i++) {
+      if (matrix[i].length != 3 && matrix[i].length != 4) {
+        throw new IllegalArgumentException("Color matrix rows must have 3 or 4 columns");
+      }
+      System.arraycopy(matrix[i], 0, this.matrix, 4 * i, matrix[i].length);
+    }
+    this.maxValue = maxValue;
+    this.exact = exact;
+    this.grey = isGrey(this.matrix, maxValue);
+    this.products = exact ? products(this.matrix) : null;
+  }
+
+  /**
+   * Creates an operation out of a matrix that has already been laid out row after row.
+   */
+  private AffineColorOperation(double[] matrix, int maxValue, boolean exact) {
+    this.matrix = matrix;
+    this.maxValue = maxValue;
+    this.exact = exact;
+    this.grey = isGrey(this.matrix, maxValue);
+    this.products = exact ? products(this.matrix) : null;
+  }
+
+  /**
+   * Returns an operation that adds the same value to every component, which brightens an image
+   * for positive values and darkens it for negative ones.
+   *
+   * @param value the value added to each component
+   * @param maxValue the largest value a component may have
+   * @param exact whether the operation should refuse to be folded
+   * @return the operation
+   */
+  public static AffineColorOperation offset(int value, int maxValue, boolean exact) {
+    return new AffineColorOperation(new double[] {1, 0, 0, value, 0, 1, 0, value, 0, 0, 1, value},
+            maxValue, exact);
+  }
+
+  /**
+   * Returns an operation that sets every component to the same weighted sum of the old
+   * components, which greyscales an image.
+   *
+   * @param red the weight of the red component
+   * @param green the weight of the green component
+   * @param blue the weight of the blue component
+   * @param maxValue the largest value a component may have
+   * @param exact whether the operation should refuse to be folded
+   * @return the operation
+   */
+  public static AffineColorOperation grey(double red, double green, double blue, int maxValue,
+                                          boolean exact) {
+    return new AffineColorOperation(new double[] {red, green, blue, 0, red, green, blue, 0,
+        red, green, blue, 0}, maxValue, exact);
+  }
+
+  /**
+   * Works out the truncated product of every weight of a matrix with every possible component, so
+   * that an exact operation adds up three table entries instead of multiplying and truncating.
+   *
+   * @param matrix the matrix, laid out row after row
+   * @return the products, one table for each weight, with the weights of the red row first
+   */
+  private static int[][] products(double[] matrix) {
+    int[][] products = new int[9][256];
+    for (int i = 0; i < 3; i++) {
+      for (int k = 0; k < 3; k++) {
+        for (int value = 0; value < 256; value++) {
+          products[3 * i + k][value] = (int) (value * matrix[4 * i + k]);
+        }
+      }
+    }
+    return products;
+  }
+
+  /**
+   * Checks whether every row of a matrix is the same, so every new component of a pixel is too.
+   *
+   * @param matrix the matrix, laid out row after row
+   * @param maxValue the largest value a component may have
+   * @return true if the rows are the same and the components fit in a packed color
+   */
+  private static boolean isGrey(double[] matrix, int maxValue) {
+    for (int j = 0; j < 4; j++) {
+      if (matrix[j] != matrix[4 + j] || matrix[j] != matrix[8 + j]) {
+        return false;
+      }
+    }
+    return maxValue <= 0xFF;
+  }
+
+  @Override
+  public int apply(int rgb) {
+    int red = PackedImage.red(rgb);
+    int green = PackedImage.green(rgb);
+    int blue = PackedImage.blue(rgb);
+    return PackedImage.pack(this.component(0, red, green, blue),
+            this.component(4, red, green, blue), this.component(8, red, green, blue));
+  }
+
+  @Override
+  public void applyToRow(int[] row, int length) {
+    if (!this.exact) {
+      PointOperation.super.applyToRow(row, length);
+      return;
+    }
+    ChannelPlanes planes = ChannelPlanes.split(row, length);
+    this.plane(0, planes, planes.newRed, length);
+    if (this.grey) {
+      ChannelPlanes.mergeGrey(planes.newRed, row, length);
+      return;
+    }
+    this.plane(1, planes, planes.newGreen, length);
+    this.plane(2, planes, planes.newBlue, length);
+    planes.merge(row, length);
+  }
+
+  /**
+   * Folds another affine operation into this one if neither of them is exact, so that running the
+   * result is the same as running this operation and then the other one, except that clamping
+   * only happens once at the end.
+   *
+   * @param next the operation that runs after this one
+   * @return the folded operation, or null if they can't be folded
+   */
+  @Override
+  public PointOperation fuse(PointOperation next) {
+    if (this.exact || !(next instanceof AffineColorOperation)
+            || ((AffineColorOperation) next).exact) {
+      return null;
+    }
+    double[] after = ((AffineColorOperation) next).matrix;
+    double[] product = new double[12];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 4; j++) {
+        double sum = j == 3 ? after[4 * i + 3] : 0;
+        for (int k = 0; k < 3; k++) {
+          sum = sum + after[4 * i + k] * this.matrix[4 * k + j];
+        }
+        product[4 * i + j] = sum;
+      }
+    }
+    return new AffineColorOperation(product, Math.min(this.maxValue,
+            ((AffineColorOperation) next).maxValue), false);
+  }
+
+  /**
+   * Works out one new component of a run of pixels with the tables of an exact operation, which
+   * gives the same result as {@link #component} does for a single pixel.
+   *
+   * @param component the new component, 0 for red, 1 for green and 2 for blue
+   * @param planes the old components of the pixels
+   * @param plane the array the new components are written to
+   * @param length the number of pixels
+   */
+  private void plane(int component, ChannelPlanes planes, int[] plane, int length) {
+    int[] red = planes.red;
+    int[] green = planes.green;
+    int[] blue = planes.blue;
+    int[] redProducts = this.products[3 * component];
+    int[] greenProducts = this.products[3 * component + 1];
+    int[] blueProducts = this.products[3 * component + 2];
+    int offset = (int) this.matrix[4 * component + 3];
+    int maxValue = this.maxValue;
+    for (int j = 0; j < length; j++) {
+      int value = redProducts[red[j]] + greenProducts[green[j]] + blueProducts[blue[j]] + offset;
+      plane[j] = Math.max(0, Math.min(maxValue, value));
+    }
+  }
+
+  /**
+   * Works out one new component from a row of the matrix.
+   *
+   * @param start where the row starts in the matrix
+   * @param red the old red component
+   * @param green the old green component
+   * @param blue the old blue component
+   * @return the new component, clamped to the range of the image
+   */
+  private int component(int start, int red, int green, int blue) {
+    int value;
+    if (this.exact) {
+      value = (int) (red * this.matrix[start]) + (int) (green * this.matrix[start + 1])
+              + (int) (blue * this.matrix[start + 2]) + (int) this.matrix[start + 3];
+    }
+    else {
+      value = (int) (red * this.matrix[start] + green * this.matrix[start + 1]
+              + blue * this.matrix[start + 2] + this.matrix[start + 3]);
+    }
+    if (value < 0) {
+      return 0;
+    }
+    return Math.min(value, this.maxValue);
+  }
+}
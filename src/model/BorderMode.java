@@ -0,0 +1,73 @@
+package model;
+
+/**
+ * The ways a kernel can treat the pixels it reaches past the edges of an image.
+ */
+public enum BorderMode {
+  /**
+   * Pixels past the edges are black, so they add nothing. This is what blur and sharpen have
+   * always done.
+   */
+  ZERO,
+  /**
+   * Pixels past the edges repeat the nearest pixel on the edge.
+   */
+  CLAMP,
+  /**
+   * Pixels past the edges mirror the image back from the edge, without repeating the edge itself.
+   */
+  MIRROR,
+  /**
+   * Pixels past the edges come from the other side of the image, as if it were tiled.
+   */
+  WRAP;
+
+  /**
+   * Finds the pixel of the image that stands in for a position along a row or column, which may
+   * be past either edge.
+   *
+   * @param index the position, which may be negative or past the end
+   * @param length the number of pixels along the row or column
+   * @return the position inside the image, or -1 if the pixel is black
+   */
+  public int map(int index, int length) {
+    if (index >= 0 && index < length) {
+      return index;
+    }
+    switch (this) {
+      case CLAMP:
+        return index < 0 ? 0 : length - 1;
+      case MIRROR:
+        if (length == 1) {
+          return 0;
+        }
+        // a mirrored image repeats every two lengths, less the two edges that aren't repeated
+        int period = 2 * (length - 1);
+        int folded = Math.floorMod(index, period);
+        return folded < length ? folded : period - folded;
+      case WRAP:
+        return Math.floorMod(index, length);
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Finds the mode with a given name, in any case.
+   *
+   * @param name the name of the mode, such as zero or mirror
+   * @return the mode
+   * @throws IllegalArgumentException if there is no mode with the name
+   */
+  public static BorderMode of(String name) throws IllegalArgumentException {
+    if (name == null) {
+      throw new IllegalArgumentException("Border mode can't be null");
+    }
+    for (BorderMode mode : values()) {
+      if (mode.name().equalsIgnoreCase(name)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("Unknown border mode " + name);
+  }
+}
@@ -0,0 +1,267 @@
+package model;
+
+/**
+ * Blurs an image by averaging every pixel with the pixels around it, out to any radius, at a
+ * cost per pixel that doesn't depend on the radius. A box blur averages a square, which is done
+ * as a horizontal pass that averages each row and then a vertical pass that averages each column.
+ * Each pass keeps a running sum of the pixels under the box as it slides along, so moving the box
+ * by one pixel only adds the pixel that comes in and takes away the one that goes out. A Gaussian
+ * blur is approximated by three box passes in a row, whose radii add up to the radius of the blur,
+ * so the blur reaches exactly that far.
+ *
+ * <p>Pixels the box reaches past the edges of the image are filled in by a border mode. Averages
+ * are kept with 8 bits below the point between passes, so repeating passes doesn't add up
+ * rounding errors, and are only rounded to whole components at the end.</p>
+ *
+ * <p>The work is done in three steps, which each have to finish on every row or column before
+ * the next one starts, and which can each be split into bands worked out at the same time:
+ * {@link #blurRows}, {@link #blurColumns} and {@link #writeRows}. The components are held in
+ * between with columns one after another, so the vertical passes walk through memory in order
+ * just like the horizontal ones; that takes 6 bytes per pixel on top of the image.</p>
+ *
+ * <p>A single box with black past the edges is simply the sum over a rectangle of the image, cut
+ * off at the edges, divided by the size of the box. If the summed-area table of the image has
+ * already been worked out for something else, that sum is looked up in it instead, which gives
+ * the exact average. The table is never worked out just for a blur, since it takes four times as
+ * much memory as the passes.</p>
+ */
+public class BoxBlur {
+  // rows moved in and out of the columns at once, so columns are written a few pixels at a time
+  private static final int BLOCK = 16;
+  // a limit on the border every row or column is padded with
+  private static final int MAX_RADIUS = 65535;
+
+  private final ImageModel source;
+  private final int height;
+  private final int width;
+  // the radius of every box pass, in the order they are run
+  private final int[] radii;
+  private final BorderMode border;
+  // for every color component, the averages so far, column after column, or null if the blur
+  // is looked up in a summed-area table
+  private final char[][] columns;
+  // the summed-area table of the image, or null if the blur is done in passes
+  private final IntegralImage table;
+
+  /**
+   * Prepares to blur an image.
+   *
+   * @param source the image to blur
+   * @param radius how far the blur reaches from each pixel
+   * @param gaussian true for three box passes that approximate a Gaussian blur, false for a
+   *     single box pass
+   * @param border how to treat the pixels the blur reaches past the edges of the image
+   * @throws IllegalArgumentException if the image or the border mode is null, the radius is
+   *     negative or too large, or the image has too many pixels to hold in arrays
+   */
+  public BoxBlur(ImageModel source, int radius, boolean gaussian, BorderMode border)
+          throws IllegalArgumentException {
+    if (source == null || border == null) {
+      throw new IllegalArgumentException("Image and border mode can't be null");
+    }
+    if (radius < 0 || radius > MAX_RADIUS) {
+      throw new IllegalArgumentException("Radius must be between 0 and " + MAX_RADIUS);
+    }
+    if ((long) source.getHeight() * source.getWidth() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too large to blur");
+    }
+    this.source = source;
+    this.height = source.getHeight();
+    this.width = source.getWidth();
+    this.border = border;
+    if (!gaussian) {
+      this.radii = new int[] {radius};
+    }
+    else {
+      // three boxes of nearly the same radius come closest to a Gaussian
+      this.radii = new int[] {(radius + 2) / 3, (radius + 1) / 3, radius / 3};
+    }
+    this.table = !gaussian && radius > 0 && border == BorderMode.ZERO
+            ? IntegralImage.cached(source) : null;
+    this.columns = this.table != null ? null : new char[3][this.height * this.width];
+  }
+
+  /**
+   * Runs the horizontal passes over a band of rows of the image.
+   *
+   * @param fromRow the first row of the band
+   * @param toRow the row just after the last row of the band
+   */
+  public void blurRows(int fromRow, int toRow) {
+    if (this.table != null) {
+      return;
+    }
+    int[] pixels = new int[BLOCK * this.width];
+    int[][] block = new int[3][BLOCK * this.width];
+    int[] line = new int[this.width];
+    int[] padded = new int[this.paddedLength(this.width)];
+    for (int start = fromRow; start < toRow; start = start + BLOCK) {
+      int rows = Math.min(BLOCK, toRow - start);
+      this.source.getRegion(start, 0, rows, this.width, pixels);
+      for (int k = 0; k < rows; k++) {
+        for (int c = 0; c < 3; c++) {
+          int shift = 16 - 8 * c;
+          for (int j = 0; j < this.width; j++) {
+            line[j] = ((pixels[k * this.width + j] >> shift) & 0xFF) << 8;
+          }
+          this.blurLine(line, this.width, padded);
+          System.arraycopy(line, 0, block[c], k * this.width, this.width);
+        }
+      }
+      for (int c = 0; c < 3; c++) {
+        char[] plane = this.columns[c];
+        int[] rowsOfPlane = block[c];
+        for (int j = 0; j < this.width; j++) {
+          int to = j * this.height + start;
+          for (int k = 0; k < rows; k++) {
+            plane[to + k] = (char) rowsOfPlane[k * this.width + j];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Runs the vertical passes over a band of columns of the image, once every row has been through
+   * {@link #blurRows}.
+   *
+   * @param fromColumn the first column of the band
+   * @param toColumn the column just after the last column of the band
+   */
+  public void blurColumns(int fromColumn, int toColumn) {
+    if (this.table != null) {
+      return;
+    }
+    int[] line = new int[this.height];
+    int[] padded = new int[this.paddedLength(this.height)];
+    for (char[] plane : this.columns) {
+      for (int j = fromColumn; j < toColumn; j++) {
+        int start = j * this.height;
+        for (int i = 0; i < this.height; i++) {
+          line[i] = plane[start + i];
+        }
+        this.blurLine(line, this.height, padded);
+        for (int i = 0; i < this.height; i++) {
+          plane[start + i] = (char) line[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Rounds a band of rows of the blurred image to whole components and writes them to a new
+   * image, once every column has been through {@link #blurColumns}.
+   *
+   * @param dest the image to write the rows to, as large as the source
+   * @param fromRow the first row of the band
+   * @param toRow the row just after the last row of the band
+   */
+  public void writeRows(WritableImageModel dest, int fromRow, int toRow) {
+    if (this.table != null) {
+      this.writeRowsFromTable(dest, fromRow, toRow);
+      return;
+    }
+    int[][] block = new int[3][BLOCK * this.width];
+    int[] row = new int[this.width];
+    for (int start = fromRow; start < toRow; start = start + BLOCK) {
+      int rows = Math.min(BLOCK, toRow - start);
+      for (int c = 0; c < 3; c++) {
+        char[] plane = this.columns[c];
+        int[] rowsOfPlane = block[c];
+        for (int j = 0; j < this.width; j++) {
+          int from = j * this.height + start;
+          for (int k = 0; k < rows; k++) {
+            rowsOfPlane[k * this.width + j] = plane[from + k];
+          }
+        }
+      }
+      for (int k = 0; k < rows; k++) {
+        int from = k * this.width;
+        for (int j = 0; j < this.width; j++) {
+          // an average can't go past the largest component, so there is nothing to clamp
+          row[j] = ((block[0][from + j] + 128) >> 8) << 16
+                  | ((block[1][from + j] + 128) >> 8) << 8
+                  | ((block[2][from + j] + 128) >> 8);
+        }
+        dest.setRow(start + k, row);
+      }
+    }
+  }
+
+  /**
+   * Works out a band of rows of a single box blur from the summed-area table of the image, and
+   * writes them to a new image.
+   *
+   * @param dest the image to write the rows to, as large as the source
+   * @param fromRow the first row of the band
+   * @param toRow the row just after the last row of the band
+   */
+  private void writeRowsFromTable(WritableImageModel dest, int fromRow, int toRow) {
+    int radius = this.radii[0];
+    long area = (long) (2 * radius + 1) * (2 * radius + 1);
+    int[] row = new int[this.width];
+    for (int i = fromRow; i < toRow; i++) {
+      int top = Math.max(0, i - radius);
+      int rows = Math.min(this.height, i + radius + 1) - top;
+      for (int j = 0; j < this.width; j++) {
+        int left = Math.max(0, j - radius);
+        int cols = Math.min(this.width, j + radius + 1) - left;
+        // the pixels past the edges are black, so they only count toward the area
+        row[j] = (int) ((this.table.sum(0, top, left, rows, cols) + area / 2) / area) << 16
+                | (int) ((this.table.sum(1, top, left, rows, cols) + area / 2) / area) << 8
+                | (int) ((this.table.sum(2, top, left, rows, cols) + area / 2) / area);
+      }
+      dest.setRow(i, row);
+    }
+  }
+
+  /**
+   * Returns how long a row or column has to be to hold a line of pixels with the border of the
+   * widest box on both sides, and one more cell the running sum reads past the end.
+   *
+   * @param length the number of pixels in the line
+   * @return the length of the padded line
+   */
+  private int paddedLength(int length) {
+    int largest = 0;
+    for (int radius : this.radii) {
+      largest = Math.max(largest, radius);
+    }
+    return length + 2 * largest + 1;
+  }
+
+  /**
+   * Runs every box pass over a single row or column.
+   *
+   * @param line the averages of the line, which are replaced by their averages over each box
+   * @param length the number of pixels in the line
+   * @param padded room for the line with the border of the widest box on both sides
+   */
+  private void blurLine(int[] line, int length, int[] padded) {
+    for (int radius : this.radii) {
+      if (radius == 0) {
+        continue;
+      }
+      System.arraycopy(line, 0, padded, radius, length);
+      for (int y = 1; y <= radius; y++) {
+        int before = this.border.map(-y, length);
+        int after = this.border.map(length - 1 + y, length);
+        padded[radius - y] = before < 0 ? 0 : line[before];
+        padded[radius + length - 1 + y] = after < 0 ? 0 : line[after];
+      }
+      padded[length + 2 * radius] = 0;
+
+      int size = 2 * radius + 1;
+      // dividing by the size of the box is a multiply by its reciprocal scaled by 2^32
+      long reciprocal = (1L << 32) / size;
+      long sum = 0;
+      for (int k = 0; k < size; k++) {
+        sum = sum + padded[k];
+      }
+      for (int j = 0; j < length; j++) {
+        line[j] = (int) ((sum * reciprocal + (1L << 31)) >>> 32);
+        sum = sum + padded[j + size] - padded[j];
+      }
+    }
+  }
+}
@@ -0,0 +1,509 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A storage system for processed images that keeps the pixels it holds in memory under a budget.
+ * When storing an image would go over the budget, the least recently used images are written to
+ * a spill file on disk with 3 bytes per pixel and dropped from memory. A spilled image is read
+ * back in the next time it's looked up, so users of the storage never notice the difference.
+ * Only images whose pixels live on the heap count towards the budget; memory-mapped and tiled
+ * images are already kept off the heap. Views and deferred images count the image they are worked
+ * out from, since they keep it in memory, and an image kept in memory by several of them, or by
+ * them and its own name, is only counted once.
+ *
+ * <p>The space of images that are replaced or removed is reused by the next images spilled, and
+ * the file shrinks again when the end of it is freed. A spilled image that is still in use
+ * somewhere else, such as by a view or a cache, is handed back as the same object instead of being
+ * read back in, so it's still recognized by its identity.</p>
+ */
+public class BudgetedImageStorage implements ImageStorage {
+  private final long budget;
+  // access-ordered, so the least recently used image always comes first
+  private final LinkedHashMap<String, Entry> entries;
+  private final RandomAccessFile spillFile;
+  // the space in the spill file that no image uses anymore, by offset, with its length
+  private final TreeMap<Long, Long> freeSpace;
+  // how many images in memory keep each image that holds pixels there, so it's only counted once
+  private final IdentityHashMap<ImageModel, Integer> residentUsers;
+  private long residentBytes;
+  private long hits;
+  private long spills;
+  private long restores;
+
+  /**
+   * Represents an image in this storage, which is either in memory, in the spill file, or both if
+   * it was read back and hasn't changed since.
+   */
+  private static class Entry {
+    private ImageModel image;
+    // the image as it was when it was spilled, as long as something else keeps it in memory
+    private WeakReference<ImageModel> spilled;
+    private final long bytes;
+    private long offset;
+    private int height;
+    private int width;
+    private String filepath;
+
+    /**
+     * Creates an entry for an image that is in memory and hasn't been spilled.
+     *
+     * @param image the data of the image
+     */
+    private Entry(ImageModel image) {
+      this.image = image;
+      this.bytes = heapBytes(image);
+      this.offset = -1;
+    }
+  }
+
+  /**
+   * Initializes the storage system to be empty, with a budget for the pixels kept in memory.
+   *
+   * @param budget the number of bytes of pixels that may be kept in memory
+   * @throws IllegalArgumentException if the budget is negative
+   * @throws IllegalStateException if the spill file couldn't be created
+   */
+  public BudgetedImageStorage(long budget) throws IllegalArgumentException, IllegalStateException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget must not be negative");
+    }
+    this.budget = budget;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.freeSpace = new TreeMap<>();
+    this.residentUsers = new IdentityHashMap<>();
+    try {
+      File file = File.createTempFile("images", ".spill");
+      file.deleteOnExit();
+      this.spillFile = new RandomAccessFile(file, "rw");
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't create the spill file: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns a copy of all processed images, which reads every spilled image back into memory.
+   *
+   * @return a hash map representing the images
+   */
+  @Override
+  public synchronized HashMap<String, ImageModel> getImages() {
+    HashMap<String, ImageModel> copy = new HashMap<>();
+    for (String name : this.entries.keySet().toArray(new String[0])) {
+      copy.put(name, this.getImage(name));
+    }
+    return copy;
+  }
+
+  /**
+   * Returns a read-only view of all processed images. Spilled images are only read back in when
+   * the view asks for them.
+   *
+   * @return an unmodifiable map from the names of the images to their data
+   */
+  @Override
+  public Map<String, ImageModel> getImagesView() {
+    return new AbstractMap<>() {
+      @Override
+      public ImageModel get(Object key) {
+        return key instanceof String ? BudgetedImageStorage.this.getImage((String) key) : null;
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return key instanceof String && BudgetedImageStorage.this.containsImage((String) key);
+      }
+
+      @Override
+      public Set<Map.Entry<String, ImageModel>> entrySet() {
+        return new AbstractSet<>() {
+          @Override
+          public Iterator<Map.Entry<String, ImageModel>> iterator() {
+            Iterator<String> names;
+            synchronized (BudgetedImageStorage.this) {
+              names = List.of(entries.keySet().toArray(new String[0])).iterator();
+            }
+            return new Iterator<>() {
+              @Override
+              public boolean hasNext() {
+                return names.hasNext();
+              }
+
+              @Override
+              public Map.Entry<String, ImageModel> next() {
+                String name = names.next();
+                return new SimpleImmutableEntry<>(name, getImage(name));
+              }
+            };
+          }
+
+          @Override
+          public int size() {
+            synchronized (BudgetedImageStorage.this) {
+              return entries.size();
+            }
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public synchronized ImageModel getImage(String name) {
+    Entry entry = this.entries.get(name);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.image != null) {
+      this.hits++;
+      return entry.image;
+    }
+    ImageModel stillInUse = entry.spilled == null ? null : entry.spilled.get();
+    if (stillInUse != null) {
+      // it never left memory, so it costs nothing to take back and keeps its identity
+      entry.image = stillInUse;
+      this.hits++;
+    }
+    else {
+      entry.image = this.restore(entry);
+      this.restores++;
+    }
+    entry.spilled = null;
+    this.countIn(entry);
+    this.enforceBudget(name);
+    return entry.image;
+  }
+
+  @Override
+  public synchronized boolean containsImage(String name) {
+    return this.entries.containsKey(name);
+  }
+
+  /**
+   * Adds an image to this storage system, spilling other images if it goes over the budget.
+   *
+   * @param name the name of the image to be added
+   * @param image the data of the image to be added
+   * @throws IllegalArgumentException if the name or the image is null
+   */
+  @Override
+  public synchronized void addImage(String name, ImageModel image)
+          throws IllegalArgumentException {
+    if (name == null || image == null) {
+      throw new IllegalArgumentException("Name and image can't be null");
+    }
+    Entry entry = new Entry(image);
+    Entry old = this.entries.put(name, entry);
+    if (old != null) {
+      this.countOut(old);
+      this.release(old);
+    }
+    this.countIn(entry);
+    this.enforceBudget(name);
+  }
+
+  /**
+   * Removes an image from this storage system, freeing its space in the spill file for the next
+   * image that is spilled.
+   *
+   * @param name the name of the image to be removed
+   */
+  @Override
+  public synchronized void removeImage(String name) {
+    Entry old = this.entries.remove(name);
+    if (old != null) {
+      this.countOut(old);
+      this.release(old);
+    }
+  }
+
+  /**
+   * Returns the number of lookups that found their image already in memory.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of times an image was written to the spill file to stay under the budget.
+   *
+   * @return the number of spills
+   */
+  public synchronized long getSpills() {
+    return this.spills;
+  }
+
+  /**
+   * Returns the number of lookups that had to read their image back from the spill file.
+   *
+   * @return the number of restores
+   */
+  public synchronized long getRestores() {
+    return this.restores;
+  }
+
+  /**
+   * Returns the number of bytes of pixels currently kept in memory by this storage.
+   *
+   * @return the resident bytes
+   */
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  /**
+   * Returns the size of the spill file, which includes free space between spilled images that was
+   * left by images that were replaced or removed.
+   *
+   * @return the spill file size in bytes
+   */
+  public synchronized long getSpillFileBytes() {
+    try {
+      return this.spillFile.length();
+    }
+    catch (IOException e) {
+      return 0;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "hits: " + this.hits + ", spills: " + this.spills + ", restores: " + this.restores
+            + ", resident bytes: " + this.residentBytes + " of " + this.budget
+            + ", spill file bytes: " + this.getSpillFileBytes();
+  }
+
+  /**
+   * Drops the least recently used images from memory until the resident images fit the budget.
+   * The image that was just stored or looked up is never dropped, even if it's bigger than the
+   * whole budget on its own.
+   *
+   * @param keep the name of the image that was just used
+   */
+  private void enforceBudget(String keep) {
+    Iterator<Map.Entry<String, Entry>> oldestFirst = this.entries.entrySet().iterator();
+    while (this.residentBytes > this.budget && oldestFirst.hasNext()) {
+      Map.Entry<String, Entry> next = oldestFirst.next();
+      Entry entry = next.getValue();
+      if (next.getKey().equals(keep) || entry.image == null || entry.bytes == 0) {
+        continue;
+      }
+      // an image that was read back in is still in the spill file, so it can just be dropped
+      if (entry.offset < 0) {
+        this.spill(entry);
+        this.spills++;
+      }
+      // an image a view still keeps in memory frees nothing until the view is dropped too
+      this.countOut(entry);
+      entry.spilled = new WeakReference<>(entry.image);
+      entry.image = null;
+    }
+  }
+
+  /**
+   * Counts an entry that was just put in memory towards the resident bytes, unless another entry
+   * in memory already keeps the image that holds its pixels there.
+   *
+   * @param entry the entry, whose image is in memory
+   */
+  private void countIn(Entry entry) {
+    if (entry.bytes == 0) {
+      return;
+    }
+    if (this.residentUsers.merge(backingImage(entry.image), 1, Integer::sum) == 1) {
+      this.residentBytes = this.residentBytes + entry.bytes;
+    }
+  }
+
+  /**
+   * Stops counting an entry whose image is about to leave memory, freeing the bytes of the image
+   * that holds its pixels once no other entry in memory keeps it there. Does nothing for entries
+   * that aren't in memory.
+   *
+   * @param entry the entry
+   */
+  private void countOut(Entry entry) {
+    if (entry.image == null || entry.bytes == 0) {
+      return;
+    }
+    ImageModel backing = backingImage(entry.image);
+    int users = this.residentUsers.get(backing) - 1;
+    if (users == 0) {
+      this.residentUsers.remove(backing);
+      this.residentBytes = this.residentBytes - entry.bytes;
+    }
+    else {
+      this.residentUsers.put(backing, users);
+    }
+  }
+
+  /**
+   * Finds the image that holds the pixels an image is worked out from.
+   *
+   * @param image the image, which may be a view or a deferred image
+   * @return the first image along its sources that isn't derived from another one
+   */
+  private static ImageModel backingImage(ImageModel image) {
+    while (image instanceof DerivedImage) {
+      image = ((DerivedImage) image).getSource();
+    }
+    return image;
+  }
+
+  /**
+   * Gives back the space an entry takes in the spill file, merging it with any free space next to
+   * it, and shrinking the file if the space is at its end.
+   *
+   * @param entry the entry that was replaced or removed
+   * @throws IllegalStateException if the spill file couldn't be shrunk
+   */
+  private void release(Entry entry) throws IllegalStateException {
+    if (entry.offset < 0) {
+      return;
+    }
+    long offset = entry.offset;
+    long length = 3L * entry.height * entry.width;
+    entry.offset = -1;
+    Map.Entry<Long, Long> before = this.freeSpace.floorEntry(offset);
+    if (before != null && before.getKey() + before.getValue() == offset) {
+      this.freeSpace.remove(before.getKey());
+      offset = before.getKey();
+      length = length + before.getValue();
+    }
+    Long after = this.freeSpace.get(offset + length);
+    if (after != null) {
+      this.freeSpace.remove(offset + length);
+      length = length + after;
+    }
+    try {
+      if (offset + length == this.spillFile.length()) {
+        this.spillFile.setLength(offset);
+      }
+      else {
+        this.freeSpace.put(offset, length);
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't shrink the spill file: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Finds room in the spill file for an image, in the first free space that is large enough, or
+   * at the end of the file.
+   *
+   * @param length the number of bytes the image takes
+   * @return the offset to write the image at
+   * @throws IOException if the length of the file couldn't be read
+   */
+  private long allocate(long length) throws IOException {
+    for (Map.Entry<Long, Long> free : this.freeSpace.entrySet()) {
+      if (free.getValue() >= length) {
+        long offset = free.getKey();
+        this.freeSpace.remove(offset);
+        if (free.getValue() > length) {
+          this.freeSpace.put(offset + length, free.getValue() - length);
+        }
+        return offset;
+      }
+    }
+    return this.spillFile.length();
+  }
+
+  /**
+   * Writes the pixels of an image to free space in the spill file, one row at a time.
+   *
+   * @param entry the entry of the image to be spilled
+   * @throws IllegalStateException if the spill file couldn't be written
+   */
+  private void spill(Entry entry) throws IllegalStateException {
+    ImageModel image = entry.image;
+    try {
+      long offset = this.allocate(3L * image.getHeight() * image.getWidth());
+      this.spillFile.seek(offset);
+      int[] row = new int[image.getWidth()];
+      byte[] bytes = new byte[3 * image.getWidth()];
+      for (int i = 0; i < image.getHeight(); i++) {
+        image.getRow(i, row);
+        for (int j = 0; j < row.length; j++) {
+          bytes[3 * j] = (byte) PackedImage.red(row[j]);
+          bytes[3 * j + 1] = (byte) PackedImage.green(row[j]);
+          bytes[3 * j + 2] = (byte) PackedImage.blue(row[j]);
+        }
+        this.spillFile.write(bytes);
+      }
+      entry.offset = offset;
+      entry.height = image.getHeight();
+      entry.width = image.getWidth();
+      entry.filepath = image.getFilepath();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't write to the spill file: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Reads the pixels of a spilled image back into memory.
+   *
+   * @param entry the entry of the spilled image
+   * @return the image with the same pixels it had when it was spilled
+   * @throws IllegalStateException if the spill file couldn't be read
+   */
+  private ImageModel restore(Entry entry) throws IllegalStateException {
+    PackedImage image = new PackedImage(entry.height, entry.width, entry.filepath);
+    try {
+      this.spillFile.seek(entry.offset);
+      int[] row = new int[entry.width];
+      byte[] bytes = new byte[3 * entry.width];
+      for (int i = 0; i < entry.height; i++) {
+        this.spillFile.readFully(bytes);
+        for (int j = 0; j < row.length; j++) {
+          row[j] = PackedImage.pack(bytes[3 * j] & 0xFF, bytes[3 * j + 1] & 0xFF,
+                  bytes[3 * j + 2] & 0xFF);
+        }
+        image.setRow(i, row);
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't read from the spill file: " + e.getMessage());
+    }
+    return image;
+  }
+
+  /**
+   * Estimates how many bytes of the heap the pixels of an image take up. Images that keep their
+   * pixels somewhere else take up nothing, and images computed from other images take up what
+   * the image holding their pixels does, since they keep it in memory.
+   *
+   * @param image the image to be estimated
+   * @return the number of bytes
+   */
+  private static long heapBytes(ImageModel image) {
+    image = backingImage(image);
+    long pixels = (long) image.getHeight() * image.getWidth();
+    if (image instanceof PackedImage) {
+      return 4 * pixels;
+    }
+    else if (image instanceof Image) {
+      // a reference plus a Pixel object with three int fields for every position
+      return 32 * pixels;
+    }
+    return 0;
+  }
+}
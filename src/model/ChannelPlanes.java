@@ -0,0 +1,99 @@
+package model;
+
+/**
+ * A run of packed pixels split into one array per color component. Loops over a single array of
+ * plain ints, with no shifting and masking of packed colors in between, are the kind the JIT
+ * compiler turns into SIMD instructions that work on many pixels at once, so point operations
+ * split a row into planes, work on each plane in its own loop, and pack the result back.
+ *
+ * <p>Every thread reuses its own planes, which grow to fit the longest row they are given.</p>
+ */
+final class ChannelPlanes {
+  private static final ThreadLocal<ChannelPlanes> PLANES =
+          ThreadLocal.withInitial(ChannelPlanes::new);
+
+  // the old components, read by the operation
+  int[] red;
+  int[] green;
+  int[] blue;
+  // the new components, written by the operation
+  int[] newRed;
+  int[] newGreen;
+  int[] newBlue;
+
+  /**
+   * Creates empty planes.
+   */
+  private ChannelPlanes() {
+    this.resize(0);
+  }
+
+  /**
+   * Splits a run of packed pixels into the planes of the current thread.
+   *
+   * @param row the packed colors of the pixels
+   * @param length the number of pixels, starting at the beginning of the array
+   * @return the planes, with the old components filled in
+   */
+  static ChannelPlanes split(int[] row, int length) {
+    ChannelPlanes planes = PLANES.get();
+    if (planes.red.length < length) {
+      planes.resize(length);
+    }
+    int[] red = planes.red;
+    int[] green = planes.green;
+    int[] blue = planes.blue;
+    for (int j = 0; j < length; j++) {
+      red[j] = (row[j] >> 16) & 0xFF;
+    }
+    for (int j = 0; j < length; j++) {
+      green[j] = (row[j] >> 8) & 0xFF;
+    }
+    for (int j = 0; j < length; j++) {
+      blue[j] = row[j] & 0xFF;
+    }
+    return planes;
+  }
+
+  /**
+   * Packs the new components back into a run of pixels.
+   *
+   * @param row the array the packed colors are written to
+   * @param length the number of pixels, starting at the beginning of the array
+   */
+  void merge(int[] row, int length) {
+    int[] red = this.newRed;
+    int[] green = this.newGreen;
+    int[] blue = this.newBlue;
+    for (int j = 0; j < length; j++) {
+      row[j] = (red[j] << 16) | (green[j] << 8) | blue[j];
+    }
+  }
+
+  /**
+   * Packs a single new plane back into a run of pixels as shades of grey.
+   *
+   * @param plane the value every component of each pixel gets
+   * @param row the array the packed colors are written to
+   * @param length the number of pixels, starting at the beginning of the array
+   */
+  static void mergeGrey(int[] plane, int[] row, int length) {
+    for (int j = 0; j < length; j++) {
+      row[j] = plane[j] * 0x010101;
+    }
+  }
+
+  /**
+   * Replaces the planes with ones that fit a number of pixels.
+   *
+   * @param length the number of pixels
+   */
+  private void resize(int length) {
+    this.red = new int[length];
+    this.green = new int[length];
+    this.blue = new int[length];
+    this.newRed = new int[length];
+    this.newGreen = new int[length];
+    this.newBlue = new int[length];
+  }
+}
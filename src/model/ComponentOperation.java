@@ -0,0 +1,66 @@
+package model;
+
+/**
+ * A point operation that greys every pixel with a component that isn't a weighted sum of its
+ * colors: the value, which is the largest of the three, or the intensity, which is their average.
+ * Rows are worked out as component planes, like {@link AffineColorOperation} does.
+ */
+public class ComponentOperation implements PointOperation {
+  private final boolean value;
+
+  /**
+   * Creates the operation for one of the two components.
+   *
+   * @param value true for the value component, false for the intensity component
+   */
+  private ComponentOperation(boolean value) {
+    this.value = value;
+  }
+
+  /**
+   * Returns the operation that greys every pixel with its value component.
+   *
+   * @return the operation
+   */
+  public static ComponentOperation value() {
+    return new ComponentOperation(true);
+  }
+
+  /**
+   * Returns the operation that greys every pixel with its intensity component.
+   *
+   * @return the operation
+   */
+  public static ComponentOperation intensity() {
+    return new ComponentOperation(false);
+  }
+
+  @Override
+  public int apply(int rgb) {
+    int red = PackedImage.red(rgb);
+    int green = PackedImage.green(rgb);
+    int blue = PackedImage.blue(rgb);
+    int grey = this.value ? Pixel.value(red, green, blue) : Pixel.intensity(red, green, blue);
+    return PackedImage.pack(grey, grey, grey);
+  }
+
+  @Override
+  public void applyToRow(int[] row, int length) {
+    ChannelPlanes planes = ChannelPlanes.split(row, length);
+    int[] red = planes.red;
+    int[] green = planes.green;
+    int[] blue = planes.blue;
+    int[] grey = planes.newRed;
+    if (this.value) {
+      for (int j = 0; j < length; j++) {
+        grey[j] = Math.max(red[j], Math.max(green[j], blue[j]));
+      }
+    }
+    else {
+      for (int j = 0; j < length; j++) {
+        grey[j] = (red[j] + green[j] + blue[j]) / 3;
+      }
+    }
+    ChannelPlanes.mergeGrey(grey, row, length);
+  }
+}
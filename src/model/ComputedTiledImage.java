@@ -0,0 +1,51 @@
+package model;
+
+/**
+ * A tiled image whose tiles are worked out from the same tiles of another tiled image by a point
+ * operation, only when one of their pixels is read. Commands that change the colors of an image
+ * too big to decode up front return one of these, so a chain of them followed by a command that
+ * only reads part of the image, like downsize, never touches the rest of the source.
+ */
+public class ComputedTiledImage extends TiledImage implements DerivedImage {
+  private final TiledImage source;
+
+  /**
+   * Creates an image that runs a point operation over the tiles of another one when they're read.
+   *
+   * @param source the image the tiles are worked out from
+   * @param operation the operation run on every pixel of a tile
+   * @param maxTiles the largest number of tiles to keep in memory at once
+   * @throws IllegalArgumentException if the source or the operation is null
+   */
+  public ComputedTiledImage(TiledImage source, PointOperation operation, int maxTiles)
+          throws IllegalArgumentException {
+    super(checkSource(source).getHeight(), source.getWidth(), source.getFilepath(),
+            (row, col, height, width, dest) -> {
+              source.getRegion(row, col, height, width, dest);
+              operation.applyToRow(dest, height * width);
+            }, maxTiles, source.getTileSize());
+    if (operation == null) {
+      throw new IllegalArgumentException("Point operation can't be null");
+    }
+    this.source = source;
+  }
+
+  @Override
+  public ImageModel getSource() {
+    return this.source;
+  }
+
+  /**
+   * Makes sure the source of a computed image is there before its dimensions are read.
+   *
+   * @param source the source image
+   * @return the same image
+   * @throws IllegalArgumentException if the source is null
+   */
+  private static TiledImage checkSource(TiledImage source) throws IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("Source image can't be null");
+    }
+    return source;
+  }
+}
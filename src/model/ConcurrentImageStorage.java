@@ -0,0 +1,63 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A storage system for processed images that can be used by several commands running at the same
+ * time. Lookups never block, and the view of all images never fails while images are being added.
+ */
+public class ConcurrentImageStorage implements ImageStorage {
+  private final ConcurrentHashMap<String, ImageModel> images;
+
+  /**
+   * Initializes the storage system to be empty, no images are added.
+   */
+  public ConcurrentImageStorage() {
+    this.images = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public HashMap<String, ImageModel> getImages() {
+    return new HashMap<>(this.images);
+  }
+
+  @Override
+  public Map<String, ImageModel> getImagesView() {
+    return Collections.unmodifiableMap(this.images);
+  }
+
+  @Override
+  public ImageModel getImage(String name) {
+    return name == null ? null : this.images.get(name);
+  }
+
+  @Override
+  public boolean containsImage(String name) {
+    return name != null && this.images.containsKey(name);
+  }
+
+  /**
+   * Adds an image to this storage system, replacing any image with the same name.
+   *
+   * @param name the name of the image to be added
+   * @param image the data of the image to be added
+   * @throws IllegalArgumentException if the name or the image is null
+   */
+  @Override
+  public void addImage(String name, ImageModel image) throws IllegalArgumentException {
+    if (name == null || image == null) {
+      throw new IllegalArgumentException("Name and image can't be null");
+    }
+    this.images.put(name, image);
+  }
+
+  @Override
+  public void removeImage(String name) {
+    if (name != null) {
+      this.images.remove(name);
+    }
+  }
+}
@@ -0,0 +1,695 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs a square kernel over the pixels of an image, such as the kernels used to blur or sharpen.
+ * Every cell of the kernel is multiplied with a color component and truncated to an integer on its
+ * own before the cells are added up, and the sum is clamped to the range of the image. Cells of the
+ * kernel that fall outside the image are left out, unless a border mode says otherwise.
+ *
+ * <p>The rows of the result are worked out independently of each other, so different bands of
+ * rows can be worked out at the same time into the same image.</p>
+ *
+ * <p>Pixels are split into one plane per color component with a border around it that holds
+ * whatever the border mode puts past the edges of the image, zeros by default, so the pixels near
+ * the edges are worked out by the same loops as the rest and the loops need no bounds checks.
+ * Each cell is then run over a whole row of a plane in a single loop of integer multiplies,
+ * shifts and adds, which the JIT compiler turns into SIMD instructions. The multiplier and shift
+ * of every cell are picked so that they truncate exactly like multiplying by the weight does for
+ * every possible component; kernels with a weight that can't be matched this way look up the
+ * truncated products in tables instead.</p>
+ *
+ * <p>A convolution that doesn't have to be exact adds up the weighted components without
+ * truncating them and only truncates the sum, as its {@link ConvolutionMode} says. In fixed point
+ * the weights are scaled to integers once, and each sum only needs a single shift at the end.
+ * The fastest mode picks the way for the kernel instead. Kernels that are a short sum of separable
+ * terms, like blur, run as a horizontal and a vertical pass per term, so their cost grows with the
+ * size of the kernel instead of with its area. Other kernels at least as large as a crossover size
+ * are run on tiles through a fast Fourier transform, whose cost hardly depends on the size of the
+ * kernel. The crossover is measured the first time it's needed, by timing both ways on the same
+ * planes, unless the imageprocessor.fftCrossover system property gives it. Anything else runs in
+ * fixed point.</p>
+ */
+public class Convolution {
+  // rows worked out at once, so the planes stay small however large the image is
+  private static final int CHUNK_PIXELS = 1 << 16;
+  // kernels smaller than this are never worth a Fourier transform, so they aren't timed
+  private static final int MIN_FFT_SIZE = 7;
+  // larger tiles barely save any work and no longer fit in the caches
+  private static final int MAX_TILE = 256;
+  // kernels too large to leave many useful rows in a tile of MAX_TILE may use tiles up to this
+  private static final int MAX_LARGE_TILE = 1024;
+  // kernels large enough for a Fourier transform are only worth this many separable terms, and
+  // looking for more of them takes longer than the transform itself
+  private static final int MAX_RANK_WITH_FFT = 4;
+  // the smallest kernel that runs faster through a Fourier transform, once it's known
+  private static int fftCrossover = -1;
+
+  private final int size;
+  private final int radius;
+  // for every cell of the kernel, the truncated product with every possible component, for exact
+  // convolutions only
+  private int[][] products;
+  // for every cell, a multiplier and shift that give the same truncated product, or null if some
+  // cell has none or the convolution isn't exact
+  private int[] multipliers;
+  private int shift;
+  private final boolean exact;
+  private final BorderMode border;
+  // the kernel row after row, for convolutions that aren't exact
+  private final double[] weights;
+  // the kernel as separable terms, or null if running it directly is cheaper
+  private final LowRankKernel terms;
+  // the weights scaled by a power of two and rounded, for kernels that aren't exact and are run
+  // directly, or null otherwise
+  private int[] fixedWeights;
+  private int fixedShift;
+  private int fixedBias;
+  // added to every sum worked out in doubles before it's truncated, or 0 if there are none
+  private double approximateBias;
+  // the transform of the tiles and of the kernel, or null if the kernel is run without one
+  private Fft fft;
+  private double[] kernelReal;
+  private double[] kernelImaginary;
+
+  /**
+   * Creates a convolution with a square kernel that truncates every product on its own.
+   *
+   * @param kernel the kernel, with an odd number of rows and the same number of columns
+   * @throws IllegalArgumentException if the kernel isn't square or has an even size
+   */
+  public Convolution(double[][] kernel) throws IllegalArgumentException {
+    this(kernel, ConvolutionMode.EXACT, BorderMode.ZERO);
+  }
+
+  /**
+   * Creates a convolution with a square kernel.
+   *
+   * @param kernel the kernel, with an odd number of rows and the same number of columns
+   * @param mode how to add up the weighted components of each pixel
+   * @param border how to treat the pixels the kernel reaches past the edges of the image
+   * @throws IllegalArgumentException if the kernel isn't square or has an even size, or the mode
+   *     or border mode is null
+   */
+  public Convolution(double[][] kernel, ConvolutionMode mode, BorderMode border)
+          throws IllegalArgumentException {
+    if (mode == null || border == null) {
+      throw new IllegalArgumentException("Mode and border mode can't be null");
+    }
+    if (kernel == null || kernel.length % 2 == 0) {
+      throw new IllegalArgumentException("Kernel must have an odd size");
+    }
+    this.size = kernel.length;
+    this.radius = this.size / 2;
+    this.exact = mode == ConvolutionMode.EXACT;
+    this.border = border;
+    this.weights = new double[this.size * this.size];
+    for (int x = 0; x < this.size; x++) {
+      if (kernel[x].length != this.size) {
+        throw new IllegalArgumentException("Kernel must be square");
+      }
+      System.arraycopy(kernel[x], 0, this.weights, x * this.size, this.size);
+    }
+    if (this.exact) {
+      this.prepareExact();
+    }
+    // a term costs two passes of the size of the kernel, which has to beat one pass of its area
+    int maxRank = (this.size * this.size - 1) / (2 * this.size);
+    if (mode == ConvolutionMode.FASTEST && maxRank > MAX_RANK_WITH_FFT
+            && this.size >= MIN_FFT_SIZE && this.size >= fftCrossover()) {
+      maxRank = MAX_RANK_WITH_FFT;
+    }
+    this.terms = mode != ConvolutionMode.FASTEST ? null : LowRankKernel.decompose(kernel, maxRank);
+    if (mode == ConvolutionMode.FASTEST && this.terms == null && this.size >= MIN_FFT_SIZE
+            && this.size >= fftCrossover()) {
+      this.prepareFft();
+    }
+    if (!this.exact && this.terms == null && this.fft == null) {
+      this.prepareFixedPoint();
+    }
+    if (this.terms != null || this.fft != null) {
+      this.prepareApproximateBias();
+    }
+  }
+
+  /**
+   * Works out how much to add to every sum worked out in doubles before truncating it. Separable
+   * passes and Fourier transforms round at every step, so a sum that should come out to a whole
+   * number, such as any pixel of a flat image under a kernel whose weights add up to 1, can land
+   * just below it. Those errors are many orders of magnitude below a millionth of the largest sum
+   * the kernel can give, so that much is added, which doesn't move any other sum to a different
+   * whole number in practice.
+   */
+  private void prepareApproximateBias() {
+    double total = 0;
+    for (double weight : this.weights) {
+      total = total + Math.abs(weight);
+    }
+    this.approximateBias = 1e-6 * 255 * total;
+  }
+
+  /**
+   * Works out the truncated product of every cell with every possible component, and looks for a
+   * multiplier and shift for every cell that truncate the same way.
+   */
+  private void prepareExact() {
+    this.products = new int[this.weights.length][256];
+    double largest = 0;
+    for (int cell = 0; cell < this.weights.length; cell++) {
+      for (int value = 0; value < 256; value++) {
+        this.products[cell][value] = (int) (value * this.weights[cell]);
+      }
+      largest = Math.max(largest, Math.abs(this.weights[cell]));
+    }
+
+    // the largest shift that keeps every product of a component and a multiplier inside an int
+    int shift = 24;
+    while (shift > 0 && 256.0 * (largest * (1 << shift) + 2) >= Integer.MAX_VALUE) {
+      shift--;
+    }
+    this.shift = shift;
+    int[] multipliers = new int[this.weights.length];
+    for (int cell = 0; cell < multipliers.length && multipliers != null; cell++) {
+      Integer multiplier = findMultiplier(this.products[cell], this.weights[cell], shift);
+      if (multiplier == null) {
+        multipliers = null;
+      }
+      else {
+        multipliers[cell] = multiplier;
+      }
+    }
+    this.multipliers = multipliers;
+  }
+
+  /**
+   * Scales the weights by the largest power of two that keeps every sum inside an int, and rounds
+   * them, so the kernel can be run with integer multiplies and adds and a single shift at the end.
+   * A rounded weight is off by at most half, so with components of at most 255 every cell puts a
+   * sum off by less than 128. That much is added to every sum before the shift, so a sum that
+   * comes out to a whole number doesn't end up just below it.
+   */
+  private void prepareFixedPoint() {
+    double total = 0;
+    int cells = 0;
+    for (double weight : this.weights) {
+      total = total + Math.abs(weight);
+      cells = cells + (weight == 0 ? 0 : 1);
+    }
+    int shift = 24;
+    while (shift > 0
+            && 255.0 * (total * (1 << shift) + cells) + 128.0 * cells >= Integer.MAX_VALUE) {
+      shift--;
+    }
+    this.fixedShift = shift;
+    this.fixedBias = 128 * cells;
+    this.fixedWeights = new int[this.weights.length];
+    for (int cell = 0; cell < this.weights.length; cell++) {
+      this.fixedWeights[cell] = (int) Math.round(this.weights[cell] * (1 << shift));
+    }
+  }
+
+  /**
+   * Works out the transform of the kernel on the cheapest tile for its size. A tile of side t
+   * gives t - size + 1 rows and columns of the result for a cost of about t * t * log t. Tiles
+   * only go past MAX_TILE for kernels so large that smaller tiles would leave few useful rows. If
+   * even the cheapest tile costs more per pixel than running every cell of the kernel directly,
+   * which happens to kernels nearly as large as the largest tile, the kernel is left without a
+   * transform.
+   */
+  private void prepareFft() {
+    int largestTile = Math.min(MAX_LARGE_TILE,
+            Math.max(MAX_TILE, 4 * Integer.highestOneBit(this.size)));
+    int best = 0;
+    double bestCost = (double) this.size * this.size;
+    for (int tile = Integer.highestOneBit(this.size) * 2; tile <= largestTile; tile = tile * 2) {
+      double useful = tile - this.size + 1.0;
+      double cost = (double) tile * tile * Integer.numberOfTrailingZeros(tile) / (useful * useful);
+      if (cost < bestCost) {
+        best = tile;
+        bestCost = cost;
+      }
+    }
+    if (best == 0) {
+      return;
+    }
+    this.fft = new Fft(best);
+    this.kernelReal = new double[best * best];
+    this.kernelImaginary = new double[best * best];
+    for (int cell = 0; cell < this.weights.length; cell++) {
+      this.kernelReal[(cell / this.size) * best + cell % this.size] = this.weights[cell];
+    }
+    this.fft.transform(this.kernelReal, this.kernelImaginary, false);
+  }
+
+  /**
+   * Returns the smallest kernel that runs faster through a Fourier transform than directly. It's
+   * read from the imageprocessor.fftCrossover system property if that is set, and otherwise
+   * measured once, by timing kernels of growing sizes both ways until the Fourier transform wins.
+   *
+   * @return the size of the smallest kernel worth a Fourier transform
+   */
+  static synchronized int fftCrossover() {
+    if (fftCrossover < 0) {
+      Integer given = Integer.getInteger("imageprocessor.fftCrossover");
+      fftCrossover = given != null ? given : measureCrossover();
+    }
+    return fftCrossover;
+  }
+
+  /**
+   * Times kernels of growing sizes run directly in fixed point over a few rows and through a
+   * Fourier transform over a single tile, and compares how long each took per pixel.
+   *
+   * @return the size of the smallest kernel that ran faster through a Fourier transform, or the
+   *     largest int if none did
+   */
+  private static int measureCrossover() {
+    Random random = new Random(0);
+    for (int size = MIN_FFT_SIZE; size <= MAX_TILE / 4; size = size + 4) {
+      double[][] kernel = new double[size][size];
+      for (double[] row : kernel) {
+        for (int y = 0; y < size; y++) {
+          row[y] = random.nextDouble() / (size * size);
+        }
+      }
+      // a fixed-point convolution makes no choice of its own, so the transform can be added to it
+      // and both ways timed
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FIXED_POINT,
+              BorderMode.ZERO);
+      convolution.prepareFft();
+      int useful = convolution.fft.getSize() - size + 1;
+      double direct = timePerPixel(convolution, false, 8, useful, random);
+      double transformed = timePerPixel(convolution, true, useful, useful, random);
+      if (transformed < direct) {
+        return size;
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Times a convolution over random planes, keeping the fastest of a few rounds so that the first
+   * one can warm up.
+   *
+   * @param convolution the convolution
+   * @param fft true to run it through a Fourier transform, false to run it directly
+   * @param rows the number of rows of the result
+   * @param width the number of pixels in a row of the result
+   * @param random where the components come from
+   * @return the fastest time per pixel of the result, in nanoseconds
+   */
+  private static double timePerPixel(Convolution convolution, boolean fft, int rows, int width,
+                                     Random random) {
+    int paddedWidth = width + convolution.size - 1;
+    int[][] planes = new int[3][(rows + convolution.size - 1) * paddedWidth];
+    double[][] values = new double[3][planes[0].length];
+    for (int component = 0; component < 3; component++) {
+      for (int k = 0; k < planes[component].length; k++) {
+        planes[component][k] = random.nextInt(256);
+        values[component][k] = planes[component][k];
+      }
+    }
+    double[][] sums = new double[3][rows * width];
+    int[] row = new int[width];
+    long fastest = Long.MAX_VALUE;
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      if (fft) {
+        convolution.sumWithFft(values, paddedWidth, rows, width, sums);
+      }
+      else {
+        for (int i = 0; i < rows; i++) {
+          for (int[] plane : planes) {
+            convolution.sumRow(plane, paddedWidth, i, width, row);
+          }
+        }
+      }
+      fastest = Math.min(fastest, System.nanoTime() - start);
+    }
+    return (double) fastest / (rows * width);
+  }
+
+  /**
+   * Looks for a multiplier that, followed by a shift, gives the same truncated product as a
+   * weight for every possible component. A negative multiplier stands for a negative weight,
+   * whose products are truncated towards zero.
+   *
+   * @param products the truncated product of the weight with every possible component
+   * @param weight the weight
+   * @param shift the shift
+   * @return the multiplier, or null if there is none close to the weight
+   */
+  private static Integer findMultiplier(int[] products, double weight, int shift) {
+    long closest = (long) Math.floor(Math.abs(weight) * (1L << shift));
+    for (long multiplier = closest; multiplier <= closest + 2; multiplier++) {
+      boolean matches = true;
+      for (int value = 0; value < 256 && matches; value++) {
+        matches = (value * multiplier) >> shift == Math.abs(products[value]);
+      }
+      if (matches) {
+        return (int) (weight < 0 ? -multiplier : multiplier);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Works out a band of rows of the result and writes them into an image.
+   *
+   * @param source the image the kernel is run over
+   * @param dest the image the result is written into, with the same size as the source
+   * @param fromRow the first row of the band
+   * @param toRow the row just after the last row of the band
+   */
+  public void convolve(ImageModel source, WritableImageModel dest, int fromRow, int toRow) {
+    int width = source.getWidth();
+    int chunkRows = Math.max(4 * this.size, CHUNK_PIXELS / Math.max(1, width));
+    if (this.fft != null) {
+      // a chunk should at least fill the useful rows of a tile
+      chunkRows = Math.max(chunkRows, this.fft.getSize() - this.size + 1);
+    }
+    int paddedWidth = width + 2 * this.radius;
+    int[][] planes = new int[3][(Math.min(chunkRows, toRow - fromRow) + 2 * this.radius)
+            * paddedWidth];
+    int[] pixels = new int[width * (Math.min(chunkRows, toRow - fromRow) + 2 * this.radius)];
+    if (!this.exact && this.fixedWeights == null) {
+      this.convolveApproximately(source, dest, fromRow, toRow, chunkRows, planes, pixels);
+      return;
+    }
+    int[][] sums = new int[3][width];
+    int[] row = new int[width];
+    for (int start = fromRow; start < toRow; start = start + chunkRows) {
+      int end = Math.min(toRow, start + chunkRows);
+      this.split(source, start, end, planes, pixels);
+      for (int i = start; i < end; i++) {
+        for (int component = 0; component < 3; component++) {
+          this.sumRow(planes[component], paddedWidth, i - start, width, sums[component]);
+        }
+        if (this.fixedWeights != null) {
+          for (int[] sum : sums) {
+            for (int j = 0; j < width; j++) {
+              sum[j] = (sum[j] + this.fixedBias) >> this.fixedShift;
+            }
+          }
+        }
+        int maxValue = source.getMaxValue();
+        int[] red = sums[0];
+        int[] green = sums[1];
+        int[] blue = sums[2];
+        for (int j = 0; j < width; j++) {
+          row[j] = PackedImage.pack(clamp(red[j], maxValue), clamp(green[j], maxValue),
+                  clamp(blue[j], maxValue));
+        }
+        dest.setRow(i, row);
+      }
+    }
+  }
+
+  /**
+   * Works out a band of rows of the result without truncating the products, one chunk of rows at
+   * a time, with separable passes or Fourier transforms.
+   *
+   * @param source the image the kernel is run over
+   * @param dest the image the result is written into
+   * @param fromRow the first row of the band
+   * @param toRow the row just after the last row of the band
+   * @param chunkRows the number of rows in a chunk
+   * @param planes room for the padded planes of a chunk
+   * @param pixels room for the packed pixels of a chunk
+   */
+  private void convolveApproximately(ImageModel source, WritableImageModel dest, int fromRow,
+                                     int toRow, int chunkRows, int[][] planes, int[] pixels) {
+    int width = source.getWidth();
+    int paddedWidth = width + 2 * this.radius;
+    int maxValue = source.getMaxValue();
+    double[][] values = new double[3][planes[0].length];
+    double[] passed = this.terms == null ? null : new double[planes[0].length];
+    double[][] sums = new double[3][Math.min(chunkRows, toRow - fromRow) * width];
+    int[] row = new int[width];
+    for (int start = fromRow; start < toRow; start = start + chunkRows) {
+      int end = Math.min(toRow, start + chunkRows);
+      this.split(source, start, end, planes, pixels);
+      for (int component = 0; component < 3; component++) {
+        int[] plane = planes[component];
+        double[] value = values[component];
+        for (int k = 0; k < value.length; k++) {
+          value[k] = plane[k];
+        }
+        Arrays.fill(sums[component], 0);
+      }
+      if (this.fft != null) {
+        this.sumWithFft(values, paddedWidth, end - start, width, sums);
+      }
+      else {
+        for (int component = 0; component < 3; component++) {
+          this.sumSeparably(values[component], passed, paddedWidth, end - start, width,
+                  sums[component]);
+        }
+      }
+      for (int i = start; i < end; i++) {
+        int offset = (i - start) * width;
+        double bias = this.approximateBias;
+        for (int j = 0; j < width; j++) {
+          row[j] = PackedImage.pack(clamp((int) (sums[0][offset + j] + bias), maxValue),
+                  clamp((int) (sums[1][offset + j] + bias), maxValue),
+                  clamp((int) (sums[2][offset + j] + bias), maxValue));
+        }
+        dest.setRow(i, row);
+      }
+    }
+  }
+
+  /**
+   * Works out the weighted sums for a chunk of all three planes through Fourier transforms of
+   * overlapping tiles. Each tile of the planes is multiplied by the transform of the kernel, which
+   * is the same as running the kernel over it, and the part of the result that the kernel didn't
+   * wrap around for is kept. Red and green go through a single transform as the real and
+   * imaginary parts of the same tile, since the kernel is real and keeps them apart.
+   *
+   * @param values the padded planes
+   * @param paddedWidth the width of the planes, including their border
+   * @param rows the number of rows in the chunk
+   * @param width the number of pixels in a row
+   * @param sums the arrays the sums are written to, row after row
+   */
+  private void sumWithFft(double[][] values, int paddedWidth, int rows, int width,
+                          double[][] sums) {
+    int tile = this.fft.getSize();
+    int useful = tile - this.size + 1;
+    int paddedRows = rows + this.size - 1;
+    double[] real = new double[tile * tile];
+    double[] imaginary = new double[tile * tile];
+    for (int top = 0; top < rows; top = top + useful) {
+      for (int left = 0; left < width; left = left + useful) {
+        for (int pass = 0; pass < 2; pass++) {
+          double[] first = values[2 * pass];
+          double[] second = pass == 0 ? values[1] : null;
+          Arrays.fill(real, 0);
+          Arrays.fill(imaginary, 0);
+          for (int a = 0; a < tile && top + a < paddedRows; a++) {
+            int from = (top + a) * paddedWidth + left;
+            int count = Math.min(tile, paddedWidth - left);
+            System.arraycopy(first, from, real, a * tile, count);
+            if (second != null) {
+              System.arraycopy(second, from, imaginary, a * tile, count);
+            }
+          }
+          this.fft.transform(real, imaginary, false);
+          // multiplying by the conjugate runs the kernel as it's laid out, without flipping it
+          for (int k = 0; k < real.length; k++) {
+            double x = real[k];
+            double y = imaginary[k];
+            real[k] = x * this.kernelReal[k] + y * this.kernelImaginary[k];
+            imaginary[k] = y * this.kernelReal[k] - x * this.kernelImaginary[k];
+          }
+          this.fft.transform(real, imaginary, true);
+          for (int a = 0; a < useful && top + a < rows; a++) {
+            int count = Math.min(useful, width - left);
+            int to = (top + a) * width + left;
+            System.arraycopy(real, a * tile, sums[2 * pass], to, count);
+            if (second != null) {
+              System.arraycopy(imaginary, a * tile, sums[1], to, count);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds up the weighted components for a chunk of one plane by running every separable term of
+   * the kernel horizontally over every row, border included, and then vertically.
+   *
+   * @param values the padded plane
+   * @param passed room for the result of a horizontal pass
+   * @param paddedWidth the width of the plane, including its border
+   * @param rows the number of rows in the chunk
+   * @param width the number of pixels in a row
+   * @param sums the array the sums are added to, row after row
+   */
+  private void sumSeparably(double[] values, double[] passed, int paddedWidth, int rows,
+                            int width, double[] sums) {
+    for (int term = 0; term < this.terms.getRank(); term++) {
+      double[] horizontal = this.terms.getRow(term);
+      double[] vertical = this.terms.getColumn(term);
+      for (int i = 0; i < rows + 2 * this.radius; i++) {
+        int offset = i * width;
+        Arrays.fill(passed, offset, offset + width, 0);
+        for (int y = 0; y < this.size; y++) {
+          double weight = horizontal[y];
+          int start = i * paddedWidth + y;
+          for (int j = 0; j < width; j++) {
+            passed[offset + j] = passed[offset + j] + weight * values[start + j];
+          }
+        }
+      }
+      for (int i = 0; i < rows; i++) {
+        int offset = i * width;
+        for (int x = 0; x < this.size; x++) {
+          double weight = vertical[x];
+          int start = (i + x) * width;
+          for (int j = 0; j < width; j++) {
+            sums[offset + j] = sums[offset + j] + weight * passed[start + j];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits a chunk of rows, plus the rows around it that the kernel reaches, into one plane per
+   * color component, with a border around it filled in as the border mode says.
+   *
+   * @param source the image the kernel is run over
+   * @param start the first row of the chunk
+   * @param end the row just after the last row of the chunk
+   * @param planes the planes, which are filled in
+   * @param pixels room for the packed pixels of the rows that are read
+   */
+  private void split(ImageModel source, int start, int end, int[][] planes, int[] pixels) {
+    int height = source.getHeight();
+    int width = source.getWidth();
+    int paddedWidth = width + 2 * this.radius;
+    // the rows inside the image are read in one go, and any other row the border needs by itself
+    int top = Math.max(0, start - this.radius);
+    int bottom = Math.min(height, end + this.radius);
+    source.getRegion(top, 0, bottom - top, width, pixels);
+    if (this.border == BorderMode.ZERO) {
+      for (int[] plane : planes) {
+        Arrays.fill(plane, 0);
+      }
+    }
+    int[] outside = null;
+    for (int i = start - this.radius; i < end + this.radius; i++) {
+      int sourceRow = this.border.map(i, height);
+      if (sourceRow < 0) {
+        continue;
+      }
+      int to = (i - start + this.radius) * paddedWidth + this.radius;
+      if (sourceRow >= top && sourceRow < bottom) {
+        splitRow(pixels, (sourceRow - top) * width, planes, to, width);
+      }
+      else {
+        if (outside == null) {
+          outside = new int[width];
+        }
+        source.getRow(sourceRow, outside);
+        splitRow(outside, 0, planes, to, width);
+      }
+      if (this.border != BorderMode.ZERO) {
+        for (int[] plane : planes) {
+          for (int y = 1; y <= this.radius; y++) {
+            plane[to - y] = plane[to + this.border.map(-y, width)];
+            plane[to + width - 1 + y] = plane[to + this.border.map(width - 1 + y, width)];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits a row of packed pixels into the planes.
+   *
+   * @param pixels the packed pixels
+   * @param from where the row starts in the packed pixels
+   * @param planes the planes
+   * @param to where the row starts in the planes
+   * @param width the number of pixels in the row
+   */
+  private static void splitRow(int[] pixels, int from, int[][] planes, int to, int width) {
+    int[] red = planes[0];
+    int[] green = planes[1];
+    int[] blue = planes[2];
+    for (int j = 0; j < width; j++) {
+      red[to + j] = (pixels[from + j] >> 16) & 0xFF;
+    }
+    for (int j = 0; j < width; j++) {
+      green[to + j] = (pixels[from + j] >> 8) & 0xFF;
+    }
+    for (int j = 0; j < width; j++) {
+      blue[to + j] = pixels[from + j] & 0xFF;
+    }
+  }
+
+  /**
+   * Adds up the products of every cell of the kernel for one row of one plane: truncated products
+   * for an exact kernel, and products with the scaled weights for a fixed-point one.
+   *
+   * @param plane the padded plane
+   * @param paddedWidth the width of the plane, including its border
+   * @param row the row of the chunk, not counting the border
+   * @param width the number of pixels in the row
+   * @param sums the array the sums are written to
+   */
+  private void sumRow(int[] plane, int paddedWidth, int row, int width, int[] sums) {
+    Arrays.fill(sums, 0, width, 0);
+    for (int x = 0; x < this.size; x++) {
+      for (int y = 0; y < this.size; y++) {
+        int cell = x * this.size + y;
+        int start = (row + x) * paddedWidth + y;
+        if (this.fixedWeights != null) {
+          int weight = this.fixedWeights[cell];
+          if (weight != 0) {
+            for (int j = 0; j < width; j++) {
+              sums[j] = sums[j] + weight * plane[start + j];
+            }
+          }
+          continue;
+        }
+        if (this.multipliers == null) {
+          int[] product = this.products[cell];
+          for (int j = 0; j < width; j++) {
+            sums[j] = sums[j] + product[plane[start + j]];
+          }
+          continue;
+        }
+        int multiplier = this.multipliers[cell];
+        int shift = this.shift;
+        if (multiplier > 0) {
+          for (int j = 0; j < width; j++) {
+            sums[j] = sums[j] + ((plane[start + j] * multiplier) >> shift);
+          }
+        }
+        else if (multiplier < 0) {
+          multiplier = -multiplier;
+          for (int j = 0; j < width; j++) {
+            sums[j] = sums[j] - ((plane[start + j] * multiplier) >> shift);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps a component inside the range of the image.
+   *
+   * @param value the component
+   * @param maxValue the largest value a component may have
+   * @return the component, clamped between 0 and the maximum value
+   */
+  private static int clamp(int value, int maxValue) {
+    return Math.max(0, Math.min(maxValue, value));
+  }
+}
@@ -0,0 +1,23 @@
+package model;
+
+/**
+ * The ways a convolution can add up the weighted components of each pixel.
+ */
+public enum ConvolutionMode {
+  /**
+   * Every product of a weight and a component is truncated on its own before they are added up.
+   * This is what blur and sharpen have always done.
+   */
+  EXACT,
+  /**
+   * Only the sum of each pixel is truncated. The weights are scaled to integers once, so every
+   * pixel takes integer multiplies and adds and a single shift at the end.
+   */
+  FIXED_POINT,
+  /**
+   * Only the sum of each pixel is truncated, in whichever way is fastest for the kernel:
+   * separable passes for a kernel that is a short sum of separable terms, a Fourier transform for
+   * a large kernel, and fixed point for anything else.
+   */
+  FASTEST
+}
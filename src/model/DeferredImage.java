@@ -0,0 +1,129 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An image that hasn't been computed yet: a source image plus the point operations that still
+ * have to be run on it. Adding another point operation to a deferred image doesn't read a single
+ * pixel, it only makes the list longer, so a whole chain of operations is run in one pass over
+ * the source when the pixels are finally read. Flips and other remapping views are moved
+ * underneath the operations, since it doesn't matter whether a pixel is moved before or after
+ * its color is changed, so they don't break up a chain.
+ */
+public class DeferredImage implements DerivedImage {
+  private final ImageModel source;
+  private final List<PointOperation> operations;
+
+  /**
+   * Creates a deferred image. Private because the static method below makes sure that the source
+   * is never a deferred image itself.
+   */
+  private DeferredImage(ImageModel source, List<PointOperation> operations) {
+    this.source = source;
+    this.operations = operations;
+  }
+
+  /**
+   * Returns an image that is the given image with a point operation run on it, without running
+   * the operation yet. If the image is already deferred, the operation is added to its chain, and
+   * is fused with the last operation of the chain when the two allow it.
+   *
+   * @param model the image to run the operation on
+   * @param operation the operation to be run
+   * @return the deferred result
+   */
+  public static ImageModel of(ImageModel model, PointOperation operation) {
+    if (model instanceof DeferredImage) {
+      DeferredImage deferred = (DeferredImage) model;
+      List<PointOperation> operations = new ArrayList<>(deferred.operations);
+      PointOperation last = operations.get(operations.size() - 1);
+      PointOperation fused = last.fuse(operation);
+      if (fused == null) {
+        operations.add(operation);
+      }
+      else {
+        operations.set(operations.size() - 1, fused);
+      }
+      return new DeferredImage(deferred.source, Collections.unmodifiableList(operations));
+    }
+    return new DeferredImage(model, List.of(operation));
+  }
+
+  /**
+   * Returns a deferred image with the same chain of operations as this one, but run on a
+   * different source. Used to move a remapping view underneath the chain.
+   *
+   * @param source the new source image
+   * @return the deferred image with the new source
+   */
+  DeferredImage withSource(ImageModel source) {
+    return new DeferredImage(source, this.operations);
+  }
+
+  /**
+   * Returns the image that the chain of operations is run on.
+   *
+   * @return the source image
+   */
+  @Override
+  public ImageModel getSource() {
+    return this.source;
+  }
+
+  /**
+   * Returns the number of point operations waiting to be run on the source.
+   *
+   * @return the length of the chain
+   */
+  public int pendingOperations() {
+    return this.operations.size();
+  }
+
+  @Override
+  public Pixel getPixel(int row, int col) throws IllegalArgumentException {
+    int rgb = this.getRGB(row, col);
+    return new Pixel(PackedImage.red(rgb), PackedImage.green(rgb), PackedImage.blue(rgb));
+  }
+
+  @Override
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    int rgb = this.source.getRGB(row, col);
+    for (PointOperation operation : this.operations) {
+      rgb = operation.apply(rgb);
+    }
+    return rgb;
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width, int[] dest)
+          throws IllegalArgumentException {
+    this.source.getRegion(row, col, height, width, dest);
+    // the region is still in the cache after being read, so running every operation over it
+    // before moving on is still a single pass over memory
+    for (PointOperation operation : this.operations) {
+      operation.applyToRow(dest, height * width);
+    }
+  }
+
+  @Override
+  public int getMaxValue() {
+    return this.source.getMaxValue();
+  }
+
+  @Override
+  public int getHeight() {
+    return this.source.getHeight();
+  }
+
+  @Override
+  public int getWidth() {
+    return this.source.getWidth();
+  }
+
+  @Override
+  public String getFilepath() {
+    return this.source.getFilepath();
+  }
+}
@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Marks an image model that doesn't store pixels of its own, but works out each pixel from other
+ * images whenever it's read. Reading a derived image once is cheap, but commands that read every
+ * pixel many times should copy it into real storage first.
+ */
+public interface DerivedImage extends ImageModel {
+
+  /**
+   * Returns the image this one works out its pixels from, which stays in memory for as long as
+   * this one does.
+   *
+   * @return the source image
+   */
+  ImageModel getSource();
+}
@@ -0,0 +1,136 @@
+package model;
+
+/**
+ * A two-dimensional fast Fourier transform of a square of complex numbers whose side is a power
+ * of two. Each row is transformed, then each column, with the iterative radix-2 algorithm.
+ */
+final class Fft {
+  private final int size;
+  // the cosine and sine of every angle the butterflies turn by, for the first half of a circle
+  private final double[] cos;
+  private final double[] sin;
+  // where every index goes when the order of its bits is reversed
+  private final int[] reversed;
+
+  /**
+   * Prepares the transform of a square of a given side.
+   *
+   * @param size the side of the square, a power of two
+   * @throws IllegalArgumentException if the side isn't a power of two
+   */
+  Fft(int size) throws IllegalArgumentException {
+    if (size < 1 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("Size must be a power of two");
+    }
+    this.size = size;
+    this.cos = new double[Math.max(1, size / 2)];
+    this.sin = new double[Math.max(1, size / 2)];
+    for (int k = 0; k < size / 2; k++) {
+      this.cos[k] = Math.cos(2 * Math.PI * k / size);
+      this.sin[k] = Math.sin(2 * Math.PI * k / size);
+    }
+    this.reversed = new int[size];
+    int bits = Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size && bits > 0; i++) {
+      this.reversed[i] = Integer.reverse(i) >>> (32 - bits);
+    }
+  }
+
+  /**
+   * Returns the side of the square this transform works on.
+   *
+   * @return the side
+   */
+  int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Transforms a square in place. Rows are transformed, the square is transposed, and rows are
+   * transformed again, since rows are much faster to walk through than columns. The result is
+   * therefore left transposed, which doesn't matter for multiplying two transforms cell by cell,
+   * and transforming it back the same way undoes the transposition. The inverse transform also
+   * divides by the number of cells, so running both gives back the original square.
+   *
+   * @param real the real parts of the cells, row after row
+   * @param imaginary the imaginary parts of the cells, row after row
+   * @param inverse true for the inverse transform
+   */
+  void transform(double[] real, double[] imaginary, boolean inverse) {
+    for (int i = 0; i < this.size; i++) {
+      this.transform(real, imaginary, i * this.size, 1, inverse);
+    }
+    this.transpose(real);
+    this.transpose(imaginary);
+    for (int i = 0; i < this.size; i++) {
+      this.transform(real, imaginary, i * this.size, 1, inverse);
+    }
+    if (inverse) {
+      double scale = 1.0 / ((double) this.size * this.size);
+      for (int k = 0; k < real.length; k++) {
+        real[k] = real[k] * scale;
+        imaginary[k] = imaginary[k] * scale;
+      }
+    }
+  }
+
+  /**
+   * Transposes a square in place.
+   *
+   * @param cells the cells, row after row
+   */
+  private void transpose(double[] cells) {
+    for (int i = 0; i < this.size; i++) {
+      for (int j = i + 1; j < this.size; j++) {
+        double swap = cells[i * this.size + j];
+        cells[i * this.size + j] = cells[j * this.size + i];
+        cells[j * this.size + i] = swap;
+      }
+    }
+  }
+
+  /**
+   * Transforms a single row or column in place.
+   *
+   * @param real the real parts of the cells
+   * @param imaginary the imaginary parts of the cells
+   * @param offset where the first cell of the row or column is
+   * @param stride how far apart the cells of the row or column are
+   * @param inverse true for the inverse transform, without dividing by the number of cells
+   */
+  private void transform(double[] real, double[] imaginary, int offset, int stride,
+                         boolean inverse) {
+    int n = this.size;
+    for (int i = 0; i < n; i++) {
+      int j = this.reversed[i];
+      if (j > i) {
+        int a = offset + i * stride;
+        int b = offset + j * stride;
+        double swap = real[a];
+        real[a] = real[b];
+        real[b] = swap;
+        swap = imaginary[a];
+        imaginary[a] = imaginary[b];
+        imaginary[b] = swap;
+      }
+    }
+    for (int length = 2; length <= n; length = length << 1) {
+      int half = length >> 1;
+      int step = n / length;
+      for (int start = 0; start < n; start = start + length) {
+        for (int k = 0; k < half; k++) {
+          double turnReal = this.cos[k * step];
+          double turnImaginary = inverse ? this.sin[k * step] : -this.sin[k * step];
+          int a = offset + (start + k) * stride;
+          int b = a + half * stride;
+          double real2 = real[b] * turnReal - imaginary[b] * turnImaginary;
+          double imaginary2 = real[b] * turnImaginary + imaginary[b] * turnReal;
+          real[b] = real[a] - real2;
+          imaginary[b] = imaginary[a] - imaginary2;
+          real[a] = real[a] + real2;
+          imaginary[a] = imaginary[a] + imaginary2;
+        }
+      }
+    }
+  }
+}
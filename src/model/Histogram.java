@@ -26,12 +26,17 @@ public class Histogram implements IHistogram {
   @Override
   public void getComponents(ImageModel model) {
     int counter = 0;
+    int[] row = new int[model.getWidth()];
     for (int i = 0; i < model.getHeight(); i++) {
+      model.getRow(i, row);
       for (int j = 0; j < model.getWidth(); j++) {
-        this.red[counter] = model.getPixel(i, j).getRed();
-        this.green[counter] = model.getPixel(i, j).getGreen();
-        this.blue[counter] = model.getPixel(i, j).getBlue();
-        this.intensity[counter] = model.getPixel(i, j).getIntensity();
+        int red = PackedImage.red(row[j]);
+        int green = PackedImage.green(row[j]);
+        int blue = PackedImage.blue(row[j]);
+        this.red[counter] = red;
+        this.green[counter] = green;
+        this.blue[counter] = blue;
+        this.intensity[counter] = Pixel.intensity(red, green, blue);
         counter++;
       }
     }
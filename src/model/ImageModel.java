@@ -43,4 +43,58 @@ public interface ImageModel {
    * @return the file path, as a String
    */
   String getFilepath();
+
+  /**
+   * Returns the pixel at the specified position packed into a single integer, with the red
+   * component in bits 16-23, the green component in bits 8-15 and the blue component in bits 0-7.
+   * Unlike getPixel, this doesn't need to create a new object for implementations that don't
+   * store pixels as objects.
+   *
+   * @param row the x-coordinate of the position
+   * @param col the y-coordinate of the position
+   * @return the packed color at the position
+   * @throws IllegalArgumentException if the coordinates are outside the image boundaries
+   */
+  default int getRGB(int row, int col) throws IllegalArgumentException {
+    Pixel pixel = this.getPixel(row, col);
+    return PackedImage.pack(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
+  }
+
+  /**
+   * Copies an entire row of this image into the given array as packed colors, in the same format
+   * as getRGB.
+   *
+   * @param row the row to be copied
+   * @param dest the array to copy into, must hold at least getWidth() elements
+   * @throws IllegalArgumentException if the row is outside the image boundaries or the array is
+   *      too small
+   */
+  default void getRow(int row, int[] dest) throws IllegalArgumentException {
+    this.getRegion(row, 0, 1, this.getWidth(), dest);
+  }
+
+  /**
+   * Copies a rectangular region of this image into the given array as packed colors, in the same
+   * format as getRGB. The region is stored row after row, so the pixel at (row + i, col + j) ends
+   * up at index i * width + j.
+   *
+   * @param row the first row of the region
+   * @param col the first column of the region
+   * @param height the number of rows in the region
+   * @param width the number of columns in the region
+   * @param dest the array to copy into, must hold at least height * width elements
+   * @throws IllegalArgumentException if the region is outside the image boundaries or the array
+   *      is too small
+   */
+  default void getRegion(int row, int col, int height, int width, int[] dest)
+          throws IllegalArgumentException {
+    PackedImage.checkRegion(this, row, col, height, width, dest);
+    int index = 0;
+    for (int i = row; i < row + height; i++) {
+      for (int j = col; j < col + width; j++) {
+        dest[index] = this.getRGB(i, j);
+        index++;
+      }
+    }
+  }
 }
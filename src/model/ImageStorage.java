@@ -1,6 +1,7 @@
 package model;
 
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This part of the model serves as storage for the processed images so far.
@@ -8,12 +9,38 @@ import java.util.HashMap;
 public interface ImageStorage {
 
   /**
-   * Returns all processed images in the form of a hash map.
+   * Returns a copy of all processed images in the form of a hash map. Copying takes time
+   * proportional to the number of images stored, so getImage and containsImage should be used to
+   * look up single images.
    *
    * @return a hash map representing the images
    */
   HashMap<String, ImageModel> getImages();
 
+  /**
+   * Returns a read-only view of all processed images, without copying them. The view reflects
+   * images that are added later on.
+   *
+   * @return an unmodifiable map from the names of the images to their data
+   */
+  Map<String, ImageModel> getImagesView();
+
+  /**
+   * Returns the image stored under a specific name.
+   *
+   * @param name the name of the image
+   * @return the data of the image, or null if no image has that name
+   */
+  ImageModel getImage(String name);
+
+  /**
+   * Checks whether an image is stored under a specific name.
+   *
+   * @param name the name of the image
+   * @return true if an image has that name, false otherwise
+   */
+  boolean containsImage(String name);
+
   /**
    * Adds an image to this implementation of the storage system.
    *
@@ -21,4 +48,12 @@ public interface ImageStorage {
    * @param image the data of the image to be added
    */
   void addImage(String name, ImageModel image);
+
+  /**
+   * Removes the image stored under a specific name, so its memory can be reclaimed. Nothing
+   * happens if no image has that name.
+   *
+   * @param name the name of the image to be removed
+   */
+  void removeImage(String name);
 }
@@ -1,5 +1,6 @@
 package model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,7 +9,7 @@ import java.util.Map;
  * and may not be used. If this part of the model is not used, the hash map should be null.
  */
 public class ImageStorageImpl implements ImageStorage {
-  private HashMap<String, ImageModel> images;
+  private final HashMap<String, ImageModel> images;
 
   /**
    * Initializes the storage system to be empty, no images are added.
@@ -19,17 +20,31 @@ public class ImageStorageImpl implements ImageStorage {
 
   @Override
   public HashMap<String, ImageModel> getImages() {
-    HashMap<String, ImageModel> copy = new HashMap<>();
-    for (Map.Entry<String, ImageModel> e : this.images.entrySet()) {
-      String elementName = e.getKey();
-      ImageModel element = e.getValue();
-      copy.put(elementName, element);
-    }
-    return copy;
+    return new HashMap<>(this.images);
+  }
+
+  @Override
+  public Map<String, ImageModel> getImagesView() {
+    return Collections.unmodifiableMap(this.images);
+  }
+
+  @Override
+  public ImageModel getImage(String name) {
+    return this.images.get(name);
+  }
+
+  @Override
+  public boolean containsImage(String name) {
+    return this.images.containsKey(name);
   }
 
   @Override
   public void addImage(String name, ImageModel image) {
     this.images.put(name, image);
   }
+
+  @Override
+  public void removeImage(String name) {
+    this.images.remove(name);
+  }
 }
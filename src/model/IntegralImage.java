@@ -0,0 +1,268 @@
+package model;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The summed-area table of an image, which holds for every position the sum of each color
+ * component over all the pixels above and to the left of it. The sum over any rectangle of the
+ * image then takes four lookups whatever its size, and so do its mean and, with a second table of
+ * the sums of squares, its variance. Averaging downsizes add up the pixels of rectangles this way,
+ * and so do box blurs of images whose table is already around.
+ *
+ * <p>Images aren't changed once they have been made, so the table of an image is worked out the
+ * first time it's asked for and handed out again after that, for as long as the image is in use.
+ * Tables take 24 bytes per pixel, or 48 with the sums of squares, so they are only held on to
+ * softly and are dropped again when memory runs low.</p>
+ */
+public final class IntegralImage {
+  // the tables of images that are still in use, which go away along with their image
+  private static final Map<ImageModel, SoftReference<IntegralImage>> TABLES =
+          Collections.synchronizedMap(new WeakHashMap<>());
+
+  // the image, only held on to weakly so that the table doesn't keep it in use
+  private final WeakReference<ImageModel> source;
+  private final int height;
+  private final int width;
+  // for every color component, the sums over the pixels above and to the left of every position,
+  // in rows of width + 1 with a first row and column of zeros
+  private final long[][] sums;
+  // the same for the squares of the components, worked out the first time a variance is needed
+  private long[][] squares;
+
+  /**
+   * Works out the summed-area table of an image.
+   *
+   * @param source the image
+   * @throws IllegalArgumentException if the image is too large for a table
+   */
+  private IntegralImage(ImageModel source) throws IllegalArgumentException {
+    if ((long) (source.getHeight() + 1) * (source.getWidth() + 1) > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too large for a summed-area table");
+    }
+    this.source = new WeakReference<>(source);
+    this.height = source.getHeight();
+    this.width = source.getWidth();
+    this.sums = this.addUp(source, false);
+  }
+
+  /**
+   * Returns the summed-area table of an image, which is only worked out the first time it's
+   * asked for.
+   *
+   * @param image the image
+   * @return the table
+   * @throws IllegalArgumentException if the image is null or too large for a table
+   */
+  public static IntegralImage of(ImageModel image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image can't be null");
+    }
+    SoftReference<IntegralImage> reference = TABLES.get(image);
+    IntegralImage table = reference == null ? null : reference.get();
+    if (table == null) {
+      // worked out without holding on to the map, so tables of other images aren't held up
+      table = new IntegralImage(image);
+      TABLES.put(image, new SoftReference<>(table));
+    }
+    return table;
+  }
+
+  /**
+   * Returns the summed-area table of an image if it has already been worked out and is still
+   * around, without working it out otherwise.
+   *
+   * @param image the image
+   * @return the table, or null if the image doesn't have one
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static IntegralImage cached(ImageModel image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image can't be null");
+    }
+    SoftReference<IntegralImage> reference = TABLES.get(image);
+    return reference == null ? null : reference.get();
+  }
+
+  /**
+   * Returns the sum of a color component over a rectangle of the image.
+   *
+   * @param channel the color component: 0 for red, 1 for green and 2 for blue
+   * @param row the top row of the rectangle
+   * @param col the left column of the rectangle
+   * @param height the number of rows in the rectangle
+   * @param width the number of columns in the rectangle
+   * @return the sum
+   * @throws IllegalArgumentException if the channel isn't a color component or the rectangle
+   *     isn't inside the image
+   */
+  public long sum(int channel, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    this.checkRegion(channel, row, col, height, width);
+    return this.lookUp(this.sums[channel], row, col, height, width);
+  }
+
+  /**
+   * Returns the mean of a color component over a rectangle of the image.
+   *
+   * @param channel the color component: 0 for red, 1 for green and 2 for blue
+   * @param row the top row of the rectangle
+   * @param col the left column of the rectangle
+   * @param height the number of rows in the rectangle, at least 1
+   * @param width the number of columns in the rectangle, at least 1
+   * @return the mean
+   * @throws IllegalArgumentException if the channel isn't a color component or the rectangle is
+   *     empty or isn't inside the image
+   */
+  public double mean(int channel, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    this.checkArea(height, width);
+    return (double) this.sum(channel, row, col, height, width) / ((long) height * width);
+  }
+
+  /**
+   * Returns the variance of a color component over a rectangle of the image, which is the mean of
+   * the squares of the components less the square of their mean.
+   *
+   * @param channel the color component: 0 for red, 1 for green and 2 for blue
+   * @param row the top row of the rectangle
+   * @param col the left column of the rectangle
+   * @param height the number of rows in the rectangle, at least 1
+   * @param width the number of columns in the rectangle, at least 1
+   * @return the variance
+   * @throws IllegalArgumentException if the channel isn't a color component or the rectangle is
+   *     empty or isn't inside the image
+   * @throws IllegalStateException if the image is no longer in use, and this is the first variance
+   *     asked of its table
+   */
+  public double variance(int channel, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    this.checkArea(height, width);
+    double mean = this.mean(channel, row, col, height, width);
+    double meanOfSquares = (double) this.lookUp(this.getSquares()[channel], row, col, height,
+            width) / ((long) height * width);
+    // rounding can leave a variance that should be 0 just below it
+    return Math.max(0, meanOfSquares - mean * mean);
+  }
+
+  /**
+   * Returns the mean color of a rectangle of the image, with every component rounded to the
+   * nearest whole number.
+   *
+   * @param row the top row of the rectangle
+   * @param col the left column of the rectangle
+   * @param height the number of rows in the rectangle, at least 1
+   * @param width the number of columns in the rectangle, at least 1
+   * @return the packed mean color
+   * @throws IllegalArgumentException if the rectangle is empty or isn't inside the image
+   */
+  public int average(int row, int col, int height, int width) throws IllegalArgumentException {
+    this.checkArea(height, width);
+    long area = (long) height * width;
+    return PackedImage.pack((int) ((this.sum(0, row, col, height, width) + area / 2) / area),
+            (int) ((this.sum(1, row, col, height, width) + area / 2) / area),
+            (int) ((this.sum(2, row, col, height, width) + area / 2) / area));
+  }
+
+  /**
+   * Returns the sums of the squares of the components, working them out the first time.
+   *
+   * @return the table of sums of squares
+   * @throws IllegalStateException if the image is no longer in use, and the squares weren't
+   *     worked out while it was
+   */
+  private synchronized long[][] getSquares() throws IllegalStateException {
+    if (this.squares == null) {
+      ImageModel image = this.source.get();
+      if (image == null) {
+        throw new IllegalStateException("The image of the table is no longer in use");
+      }
+      this.squares = this.addUp(image, true);
+    }
+    return this.squares;
+  }
+
+  /**
+   * Adds up the components of every row of an image, and of every row above it.
+   *
+   * @param source the image
+   * @param square true to add up the squares of the components instead
+   * @return the table of every color component
+   */
+  private long[][] addUp(ImageModel source, boolean square) {
+    int stride = this.width + 1;
+    long[][] table = new long[3][(this.height + 1) * stride];
+    int[] row = new int[this.width];
+    for (int i = 0; i < this.height; i++) {
+      source.getRow(i, row);
+      int above = i * stride + 1;
+      int here = above + stride;
+      for (int c = 0; c < 3; c++) {
+        long[] sums = table[c];
+        int shift = 16 - 8 * c;
+        // the sum along the row so far, added to the sum above it
+        long running = 0;
+        for (int j = 0; j < this.width; j++) {
+          int component = (row[j] >> shift) & 0xFF;
+          running = running + (square ? component * component : component);
+          sums[here + j] = sums[above + j] + running;
+        }
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Looks up the sum over a rectangle in a table, from the sums at its four corners.
+   *
+   * @param table the table of a color component
+   * @param row the top row of the rectangle
+   * @param col the left column of the rectangle
+   * @param height the number of rows in the rectangle
+   * @param width the number of columns in the rectangle
+   * @return the sum
+   */
+  private long lookUp(long[] table, int row, int col, int height, int width) {
+    int stride = this.width + 1;
+    int top = row * stride + col;
+    int bottom = (row + height) * stride + col;
+    return table[bottom + width] - table[bottom] - table[top + width] + table[top];
+  }
+
+  /**
+   * Checks that a channel is a color component and a rectangle is inside the image.
+   *
+   * @param channel the channel
+   * @param row the top row of the rectangle
+   * @param col the left column of the rectangle
+   * @param height the number of rows in the rectangle
+   * @param width the number of columns in the rectangle
+   * @throws IllegalArgumentException if either isn't
+   */
+  private void checkRegion(int channel, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    if (channel < 0 || channel > 2) {
+      throw new IllegalArgumentException("Channel must be 0, 1 or 2");
+    }
+    if (row < 0 || col < 0 || height < 0 || width < 0 || row + height > this.height
+            || col + width > this.width) {
+      throw new IllegalArgumentException("Region is outside of the image");
+    }
+  }
+
+  /**
+   * Checks that a rectangle has at least one pixel.
+   *
+   * @param height the number of rows in the rectangle
+   * @param width the number of columns in the rectangle
+   * @throws IllegalArgumentException if it doesn't
+   */
+  private void checkArea(int height, int width) throws IllegalArgumentException {
+    if (height < 1 || width < 1) {
+      throw new IllegalArgumentException("Region must have at least one pixel");
+    }
+  }
+}
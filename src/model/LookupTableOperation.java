@@ -0,0 +1,172 @@
+package model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A point operation that changes each color component on its own, looked up in a table that
+ * holds the new value of every possible old value. Any function of a single component, such as
+ * brightening, darkening, levels, gamma or threshold, is worked out once per possible value when
+ * the table is built instead of once per pixel. Two tables in a row can be combined into one
+ * without changing the result, so a chain of them costs a single lookup per component.
+ */
+public class LookupTableOperation implements PointOperation {
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  /**
+   * Creates an operation out of a table for each component. Every table must hold a value for
+   * every possible component, from 0 to the maximum value of the image.
+   *
+   * @param red the table for the red component
+   * @param green the table for the green component
+   * @param blue the table for the blue component
+   * @throws IllegalArgumentException if a table is missing or too small for 8-bit components
+   */
+  public LookupTableOperation(int[] red, int[] green, int[] blue)
+          throws IllegalArgumentException {
+    if (red == null || green == null || blue == null || red.length < 256 || green.length < 256
+            || blue.length < 256) {
+      throw new IllegalArgumentException("Lookup tables must hold a value for every component");
+    }
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  /**
+   * Builds an operation that runs the same function on every component. The result of the
+   * function is clamped to the range of the image.
+   *
+   * @param function the function of a single component
+   * @param maxValue the largest value a component may have
+   * @return the operation
+   */
+  public static LookupTableOperation of(IntUnaryOperator function, int maxValue) {
+    int[] table = new int[maxValue + 1];
+    for (int value = 0; value <= maxValue; value++) {
+      table[value] = Math.max(0, Math.min(maxValue, function.applyAsInt(value)));
+    }
+    return new LookupTableOperation(table, table, table);
+  }
+
+  /**
+   * Returns an operation that adds the same value to every component, which brightens an image
+   * for positive values and darkens it for negative ones.
+   *
+   * @param value the value added to each component
+   * @param maxValue the largest value a component may have
+   * @return the operation
+   */
+  public static LookupTableOperation offset(int value, int maxValue) {
+    return of(component -> component + value, maxValue);
+  }
+
+  /**
+   * Returns an operation that applies a gamma curve to every component. Values above 1 brighten
+   * the darker parts of an image and values below 1 darken them.
+   *
+   * @param gamma the gamma of the curve
+   * @param maxValue the largest value a component may have
+   * @return the operation
+   * @throws IllegalArgumentException if the gamma isn't positive
+   */
+  public static LookupTableOperation gamma(double gamma, int maxValue)
+          throws IllegalArgumentException {
+    if (!(gamma > 0)) {
+      throw new IllegalArgumentException("Gamma must be positive");
+    }
+    return of(component -> (int) Math.round(maxValue
+            * Math.pow((double) component / maxValue, 1 / gamma)), maxValue);
+  }
+
+  /**
+   * Returns an operation that stretches the components between a black point and a white point to
+   * the whole range of the image, with a gamma curve in between.
+   *
+   * @param black the component that becomes 0, along with everything below it
+   * @param white the component that becomes the maximum value, along with everything above it
+   * @param gamma the gamma of the curve between the two points
+   * @param maxValue the largest value a component may have
+   * @return the operation
+   * @throws IllegalArgumentException if the black point isn't below the white point or the gamma
+   *      isn't positive
+   */
+  public static LookupTableOperation levels(int black, int white, double gamma, int maxValue)
+          throws IllegalArgumentException {
+    if (black >= white || !(gamma > 0)) {
+      throw new IllegalArgumentException("Black point must be below the white point and gamma"
+              + " must be positive");
+    }
+    return of(component -> {
+      double position = Math.max(0, Math.min(1, (double) (component - black) / (white - black)));
+      return (int) Math.round(maxValue * Math.pow(position, 1 / gamma));
+    }, maxValue);
+  }
+
+  /**
+   * Returns an operation that turns every component at or above a threshold to the maximum value
+   * and every component below it to 0.
+   *
+   * @param threshold the smallest component that becomes the maximum value
+   * @param maxValue the largest value a component may have
+   * @return the operation
+   */
+  public static LookupTableOperation threshold(int threshold, int maxValue) {
+    return of(component -> component >= threshold ? maxValue : 0, maxValue);
+  }
+
+  @Override
+  public int apply(int rgb) {
+    return PackedImage.pack(this.red[PackedImage.red(rgb)], this.green[PackedImage.green(rgb)],
+            this.blue[PackedImage.blue(rgb)]);
+  }
+
+  @Override
+  public void applyToRow(int[] row, int length) {
+    int[] red = this.red;
+    int[] green = this.green;
+    int[] blue = this.blue;
+    for (int j = 0; j < length; j++) {
+      int rgb = row[j];
+      row[j] = (red[(rgb >> 16) & 0xFF] << 16) | (green[(rgb >> 8) & 0xFF] << 8)
+              | blue[rgb & 0xFF];
+    }
+  }
+
+  /**
+   * Combines another lookup table operation with this one by looking up every entry of this
+   * table in the other. The result is exactly the same as running the two one after the other.
+   *
+   * @param next the operation that runs after this one
+   * @return the combined operation, or null if the other operation isn't a lookup table
+   */
+  @Override
+  public PointOperation fuse(PointOperation next) {
+    if (!(next instanceof LookupTableOperation)) {
+      return null;
+    }
+    LookupTableOperation after = (LookupTableOperation) next;
+    int[] red = compose(this.red, after.red);
+    int[] green = this.green == this.red && after.green == after.red ? red
+            : compose(this.green, after.green);
+    int[] blue = this.blue == this.red && after.blue == after.red ? red
+            : compose(this.blue, after.blue);
+    return new LookupTableOperation(red, green, blue);
+  }
+
+  /**
+   * Returns a table that maps every value through one table and then another.
+   *
+   * @param first the table used first
+   * @param second the table used second
+   * @return the combined table
+   */
+  private static int[] compose(int[] first, int[] second) {
+    int[] table = new int[first.length];
+    for (int value = 0; value < first.length; value++) {
+      table[value] = second[first[value]];
+    }
+    return table;
+  }
+}
@@ -0,0 +1,210 @@
+package model;
+
+/**
+ * A kernel written as a short sum of outer products of a column and a row. Running a kernel of
+ * this form is the same as running each row over the image horizontally and then its column
+ * vertically, and adding up the results, which costs a few cells per pixel for every term instead
+ * of one cell per cell of the kernel. Blur kernels are a single such term, since they are
+ * separable.
+ *
+ * <p>The terms are found one at a time with power iteration, which finds the largest singular
+ * value of what is left of the kernel along with its singular vectors, and the term is subtracted
+ * before looking for the next one.</p>
+ */
+final class LowRankKernel {
+  private static final int ITERATIONS = 200;
+  // what is left of the kernel once it's this small next to the largest weight counts as nothing
+  private static final double TOLERANCE = 1e-12;
+
+  // the weights of the vertical pass of each term, scaled by its singular value
+  private final double[][] columns;
+  // the weights of the horizontal pass of each term
+  private final double[][] rows;
+
+  /**
+   * Represents a kernel that has already been split into terms.
+   *
+   * @param columns the weights of the vertical pass of each term
+   * @param rows the weights of the horizontal pass of each term
+   */
+  private LowRankKernel(double[][] columns, double[][] rows) {
+    this.columns = columns;
+    this.rows = rows;
+  }
+
+  /**
+   * Splits a square kernel into the fewest terms it can find, as long as that takes no more than
+   * a given number of them.
+   *
+   * @param kernel the kernel
+   * @param maxRank the largest number of terms worth running
+   * @return the terms, or null if the kernel needs more of them
+   */
+  static LowRankKernel decompose(double[][] kernel, int maxRank) {
+    int size = kernel.length;
+    double[][] rest = new double[size][];
+    double largest = 0;
+    for (int x = 0; x < size; x++) {
+      rest[x] = kernel[x].clone();
+      for (double weight : kernel[x]) {
+        largest = Math.max(largest, Math.abs(weight));
+      }
+    }
+    double[][] columns = new double[maxRank][];
+    double[][] rows = new double[maxRank][];
+    for (int rank = 0; rank <= maxRank; rank++) {
+      if (largestOf(rest) <= TOLERANCE * largest) {
+        double[][] usedColumns = new double[rank][];
+        double[][] usedRows = new double[rank][];
+        System.arraycopy(columns, 0, usedColumns, 0, rank);
+        System.arraycopy(rows, 0, usedRows, 0, rank);
+        return new LowRankKernel(usedColumns, usedRows);
+      }
+      if (rank == maxRank) {
+        break;
+      }
+      double[] row = largestRow(rest);
+      double[] column = multiply(rest, row);
+      for (int x = 0; x < size; x++) {
+        for (int y = 0; y < size; y++) {
+          rest[x][y] = rest[x][y] - column[x] * row[y];
+        }
+      }
+      columns[rank] = column;
+      rows[rank] = row;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of terms.
+   *
+   * @return the rank of the kernel
+   */
+  int getRank() {
+    return this.columns.length;
+  }
+
+  /**
+   * Returns the weights of the vertical pass of a term.
+   *
+   * @param term the term
+   * @return the weights, top to bottom
+   */
+  double[] getColumn(int term) {
+    return this.columns[term];
+  }
+
+  /**
+   * Returns the weights of the horizontal pass of a term.
+   *
+   * @param term the term
+   * @return the weights, left to right
+   */
+  double[] getRow(int term) {
+    return this.rows[term];
+  }
+
+  /**
+   * Finds the right singular vector of a matrix with the largest singular value, by repeatedly
+   * multiplying a vector by the matrix and its transpose.
+   *
+   * @param matrix the matrix
+   * @return the vector, with a length of 1
+   */
+  private static double[] largestRow(double[][] matrix) {
+    int size = matrix.length;
+    // start from the row of the matrix with the most weight, which can't be orthogonal to it
+    double[] vector = matrix[0].clone();
+    for (double[] row : matrix) {
+      if (norm(row) > norm(vector)) {
+        vector = row.clone();
+      }
+    }
+    normalize(vector);
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      double[] column = multiply(matrix, vector);
+      double[] next = new double[size];
+      for (int x = 0; x < size; x++) {
+        for (int y = 0; y < size; y++) {
+          next[y] = next[y] + matrix[x][y] * column[x];
+        }
+      }
+      if (norm(next) == 0) {
+        break;
+      }
+      normalize(next);
+      double change = 0;
+      for (int y = 0; y < size; y++) {
+        change = Math.max(change, Math.abs(next[y] - vector[y]));
+      }
+      vector = next;
+      if (change < TOLERANCE) {
+        break;
+      }
+    }
+    return vector;
+  }
+
+  /**
+   * Multiplies a matrix by a vector.
+   *
+   * @param matrix the matrix
+   * @param vector the vector
+   * @return the product
+   */
+  private static double[] multiply(double[][] matrix, double[] vector) {
+    double[] product = new double[matrix.length];
+    for (int x = 0; x < matrix.length; x++) {
+      for (int y = 0; y < vector.length; y++) {
+        product[x] = product[x] + matrix[x][y] * vector[y];
+      }
+    }
+    return product;
+  }
+
+  /**
+   * Returns the largest absolute value in a matrix.
+   *
+   * @param matrix the matrix
+   * @return the largest absolute value
+   */
+  private static double largestOf(double[][] matrix) {
+    double largest = 0;
+    for (double[] row : matrix) {
+      for (double value : row) {
+        largest = Math.max(largest, Math.abs(value));
+      }
+    }
+    return largest;
+  }
+
+  /**
+   * Returns the length of a vector.
+   *
+   * @param vector the vector
+   * @return the length
+   */
+  private static double norm(double[] vector) {
+    double sum = 0;
+    for (double value : vector) {
+      sum = sum + value * value;
+    }
+    return Math.sqrt(sum);
+  }
+
+  /**
+   * Scales a vector to a length of 1, unless it has no length.
+   *
+   * @param vector the vector, which is scaled in place
+   */
+  private static void normalize(double[] vector) {
+    double norm = norm(vector);
+    if (norm == 0) {
+      return;
+    }
+    for (int i = 0; i < vector.length; i++) {
+      vector[i] = vector[i] / norm;
+    }
+  }
+}
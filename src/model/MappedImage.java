@@ -0,0 +1,151 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An image model whose packed pixels live in a memory-mapped temporary file instead of on the
+ * heap, so images can be far bigger than the memory given to the program and the operating system
+ * decides which parts stay in memory. Pixels are packed the same way as in PackedImage.
+ */
+public class MappedImage implements WritableImageModel {
+  // a single mapping can't be larger than 2GB, so the file is mapped in segments of whole rows
+  private static final long SEGMENT_BYTES = 1L << 30;
+
+  private final int height;
+  private final int width;
+  private final String filepath;
+  private final int rowsPerSegment;
+  private final IntBuffer[] segments;
+
+  /**
+   * Creates an image of the given dimensions where every pixel is black, backed by a new temporary
+   * file that is removed once the program no longer needs it.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param filepath the path to the image on the user's device
+   * @throws IllegalArgumentException if either dimension isn't positive
+   * @throws IllegalStateException if the temporary file couldn't be created or mapped
+   */
+  public MappedImage(int height, int width, String filepath)
+          throws IllegalArgumentException, IllegalStateException {
+    if (height <= 0 || width <= 0) {
+      throw new IllegalArgumentException("Image dimensions must be positive");
+    }
+    this.height = height;
+    this.width = width;
+    this.filepath = filepath;
+    this.rowsPerSegment = (int) Math.max(1, SEGMENT_BYTES / (4L * width));
+    this.segments = new IntBuffer[(height + this.rowsPerSegment - 1) / this.rowsPerSegment];
+
+    try {
+      File backing = File.createTempFile("image", ".pixels");
+      backing.deleteOnExit();
+      try (RandomAccessFile file = new RandomAccessFile(backing, "rw")) {
+        file.setLength(4L * height * width);
+        FileChannel channel = file.getChannel();
+        for (int segment = 0; segment < this.segments.length; segment++) {
+          long firstRow = (long) segment * this.rowsPerSegment;
+          long rows = Math.min(this.rowsPerSegment, height - firstRow);
+          this.segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE,
+                  4L * firstRow * width, 4L * rows * width)
+                  .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+      }
+      // the mappings stay valid without the file, so remove it right away where the OS allows it
+      backing.delete();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Couldn't create storage for a " + width + "x" + height
+              + " image: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public Pixel getPixel(int row, int col) throws IllegalArgumentException {
+    int rgb = this.getRGB(row, col);
+    return new Pixel(PackedImage.red(rgb), PackedImage.green(rgb), PackedImage.blue(rgb));
+  }
+
+  @Override
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    this.checkBounds(row, col);
+    return this.segments[row / this.rowsPerSegment].get(this.offset(row) + col);
+  }
+
+  @Override
+  public void getRow(int row, int[] dest) throws IllegalArgumentException {
+    PackedImage.checkRegion(this, row, 0, 1, this.width, dest);
+    this.segments[row / this.rowsPerSegment].get(this.offset(row), dest, 0, this.width);
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width, int[] dest)
+          throws IllegalArgumentException {
+    PackedImage.checkRegion(this, row, col, height, width, dest);
+    for (int i = 0; i < height; i++) {
+      this.segments[(row + i) / this.rowsPerSegment].get(this.offset(row + i) + col, dest,
+              i * width, width);
+    }
+  }
+
+  @Override
+  public void setRGB(int row, int col, int rgb) throws IllegalArgumentException {
+    this.checkBounds(row, col);
+    this.segments[row / this.rowsPerSegment].put(this.offset(row) + col, rgb);
+  }
+
+  @Override
+  public void setRow(int row, int[] src) throws IllegalArgumentException {
+    PackedImage.checkRegion(this, row, 0, 1, this.width, src);
+    this.segments[row / this.rowsPerSegment].put(this.offset(row), src, 0, this.width);
+  }
+
+  @Override
+  public int getMaxValue() {
+    return 255;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public String getFilepath() {
+    return this.filepath;
+  }
+
+  /**
+   * Returns where a row starts inside the segment that holds it.
+   *
+   * @param row the row of the image
+   * @return the index of the first pixel of the row in its segment
+   */
+  private int offset(int row) {
+    return (row % this.rowsPerSegment) * this.width;
+  }
+
+  /**
+   * Makes sure that a position lies inside this image.
+   *
+   * @param row the x-coordinate of the position
+   * @param col the y-coordinate of the position
+   * @throws IllegalArgumentException if the position is outside the image
+   */
+  private void checkBounds(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row > this.height - 1 || col < 0 || col > this.width - 1) {
+      throw new IllegalArgumentException("Specified pixel is out of bounds");
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package model;
+
+/**
+ * An image model that stores every pixel as a single packed integer instead of a Pixel object,
+ * which takes a fraction of the memory of the Image class and lets whole rows be copied at once.
+ * Each color component is stored in 8 bits, so the maximum value is always 255.
+ */
+public class PackedImage implements WritableImageModel {
+  private final int height;
+  private final int width;
+  private final int[] contents;
+  private final String filepath;
+
+  /**
+   * Creates an image of the given dimensions where every pixel is black.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param filepath the path to the image on the user's device
+   * @throws IllegalArgumentException if either dimension isn't positive or the image is too large
+   *      to be stored in a single array
+   */
+  public PackedImage(int height, int width, String filepath) throws IllegalArgumentException {
+    this(new int[checkedSize(height, width)], height, width, filepath);
+  }
+
+  /**
+   * Creates an image out of an array of packed colors, stored row after row. The array is not
+   * copied, so it shouldn't be changed by the caller afterwards.
+   *
+   * @param contents the packed colors that make up the image itself
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param filepath the path to the image on the user's device
+   * @throws IllegalArgumentException if the array doesn't match the dimensions of the image
+   */
+  public PackedImage(int[] contents, int height, int width, String filepath)
+          throws IllegalArgumentException {
+    if (contents == null || contents.length != checkedSize(height, width)) {
+      throw new IllegalArgumentException("Contents don't match the dimensions of the image");
+    }
+    this.contents = contents;
+    this.height = height;
+    this.width = width;
+    this.filepath = filepath;
+  }
+
+  /**
+   * Copies any image model into a packed image, reading it one row at a time.
+   *
+   * @param model the image to be copied
+   * @return a packed image with the same pixels and filepath
+   */
+  public static PackedImage copyOf(ImageModel model) {
+    PackedImage copy = new PackedImage(model.getHeight(), model.getWidth(), model.getFilepath());
+    int[] row = new int[model.getWidth()];
+    for (int i = 0; i < model.getHeight(); i++) {
+      model.getRow(i, row);
+      copy.setRow(i, row);
+    }
+    return copy;
+  }
+
+  @Override
+  public Pixel getPixel(int row, int col) throws IllegalArgumentException {
+    int rgb = this.getRGB(row, col);
+    return new Pixel(red(rgb), green(rgb), blue(rgb));
+  }
+
+  @Override
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    this.checkBounds(row, col);
+    return this.contents[row * this.width + col];
+  }
+
+  @Override
+  public void getRow(int row, int[] dest) throws IllegalArgumentException {
+    checkRegion(this, row, 0, 1, this.width, dest);
+    System.arraycopy(this.contents, row * this.width, dest, 0, this.width);
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width, int[] dest)
+          throws IllegalArgumentException {
+    checkRegion(this, row, col, height, width, dest);
+    for (int i = 0; i < height; i++) {
+      System.arraycopy(this.contents, (row + i) * this.width + col, dest, i * width, width);
+    }
+  }
+
+  @Override
+  public void setRGB(int row, int col, int rgb) throws IllegalArgumentException {
+    this.checkBounds(row, col);
+    this.contents[row * this.width + col] = rgb;
+  }
+
+  @Override
+  public void setRow(int row, int[] src) throws IllegalArgumentException {
+    checkRegion(this, row, 0, 1, this.width, src);
+    System.arraycopy(src, 0, this.contents, row * this.width, this.width);
+  }
+
+  @Override
+  public int getMaxValue() {
+    return 255;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public String getFilepath() {
+    return this.filepath;
+  }
+
+  /**
+   * Packs three color components into a single integer, in the format used by getRGB.
+   *
+   * @param red the red component, between 0 and 255
+   * @param green the green component, between 0 and 255
+   * @param blue the blue component, between 0 and 255
+   * @return the packed color
+   */
+  public static int pack(int red, int green, int blue) {
+    return (red << 16) | (green << 8) | blue;
+  }
+
+  /**
+   * Returns the red component of a packed color.
+   *
+   * @param rgb the packed color
+   * @return the red component
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Returns the green component of a packed color.
+   *
+   * @param rgb the packed color
+   * @return the green component
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Returns the blue component of a packed color.
+   *
+   * @param rgb the packed color
+   * @return the blue component
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Makes sure that a region lies inside an image and fits in the given array, so that bulk
+   * accessors only need to check their arguments once instead of once per pixel.
+   *
+   * @param model the image the region belongs to
+   * @param row the first row of the region
+   * @param col the first column of the region
+   * @param height the number of rows in the region
+   * @param width the number of columns in the region
+   * @param array the array to copy to or from
+   * @throws IllegalArgumentException if the region is outside the image or the array is too small
+   */
+  static void checkRegion(ImageModel model, int row, int col, int height, int width, int[] array)
+          throws IllegalArgumentException {
+    if (row < 0 || col < 0 || height < 0 || width < 0 || row + height > model.getHeight()
+            || col + width > model.getWidth()) {
+      throw new IllegalArgumentException("Specified region is out of bounds");
+    }
+    if (array == null || array.length < height * width) {
+      throw new IllegalArgumentException("Array is too small for the specified region");
+    }
+  }
+
+  /**
+   * Makes sure that the dimensions of an image are positive and fit in a single array.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @return the number of pixels in the image
+   * @throws IllegalArgumentException if the dimensions aren't valid
+   */
+  private static int checkedSize(int height, int width) throws IllegalArgumentException {
+    if (height <= 0 || width <= 0) {
+      throw new IllegalArgumentException("Image dimensions must be positive");
+    }
+    long size = (long) height * width;
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Image is too large to be stored in memory");
+    }
+    return (int) size;
+  }
+
+  /**
+   * Makes sure that a position lies inside this image.
+   *
+   * @param row the x-coordinate of the position
+   * @param col the y-coordinate of the position
+   * @throws IllegalArgumentException if the position is outside the image
+   */
+  private void checkBounds(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row > this.height - 1 || col < 0 || col > this.width - 1) {
+      throw new IllegalArgumentException("Specified pixel is out of bounds");
+    }
+  }
+}
@@ -62,10 +62,7 @@ public class Pixel {
    * @return the luma, as an integer, which is the weighted average of the RGB values
    */
   public int getLuma() {
-    int red = (int) (.2126 * this.getRed());
-    int green = (int) (.7152 * this.getGreen());
-    int blue = (int) (.0722 * this.getBlue());
-    return red + green + blue;
+    return luma(this.getRed(), this.getGreen(), this.getBlue());
   }
 
   /**
@@ -74,24 +71,59 @@ public class Pixel {
    * @return the value, as an integer, which is the maximum value of the RGB components
    */
   public int getValue() {
-    int max = this.getRed();
-    if (this.getGreen() > max) {
-      max = this.getGreen();
+    return value(this.getRed(), this.getGreen(), this.getBlue());
+  }
+
+  /**
+   * Returns the intensity for a given pixel.
+   *
+   * @return the intensity, as an integer, which is the average of the RGB values
+   */
+  public int getIntensity() {
+    return intensity(this.getRed(), this.getGreen(), this.getBlue());
+  }
+
+  /**
+   * Returns the luma for the given color components, without needing a pixel object.
+   *
+   * @param red the red component
+   * @param green the green component
+   * @param blue the blue component
+   * @return the luma, as an integer, which is the weighted average of the RGB values
+   */
+  public static int luma(int red, int green, int blue) {
+    return (int) (.2126 * red) + (int) (.7152 * green) + (int) (.0722 * blue);
+  }
+
+  /**
+   * Returns the value for the given color components, without needing a pixel object.
+   *
+   * @param red the red component
+   * @param green the green component
+   * @param blue the blue component
+   * @return the value, as an integer, which is the maximum value of the RGB components
+   */
+  public static int value(int red, int green, int blue) {
+    int max = red;
+    if (green > max) {
+      max = green;
     }
-    if (this.getBlue() > max) {
-      max = this.getBlue();
+    if (blue > max) {
+      max = blue;
     }
     return max;
   }
 
   /**
-   * Returns the intensity for a given pixel.
+   * Returns the intensity for the given color components, without needing a pixel object.
    *
+   * @param red the red component
+   * @param green the green component
+   * @param blue the blue component
    * @return the intensity, as an integer, which is the average of the RGB values
    */
-  public int getIntensity() {
-    int sum = this.getRed() + this.getGreen() + this.getBlue();
-    return sum / 3;
+  public static int intensity(int red, int green, int blue) {
+    return (red + green + blue) / 3;
   }
 
   @Override
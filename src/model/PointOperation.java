@@ -0,0 +1,41 @@
+package model;
+
+/**
+ * A change to an image that works out each new pixel from the pixel at the same position and
+ * nothing else, such as brightening or greyscaling. Because they only look at one pixel, several
+ * of these can be run one after the other in a single pass over an image.
+ */
+public interface PointOperation {
+
+  /**
+   * Works out the new color of a single pixel.
+   *
+   * @param rgb the packed color of the pixel
+   * @return the new packed color of the pixel
+   */
+  int apply(int rgb);
+
+  /**
+   * Works out the new colors of a run of pixels in place, such as a row of an image.
+   *
+   * @param row the packed colors of the pixels, which are replaced by their new colors
+   * @param length the number of pixels in the run, starting at the beginning of the array
+   */
+  default void applyToRow(int[] row, int length) {
+    for (int j = 0; j < length; j++) {
+      row[j] = this.apply(row[j]);
+    }
+  }
+
+  /**
+   * Returns a single operation that does the same as running this operation and then another
+   * one, if such an operation can be worked out without reading any pixels. Deferred images use
+   * this to turn a chain of operations into fewer, cheaper ones.
+   *
+   * @param next the operation that runs after this one
+   * @return the combined operation, or null if the two can't be combined
+   */
+  default PointOperation fuse(PointOperation next) {
+    return null;
+  }
+}
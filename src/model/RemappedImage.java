@@ -0,0 +1,215 @@
+package model;
+
+/**
+ * A view of another image that moves its pixels around without copying them, such as a flipped,
+ * cropped or transposed version of the image. Every position in the view is mapped to a position
+ * in the source image when it's read. Views of views are collapsed into a single view of the
+ * original image, so a chain of flips takes the same memory as a single one.
+ */
+public class RemappedImage implements DerivedImage {
+  private final ImageModel source;
+  private final int height;
+  private final int width;
+  // the source position is (rowOrigin + rowByRow * row + rowByCol * col,
+  //                          colOrigin + colByRow * row + colByCol * col)
+  private final int rowOrigin;
+  private final int rowByRow;
+  private final int rowByCol;
+  private final int colOrigin;
+  private final int colByRow;
+  private final int colByCol;
+
+  /**
+   * Creates a view of a source image using a mapping of positions. Private because the static
+   * methods below are the only way to get a mapping that stays inside the source image.
+   */
+  private RemappedImage(ImageModel source, int height, int width, int rowOrigin, int rowByRow,
+                        int rowByCol, int colOrigin, int colByRow, int colByCol) {
+    this.source = source;
+    this.height = height;
+    this.width = width;
+    this.rowOrigin = rowOrigin;
+    this.rowByRow = rowByRow;
+    this.rowByCol = rowByCol;
+    this.colOrigin = colOrigin;
+    this.colByRow = colByRow;
+    this.colByCol = colByCol;
+  }
+
+  /**
+   * Returns a view of an image flipped from left to right.
+   *
+   * @param model the image to be flipped
+   * @return the flipped view
+   */
+  public static ImageModel horizontalFlip(ImageModel model) {
+    return of(model, model.getHeight(), model.getWidth(), 0, 1, 0,
+            model.getWidth() - 1, 0, -1);
+  }
+
+  /**
+   * Returns a view of an image flipped from top to bottom.
+   *
+   * @param model the image to be flipped
+   * @return the flipped view
+   */
+  public static ImageModel verticalFlip(ImageModel model) {
+    return of(model, model.getHeight(), model.getWidth(), model.getHeight() - 1, -1, 0,
+            0, 0, 1);
+  }
+
+  /**
+   * Returns a view of an image with its rows and columns swapped.
+   *
+   * @param model the image to be transposed
+   * @return the transposed view, whose height is the width of the image and vice versa
+   */
+  public static ImageModel transpose(ImageModel model) {
+    return of(model, model.getWidth(), model.getHeight(), 0, 0, 1, 0, 1, 0);
+  }
+
+  /**
+   * Returns a view of a rectangular part of an image.
+   *
+   * @param model the image to be cropped
+   * @param row the first row of the part to keep
+   * @param col the first column of the part to keep
+   * @param height the number of rows to keep
+   * @param width the number of columns to keep
+   * @return the cropped view
+   * @throws IllegalArgumentException if the part isn't inside the image or is empty
+   */
+  public static ImageModel crop(ImageModel model, int row, int col, int height, int width)
+          throws IllegalArgumentException {
+    if (row < 0 || col < 0 || height <= 0 || width <= 0 || row + height > model.getHeight()
+            || col + width > model.getWidth()) {
+      throw new IllegalArgumentException("Specified region is out of bounds");
+    }
+    return of(model, height, width, row, 1, 0, col, 0, 1);
+  }
+
+  /**
+   * Creates a view of an image, folding the mapping into the mapping of the image if it's a view
+   * itself so that the new view always points at the original image. A view of a deferred image
+   * becomes a deferred image of a view, so that the deferred chain can keep growing.
+   */
+  private static ImageModel of(ImageModel model, int height, int width, int rowOrigin,
+                               int rowByRow, int rowByCol, int colOrigin, int colByRow,
+                               int colByCol) {
+    if (model instanceof DeferredImage) {
+      DeferredImage deferred = (DeferredImage) model;
+      return deferred.withSource(of(deferred.getSource(), height, width, rowOrigin, rowByRow,
+              rowByCol, colOrigin, colByRow, colByCol));
+    }
+    if (!(model instanceof RemappedImage)) {
+      return new RemappedImage(model, height, width, rowOrigin, rowByRow, rowByCol, colOrigin,
+              colByRow, colByCol);
+    }
+    RemappedImage inner = (RemappedImage) model;
+    return new RemappedImage(inner.source, height, width,
+            inner.rowOrigin + inner.rowByRow * rowOrigin + inner.rowByCol * colOrigin,
+            inner.rowByRow * rowByRow + inner.rowByCol * colByRow,
+            inner.rowByRow * rowByCol + inner.rowByCol * colByCol,
+            inner.colOrigin + inner.colByRow * rowOrigin + inner.colByCol * colOrigin,
+            inner.colByRow * rowByRow + inner.colByCol * colByRow,
+            inner.colByRow * rowByCol + inner.colByCol * colByCol);
+  }
+
+  @Override
+  public ImageModel getSource() {
+    return this.source;
+  }
+
+  @Override
+  public Pixel getPixel(int row, int col) throws IllegalArgumentException {
+    this.checkBounds(row, col);
+    return this.source.getPixel(this.sourceRow(row, col), this.sourceCol(row, col));
+  }
+
+  @Override
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    this.checkBounds(row, col);
+    return this.source.getRGB(this.sourceRow(row, col), this.sourceCol(row, col));
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width, int[] dest)
+          throws IllegalArgumentException {
+    PackedImage.checkRegion(this, row, col, height, width, dest);
+    // the source writes a row to the start of an array, so rows after the first need a buffer
+    int[] buffer = height > 1 ? new int[width] : dest;
+    for (int i = 0; i < height; i++) {
+      int offset = i * width;
+      if (this.rowByCol == 0 && this.colByRow == 0) {
+        // a row of the view is part of a single row of the source, so it can be copied in bulk
+        int sourceRow = this.sourceRow(row + i, col);
+        int first = this.sourceCol(row + i, col);
+        int last = this.sourceCol(row + i, col + width - 1);
+        this.source.getRegion(sourceRow, Math.min(first, last), 1, width, buffer);
+        if (buffer != dest) {
+          System.arraycopy(buffer, 0, dest, offset, width);
+        }
+        if (first > last) {
+          for (int left = offset, right = offset + width - 1; left < right; left++, right--) {
+            int swap = dest[left];
+            dest[left] = dest[right];
+            dest[right] = swap;
+          }
+        }
+      }
+      else {
+        for (int j = 0; j < width; j++) {
+          dest[offset + j] = this.source.getRGB(this.sourceRow(row + i, col + j),
+                  this.sourceCol(row + i, col + j));
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getMaxValue() {
+    return this.source.getMaxValue();
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public String getFilepath() {
+    return this.source.getFilepath();
+  }
+
+  /**
+   * Returns the row in the source image that a position of this view maps to.
+   */
+  private int sourceRow(int row, int col) {
+    return this.rowOrigin + this.rowByRow * row + this.rowByCol * col;
+  }
+
+  /**
+   * Returns the column in the source image that a position of this view maps to.
+   */
+  private int sourceCol(int row, int col) {
+    return this.colOrigin + this.colByRow * row + this.colByCol * col;
+  }
+
+  /**
+   * Makes sure that a position lies inside this view.
+   *
+   * @param row the x-coordinate of the position
+   * @param col the y-coordinate of the position
+   * @throws IllegalArgumentException if the position is outside the view
+   */
+  private void checkBounds(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row > this.height - 1 || col < 0 || col > this.width - 1) {
+      throw new IllegalArgumentException("Specified pixel is out of bounds");
+    }
+  }
+}
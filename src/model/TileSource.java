@@ -0,0 +1,35 @@
+package model;
+
+/**
+ * Produces the pixels of a tiled image one tile at a time, whenever a tile is needed and isn't
+ * already in memory. A tile source could decode part of a file, or compute part of a new image
+ * from another one.
+ */
+public interface TileSource {
+
+  /**
+   * Fills in the packed colors of a rectangular region of the image, stored row after row in the
+   * same way as ImageModel.getRegion.
+   *
+   * @param row the first row of the region
+   * @param col the first column of the region
+   * @param height the number of rows in the region
+   * @param width the number of columns in the region
+   * @param dest the array to fill in, holds exactly height * width elements
+   * @throws IllegalStateException if the pixels couldn't be produced
+   */
+  void computeTile(int row, int col, int height, int width, int[] dest)
+          throws IllegalStateException;
+
+  /**
+   * Returns whether producing a region costs about as much as producing the whole width of its
+   * rows, as it does for decoders of compressed files that can't skip ahead within a row. Tiled
+   * images ask such a source for a whole row of tiles at a time, and any other source for one
+   * tile at a time.
+   *
+   * @return true if regions should span the whole width of the image
+   */
+  default boolean prefersWholeRows() {
+    return false;
+  }
+}
@@ -0,0 +1,230 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An image model that is split into square tiles which are only produced when one of their pixels
+ * is read. Only a bounded number of tiles are kept in memory; the least recently used tile is
+ * dropped when a new one is needed and is simply produced again if it's read later. Reading one
+ * corner of a huge image therefore only costs the tiles in that corner, or the rows of tiles
+ * that reach it.
+ *
+ * <p>A missing tile is produced on its own, unless the source prefers whole rows: then it is
+ * produced along with the rest of its row of tiles, in a single request to the source for the
+ * whole width of the image. Sources like compressed files have to decode everything before the
+ * region they're asked for, so asking them once per row of tiles rather than once per tile makes
+ * reading the whole image that many times cheaper. Tiles are produced without holding the lock on
+ * the image, so threads reading tiles that are already in memory, or producing other tiles, don't
+ * wait for each other.</p>
+ */
+public class TiledImage implements ImageModel {
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  private final int height;
+  private final int width;
+  private final String filepath;
+  private final TileSource source;
+  private final int tileSize;
+  private final int tilesAcross;
+  private final LinkedHashMap<Integer, int[]> tiles;
+
+  /**
+   * Creates a tiled image with the default tile size that keeps at most the given number of tiles
+   * in memory. The limit is raised to two rows of tiles if it's smaller, so that reading the image
+   * row by row never has to produce the same tile twice.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param filepath the path to the image on the user's device
+   * @param source where the pixels of each tile come from
+   * @param maxTiles the largest number of tiles to keep in memory at once
+   * @throws IllegalArgumentException if the dimensions aren't positive or the source is null
+   */
+  public TiledImage(int height, int width, String filepath, TileSource source, int maxTiles)
+          throws IllegalArgumentException {
+    this(height, width, filepath, source, maxTiles, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a tiled image with a specific tile size.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param filepath the path to the image on the user's device
+   * @param source where the pixels of each tile come from
+   * @param maxTiles the largest number of tiles to keep in memory at once
+   * @param tileSize the width and height of each tile
+   * @throws IllegalArgumentException if the dimensions or tile size aren't positive, or the
+   *      source is null
+   */
+  public TiledImage(int height, int width, String filepath, TileSource source, int maxTiles,
+                    int tileSize) throws IllegalArgumentException {
+    if (height <= 0 || width <= 0 || tileSize <= 0) {
+      throw new IllegalArgumentException("Image and tile dimensions must be positive");
+    }
+    if (source == null) {
+      throw new IllegalArgumentException("Tile source can't be null");
+    }
+    this.height = height;
+    this.width = width;
+    this.filepath = filepath;
+    this.source = source;
+    this.tileSize = tileSize;
+    this.tilesAcross = (width + tileSize - 1) / tileSize;
+    int capacity = Math.max(maxTiles, 2 * this.tilesAcross);
+    // an access-ordered map keeps the least recently used tile first, ready to be evicted
+    this.tiles = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        return this.size() > capacity;
+      }
+    };
+  }
+
+  @Override
+  public Pixel getPixel(int row, int col) throws IllegalArgumentException {
+    int rgb = this.getRGB(row, col);
+    return new Pixel(PackedImage.red(rgb), PackedImage.green(rgb), PackedImage.blue(rgb));
+  }
+
+  @Override
+  public int getRGB(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row > this.height - 1 || col < 0 || col > this.width - 1) {
+      throw new IllegalArgumentException("Specified pixel is out of bounds");
+    }
+    int tileRow = row / this.tileSize;
+    int tileCol = col / this.tileSize;
+    int[] tile = this.getTile(tileRow, tileCol);
+    return tile[(row - tileRow * this.tileSize) * this.tileWidth(tileCol)
+            + (col - tileCol * this.tileSize)];
+  }
+
+  @Override
+  public void getRegion(int row, int col, int height, int width, int[] dest)
+          throws IllegalArgumentException {
+    PackedImage.checkRegion(this, row, col, height, width, dest);
+    for (int i = row; i < row + height; i++) {
+      int tileRow = i / this.tileSize;
+      int rowInTile = i - tileRow * this.tileSize;
+      int j = col;
+      while (j < col + width) {
+        int tileCol = j / this.tileSize;
+        int colInTile = j - tileCol * this.tileSize;
+        int tileWidth = this.tileWidth(tileCol);
+        int count = Math.min(tileWidth - colInTile, col + width - j);
+        int[] tile = this.getTile(tileRow, tileCol);
+        System.arraycopy(tile, rowInTile * tileWidth + colInTile, dest,
+                (i - row) * width + (j - col), count);
+        j = j + count;
+      }
+    }
+  }
+
+  @Override
+  public int getMaxValue() {
+    return 255;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public String getFilepath() {
+    return this.filepath;
+  }
+
+  /**
+   * Returns the width and height of the tiles this image is split into. Work can be divided along
+   * tile boundaries so that each tile is only produced once.
+   *
+   * @return the tile size, in pixels
+   */
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  /**
+   * Returns the number of tiles currently held in memory.
+   *
+   * @return the number of resident tiles
+   */
+  public synchronized int residentTiles() {
+    return this.tiles.size();
+  }
+
+  /**
+   * Returns a tile, producing it from the source if it isn't in memory, along with the rest of its
+   * row of tiles if the source prefers whole rows. Evicts the least recently used tiles if too
+   * many are held.
+   *
+   * @param tileRow the row of the tile in the grid of tiles
+   * @param tileCol the column of the tile in the grid of tiles
+   * @return the packed colors of the tile, stored row after row
+   */
+  private int[] getTile(int tileRow, int tileCol) {
+    int key = tileRow * this.tilesAcross + tileCol;
+    synchronized (this) {
+      int[] tile = this.tiles.get(key);
+      if (tile != null) {
+        return tile;
+      }
+    }
+
+    int tileHeight = Math.min(this.tileSize, this.height - tileRow * this.tileSize);
+    if (!this.source.prefersWholeRows()) {
+      int[] tile = new int[tileHeight * this.tileWidth(tileCol)];
+      this.source.computeTile(tileRow * this.tileSize, tileCol * this.tileSize, tileHeight,
+              this.tileWidth(tileCol), tile);
+      synchronized (this) {
+        // another thread may have produced the same tile in the meantime, which is kept
+        int[] existing = this.tiles.putIfAbsent(key, tile);
+        return existing == null ? tile : existing;
+      }
+    }
+
+    int[] band = new int[tileHeight * this.width];
+    this.source.computeTile(tileRow * this.tileSize, 0, tileHeight, this.width, band);
+    int[][] row = new int[this.tilesAcross][];
+    for (int col = 0; col < this.tilesAcross; col++) {
+      int tileWidth = this.tileWidth(col);
+      row[col] = new int[tileHeight * tileWidth];
+      for (int i = 0; i < tileHeight; i++) {
+        System.arraycopy(band, i * this.width + col * this.tileSize, row[col], i * tileWidth,
+                tileWidth);
+      }
+    }
+
+    synchronized (this) {
+      // another thread may have produced the same row in the meantime, whose tiles are kept
+      for (int col = 0; col < this.tilesAcross; col++) {
+        int[] existing = this.tiles.get(tileRow * this.tilesAcross + col);
+        if (existing == null) {
+          this.tiles.put(tileRow * this.tilesAcross + col, row[col]);
+        }
+        else {
+          row[col] = existing;
+        }
+      }
+      // the row was put in last, so none of its tiles were evicted to make room for it
+      return row[tileCol];
+    }
+  }
+
+  /**
+   * Returns the width of a tile, which is smaller than the tile size along the right edge.
+   *
+   * @param tileCol the column of the tile in the grid of tiles
+   * @return the width of the tile
+   */
+  private int tileWidth(int tileCol) {
+    return Math.min(this.tileSize, this.width - tileCol * this.tileSize);
+  }
+}
@@ -0,0 +1,28 @@
+package model;
+
+/**
+ * An image model whose pixels can be written to after it has been created. Commands create one of
+ * these, fill in every pixel, and then hand it off as a regular image model.
+ */
+public interface WritableImageModel extends ImageModel {
+
+  /**
+   * Sets the pixel at the specified position to a packed color, in the same format as getRGB.
+   *
+   * @param row the x-coordinate of the position
+   * @param col the y-coordinate of the position
+   * @param rgb the packed color
+   * @throws IllegalArgumentException if the coordinates are outside the image boundaries
+   */
+  void setRGB(int row, int col, int rgb) throws IllegalArgumentException;
+
+  /**
+   * Sets an entire row of this image from an array of packed colors.
+   *
+   * @param row the row to be written
+   * @param src the packed colors, must hold at least getWidth() elements
+   * @throws IllegalArgumentException if the row is outside the image boundaries or the array is
+   *      too small
+   */
+  void setRow(int row, int[] src) throws IllegalArgumentException;
+}
@@ -0,0 +1,48 @@
+package view;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A view that holds on to the messages it's given instead of showing them, so that messages from
+ * commands run at the same time can still be shown in the order the commands were given.
+ */
+public class BufferedView implements ImageProcessorView {
+  private final List<String> messages;
+
+  /**
+   * Creates a view that holds no messages yet.
+   */
+  public BufferedView() {
+    this.messages = new ArrayList<>();
+  }
+
+  @Override
+  public synchronized void renderMessage(String message) {
+    this.messages.add(message);
+  }
+
+  /**
+   * Shows every message held so far on another view, in the order they were given, and forgets
+   * them.
+   *
+   * @param view the view to show the messages on
+   * @throws IOException if a message cannot successfully be transmitted
+   */
+  public synchronized void flushTo(ImageProcessorView view) throws IOException {
+    for (String message : this.messages) {
+      view.renderMessage(message);
+    }
+    this.messages.clear();
+  }
+
+  /**
+   * Returns the messages held so far, in the order they were given.
+   *
+   * @return a copy of the messages
+   */
+  public synchronized List<String> getMessages() {
+    return new ArrayList<>(this.messages);
+  }
+}
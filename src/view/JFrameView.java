@@ -8,11 +8,13 @@ import javax.swing.*;
 import controller.BrightDark;
 import controller.ColorTransformation;
 import controller.Component;
+import controller.Convolve;
 import controller.Downsize;
 import controller.Filter;
 import controller.HorizontalFlip;
 import controller.ImageControllerGUI;
 import controller.Mosaic;
+import controller.RadiusBlur;
 import controller.VerticalFlip;
 
 /**
@@ -40,6 +42,8 @@ public class JFrameView extends JFrame implements ImageGUIView {
   private final JButton intensity;
   private final JTextField brightDark;
   private final JTextField mosaic;
+  private final JTextField convolve;
+  private final JTextField blurRadius;
   private final JButton downsize;
 
   /**
@@ -65,6 +69,8 @@ public class JFrameView extends JFrame implements ImageGUIView {
     this.renderedHistogram = new JLabel();
     this.brightDark = new JTextField();
     this.mosaic = new JTextField();
+    this.convolve = new JTextField();
+    this.blurRadius = new JTextField();
     leftSide = new JPanel();
     rightSide = new JPanel();
     centerSide = new JPanel();
@@ -110,6 +116,8 @@ public class JFrameView extends JFrame implements ImageGUIView {
     JLabel brightDarkLabel = new JLabel("Brighten / darken an image: ");
     JLabel mosaicLabel = new JLabel("Mosaic an image: ");
     JLabel downsizeLabel = new JLabel("Downsize an image: ");
+    JLabel blurRadiusLabel = new JLabel("Blur out to a radius: ");
+    JLabel convolveLabel = new JLabel("Convolve with a kernel (file or 0,-1,0;-1,5,-1;0,-1,0): ");
 
     imageChangesPanel.add(this.horizontal);
     imageChangesPanel.add(this.vertical);
@@ -129,6 +137,10 @@ public class JFrameView extends JFrame implements ImageGUIView {
     imageChangesPanel.add(this.mosaic);
     imageChangesPanel.add(downsizeLabel);
     imageChangesPanel.add(this.downsize);
+    imageChangesPanel.add(convolveLabel);
+    imageChangesPanel.add(this.convolve);
+    imageChangesPanel.add(blurRadiusLabel);
+    imageChangesPanel.add(this.blurRadius);
 
     outerLoadSaveImagePanel.add(loadSaveImagePanel);
     outerImageChangesPanel.add(imageChangesPanel);
@@ -231,6 +243,14 @@ public class JFrameView extends JFrame implements ImageGUIView {
       controller.updateImage(new Mosaic(this.mosaic.getText(), this));
       this.renderImageAndHistogram(controller);
     });
+    this.convolve.addActionListener(e -> {
+      controller.updateImage(new Convolve(this.convolve.getText(), this));
+      this.renderImageAndHistogram(controller);
+    });
+    this.blurRadius.addActionListener(e -> {
+      controller.updateImage(new RadiusBlur("blur-radius", this.blurRadius.getText(), this));
+      this.renderImageAndHistogram(controller);
+    });
     this.downsize.addActionListener(e -> {
       String width = JOptionPane.showInputDialog("Enter a new width");
       String height = JOptionPane.showInputDialog("Enter a new height");
@@ -0,0 +1,117 @@
+package controller;
+
+import static model.TestImages.assertClose;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import model.ConcurrentImageStorage;
+import model.ImageModel;
+import model.ImageStorage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import view.BufferedView;
+
+/**
+ * Tests that running the independent lines of a script at the same time shows the same messages
+ * in the same order, and stores and saves the same images, as running one line at a time.
+ */
+public class ConcurrentScriptTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String input;
+
+  @Before
+  public void writeInput() throws IOException {
+    Random random = new Random(1);
+    StringBuilder ppm = new StringBuilder("P3\n300 200\n255\n");
+    for (int k = 0; k < 300 * 200 * 3; k++) {
+      ppm.append(random.nextInt(256)).append('\n');
+    }
+    File file = this.folder.newFile("in.ppm");
+    Files.writeString(file.toPath(), ppm);
+    this.input = file.getPath();
+  }
+
+  /**
+   * Returns a script that fans out from one image into branches that don't depend on each other,
+   * where slow lines come before quick lines that show messages.
+   *
+   * @param prefix what the paths of the saved images start with
+   * @return the lines of the script
+   */
+  private List<String> script(String prefix) {
+    return List.of("load " + this.input + " a",
+            "blur a slow",
+            "brighten bright a never",
+            "red-component a r",
+            "sharpen slow slower",
+            "darken 5 missing nothing",
+            "green-component a g",
+            "blue-component a b",
+            "sepia a s",
+            "brighten 10 r r",
+            "blur-radius 2 slower blurred",
+            "greyscale gone g2",
+            "save " + prefix + "r.ppm r",
+            "save " + prefix + "blurred.ppm blurred",
+            "save " + prefix + "s.ppm s",
+            "mosaic x a m");
+  }
+
+  /**
+   * Runs a script on a new controller.
+   *
+   * @param lines the lines of the script
+   * @param concurrent whether independent lines run at the same time
+   * @param images where the controller keeps its images
+   * @return the messages the script showed, in the order they were shown
+   */
+  private static List<String> run(List<String> lines, boolean concurrent, ImageStorage images) {
+    ExecutionSettings settings = new ExecutionSettings();
+    settings.setConcurrentScripts(concurrent);
+    settings.setParallelism(4);
+    BufferedView view = new BufferedView();
+    new ImageProcessorControllerImpl(view, new StringReader(""), images, settings)
+            .runScript(lines);
+    return view.getMessages();
+  }
+
+  @Test
+  public void testMessagesAndImagesMatchRunningOneLineAtATime() throws IOException {
+    String root = this.folder.getRoot().getPath() + File.separator;
+    ImageStorage sequential = new ConcurrentImageStorage();
+    List<String> expected = run(this.script(root + "sequential-"), false, sequential);
+    // every line that fails shows its own message
+    assertEquals(List.of("Specified value must be an integer",
+            "Cannot darken an image that has not been stored in the program",
+            "Cannot apply a color transformation to an image that has not been stored in the"
+                    + " program",
+            "Specified value must be an integer"), expected);
+
+    for (int round = 0; round < 10; round++) {
+      ImageStorage concurrent = new ConcurrentImageStorage();
+      String prefix = root + "concurrent" + round + "-";
+      assertEquals(expected, run(this.script(prefix), true, concurrent));
+
+      Map<String, ImageModel> images = concurrent.getImagesView();
+      assertEquals(sequential.getImagesView().keySet(), images.keySet());
+      for (String name : images.keySet()) {
+        assertClose(sequential.getImage(name), images.get(name), 0);
+      }
+      for (String saved : List.of("r.ppm", "blurred.ppm", "s.ppm")) {
+        assertArrayEquals(Files.readAllBytes(new File(root + "sequential-" + saved).toPath()),
+                Files.readAllBytes(new File(prefix + saved).toPath()));
+      }
+    }
+  }
+}
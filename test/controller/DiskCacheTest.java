@@ -0,0 +1,142 @@
+package controller;
+
+import static model.TestImages.assertClose;
+import static model.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import model.ImageModel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for how a DiskCache keys, writes, reads back, checks and deletes the images it keeps.
+ */
+public class DiskCacheTest {
+  // every 10 by 10 image takes up 3 bytes per pixel and 20 bytes of header and checksum
+  private static final long IMAGE_BYTES = 3 * 10 * 10 + 20;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testImageIsReadBackWithTheSamePixels() throws IOException {
+    DiskCache cache = new DiskCache(this.folder.getRoot(), 10000);
+    assertNull(cache.get("first", "first.png"));
+    cache.put("first", randomImage(10, 10, 1));
+
+    ImageModel image = cache.get("first", "first.png");
+    assertClose(randomImage(10, 10, 1), image, 0);
+    assertEquals("first.png", image.getFilepath());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    // no temporary files are left behind
+    assertEquals(1, this.folder.getRoot().list().length);
+
+    // a later run finds the image the first one wrote
+    DiskCache later = new DiskCache(this.folder.getRoot(), 10000);
+    assertClose(randomImage(10, 10, 1), later.get("first", "first.png"), 0);
+  }
+
+  @Test
+  public void testDamagedImageIsDeleted() throws IOException {
+    DiskCache cache = new DiskCache(this.folder.getRoot(), 10000);
+    cache.put("first", randomImage(10, 10, 1));
+    File file = new File(this.folder.getRoot(), "first.img");
+    try (RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+      damaged.seek(50);
+      int value = damaged.read();
+      damaged.seek(50);
+      damaged.write(value ^ 1);
+    }
+
+    assertNull(cache.get("first", "first.png"));
+    assertEquals(1, cache.getCorrupt());
+    assertFalse(file.exists());
+    // it can be written again
+    cache.put("first", randomImage(10, 10, 1));
+    assertClose(randomImage(10, 10, 1), cache.get("first", "first.png"), 0);
+  }
+
+  @Test
+  public void testCutOffImageIsDeleted() throws IOException {
+    DiskCache cache = new DiskCache(this.folder.getRoot(), 10000);
+    cache.put("first", randomImage(10, 10, 1));
+    File file = new File(this.folder.getRoot(), "first.img");
+    try (RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+      damaged.setLength(IMAGE_BYTES - 8);
+    }
+
+    assertNull(cache.get("first", "first.png"));
+    assertEquals(1, cache.getCorrupt());
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedImageIsDeletedFirst() {
+    DiskCache cache = new DiskCache(this.folder.getRoot(), 2 * IMAGE_BYTES);
+    cache.put("first", randomImage(10, 10, 1));
+    cache.put("second", randomImage(10, 10, 2));
+    cache.get("first", "first.png");
+    cache.put("third", randomImage(10, 10, 3));
+
+    assertFalse(new File(this.folder.getRoot(), "second.img").exists());
+    assertNull(cache.get("second", "second.png"));
+    assertClose(randomImage(10, 10, 1), cache.get("first", "first.png"), 0);
+    assertClose(randomImage(10, 10, 3), cache.get("third", "third.png"), 0);
+    // an image bigger than the whole limit isn't written
+    cache.put("fourth", randomImage(20, 20, 4));
+    assertNull(cache.get("fourth", "fourth.png"));
+  }
+
+  @Test
+  public void testSmallerLimitDeletesOldestImagesOnOpen() {
+    DiskCache cache = new DiskCache(this.folder.getRoot(), 10000);
+    cache.put("first", randomImage(10, 10, 1));
+    new File(this.folder.getRoot(), "first.img").setLastModified(1000);
+    cache.put("second", randomImage(10, 10, 2));
+
+    DiskCache smaller = new DiskCache(this.folder.getRoot(), IMAGE_BYTES);
+    assertNull(smaller.get("first", "first.png"));
+    assertClose(randomImage(10, 10, 2), smaller.get("second", "second.png"), 0);
+  }
+
+  @Test
+  public void testKeysFollowFilesAndOperations() throws IOException {
+    DiskCache cache = new DiskCache(this.folder.newFolder("cache"), 10000);
+    File file = this.folder.newFile("in.ppm");
+    Files.writeString(file.toPath(), "P3 1 1 255 1 2 3");
+    String loaded = cache.fileKey(file.getPath(), "ppm");
+    assertEquals(loaded, cache.fileKey(file.getPath(), "ppm"));
+    assertNotEquals(loaded, cache.fileKey(file.getPath(), "other"));
+    assertNull(cache.fileKey(new File(this.folder.getRoot(), "missing.ppm").getPath(), "ppm"));
+
+    ImageModel image = randomImage(10, 10, 1);
+    // nothing is known about where the image came from yet
+    assertNull(cache.deriveKey(image, null, "blur"));
+    cache.remember(image, loaded);
+    String blurred = cache.deriveKey(image, null, "blur");
+    assertEquals(blurred, cache.deriveKey(image, null, "blur"));
+    // the suffixes of deferred and folded changes make them different results
+    assertNotEquals(blurred, cache.deriveKey(image, null, "blur deferred"));
+    assertNotEquals(cache.deriveKey(image, null, "blur deferred"),
+            cache.deriveKey(image, null, "blur deferred folded"));
+
+    // a file with other bytes has another key, and so does everything made from it
+    Files.writeString(file.toPath(), "P3 1 1 255 1 2 4");
+    String changed = cache.fileKey(file.getPath(), "ppm");
+    assertNotEquals(loaded, changed);
+    ImageModel other = randomImage(10, 10, 1);
+    cache.remember(other, changed);
+    assertNotEquals(blurred, cache.deriveKey(other, null, "blur"));
+    assertTrue(cache.deriveKey(image, other, "blur") != null);
+  }
+}
@@ -0,0 +1,57 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for how ExecutionSettings hand out the executors that commands split their work with.
+ */
+public class ExecutionSettingsTest {
+
+  @Test
+  public void testSameParallelismSharesItsExecutor() {
+    ExecutionSettings settings = new ExecutionSettings();
+    settings.setParallelism(3);
+    RowBandExecutor three = settings.getExecutor();
+    assertEquals(3, three.getParallelism());
+    settings.setParallelism(3);
+    assertSame(three, settings.getExecutor());
+
+    // going back and forth doesn't start another pool
+    settings.setParallelism(5);
+    assertNotSame(three, settings.getExecutor());
+    settings.setParallelism(3);
+    assertSame(three, settings.getExecutor());
+
+    ExecutionSettings other = new ExecutionSettings();
+    other.setParallelism(3);
+    assertSame(three, other.getExecutor());
+  }
+
+  @Test
+  public void testCopyKeepsWorkingWhenTheOriginalChanges() {
+    ExecutionSettings settings = new ExecutionSettings();
+    settings.setParallelism(2);
+    ExecutionSettings copy = new ExecutionSettings(settings);
+    settings.setParallelism(4);
+
+    assertEquals(2, copy.getExecutor().getParallelism());
+    int[] rows = new int[200];
+    copy.getExecutor().forEachBand(rows.length, 1 << 15, (fromRow, toRow) -> {
+      for (int i = fromRow; i < toRow; i++) {
+        rows[i]++;
+      }
+    });
+    for (int row : rows) {
+      assertEquals(1, row);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParallelismMustBePositive() {
+    new ExecutionSettings().setParallelism(0);
+  }
+}
@@ -0,0 +1,129 @@
+package controller;
+
+import static model.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import model.DeferredImage;
+import model.ImageModel;
+import model.ImageStorageImpl;
+import model.RemappedImage;
+import org.junit.Test;
+import view.BufferedView;
+
+/**
+ * Tests for how a ResultCache looks results up, forgets the least recently used ones and lets go
+ * of the images they were made from.
+ */
+public class ResultCacheTest {
+
+  /**
+   * Runs the garbage collector until an image is no longer in use, or gives up after a while.
+   *
+   * @param reference a weak reference to the image
+   * @return true if the image is gone
+   */
+  private static boolean collected(WeakReference<ImageModel> reference) {
+    for (int attempt = 0; attempt < 50 && reference.get() != null; attempt++) {
+      System.gc();
+      try {
+        Thread.sleep(10);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return reference.get() == null;
+  }
+
+  @Test
+  public void testResultIsFoundForTheSameImageAndOperation() {
+    ResultCache cache = new ResultCache(10000);
+    ImageModel input = randomImage(10, 10, 1);
+    ImageModel mask = randomImage(10, 10, 2);
+    ImageModel result = randomImage(10, 10, 3);
+    cache.put("blur", input, null, result);
+
+    assertSame(result, cache.get("blur", input, null));
+    // the same pixels in another image, another operation or a mask are another result
+    assertNull(cache.get("blur", randomImage(10, 10, 1), null));
+    assertNull(cache.get("sharpen", input, null));
+    assertNull(cache.get("blur", input, mask));
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedResultIsForgottenFirst() {
+    // room for three results of 400 bytes each
+    ResultCache cache = new ResultCache(1200);
+    ImageModel input = randomImage(10, 10, 1);
+    cache.put("a", input, null, randomImage(10, 10, 2));
+    cache.put("b", input, null, randomImage(10, 10, 3));
+    cache.put("c", input, null, randomImage(10, 10, 4));
+    cache.get("a", input, null);
+    cache.put("d", input, null, randomImage(10, 10, 5));
+
+    assertNull(cache.get("b", input, null));
+    assertTrue(cache.get("a", input, null) != null);
+    assertTrue(cache.get("c", input, null) != null);
+    assertTrue(cache.get("d", input, null) != null);
+    // a result bigger than the whole budget isn't remembered, and doesn't push others out
+    cache.put("e", input, null, randomImage(20, 20, 6));
+    assertNull(cache.get("e", input, null));
+    assertTrue(cache.get("a", input, null) != null);
+  }
+
+  @Test
+  public void testViewsAreNotRememberedAndDontKeepTheirInput() {
+    ResultCache cache = new ResultCache(10000);
+    ImageModel input = randomImage(10, 10, 1);
+    cache.put("horizontal-flip", input, null, RemappedImage.horizontalFlip(input));
+    assertNull(cache.get("horizontal-flip", input, null));
+
+    WeakReference<ImageModel> reference = new WeakReference<>(input);
+    input = null;
+    assertTrue(collected(reference));
+  }
+
+  @Test
+  public void testResultDoesntKeepItsInput() {
+    ResultCache cache = new ResultCache(10000);
+    ImageModel input = randomImage(10, 10, 1);
+    cache.put("blur", input, null, randomImage(10, 10, 2));
+
+    WeakReference<ImageModel> reference = new WeakReference<>(input);
+    input = null;
+    assertTrue(collected(reference));
+  }
+
+  @Test
+  public void testDeferredResultsDontMatchPlainOnes() {
+    ResultCache cache = new ResultCache(10000);
+    ImageStorageImpl images = new ImageStorageImpl();
+    images.addImage("a", randomImage(10, 10, 1));
+    ExecutionSettings plain = new ExecutionSettings();
+    plain.setResultCache(cache);
+    ExecutionSettings deferred = new ExecutionSettings(plain);
+    deferred.setDeferred(true);
+
+    BrightDark first = new BrightDark("10", "a", "b", "", images, new BufferedView(), "");
+    first.setSettings(plain);
+    first.checkStorage();
+    BrightDark second = new BrightDark("10", "a", "c", "", images, new BufferedView(), "");
+    second.setSettings(deferred);
+    second.checkStorage();
+    BrightDark third = new BrightDark("10", "a", "d", "", images, new BufferedView(), "");
+    third.setSettings(plain);
+    third.checkStorage();
+
+    // the deferred command is keyed apart from the plain ones, so it makes its own result
+    assertTrue(images.getImage("c") instanceof DeferredImage);
+    assertSame(images.getImage("b"), images.getImage("d"));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+}
@@ -0,0 +1,41 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+
+/**
+ * Tests for how a RowBandExecutor splits the rows of an image into bands.
+ */
+public class RowBandExecutorTest {
+
+  @Test
+  public void testAlignedBandsStartAtMultiplesAndCoverEveryRowOnce() {
+    AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+    new RowBandExecutor(4).forEachBand(1000, 1000, 64, (fromRow, toRow) -> {
+      assertEquals(0, fromRow % 64);
+      for (int i = fromRow; i < toRow; i++) {
+        visits.incrementAndGet(i);
+      }
+    });
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(1, visits.get(i));
+    }
+  }
+
+  @Test
+  public void testUnalignedBandsCoverEveryRowOnce() {
+    AtomicIntegerArray visits = new AtomicIntegerArray(777);
+    new RowBandExecutor(3).forEachBand(777, 1000, (fromRow, toRow) -> {
+      assertTrue(fromRow < toRow);
+      for (int i = fromRow; i < toRow; i++) {
+        visits.incrementAndGet(i);
+      }
+    });
+    for (int i = 0; i < 777; i++) {
+      assertEquals(1, visits.get(i));
+    }
+  }
+}
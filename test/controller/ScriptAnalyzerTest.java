@@ -0,0 +1,186 @@
+package controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.ImageModel;
+import model.ImageStorageImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import view.BufferedView;
+
+/**
+ * Tests for which lines of a script are run and when its images are let go, both on the analysis
+ * alone and on scripts run by a controller that optimizes them.
+ */
+public class ScriptAnalyzerTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String input;
+
+  /**
+   * Storage that remembers the names of the images added to it and removed from it, in order.
+   */
+  private static class RecordingStorage extends ImageStorageImpl {
+    private final List<String> added = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+
+    @Override
+    public void addImage(String name, ImageModel image) {
+      this.added.add(name);
+      super.addImage(name, image);
+    }
+
+    @Override
+    public void removeImage(String name) {
+      this.removed.add(name);
+      super.removeImage(name);
+    }
+  }
+
+  @Before
+  public void writeInput() throws IOException {
+    Random random = new Random(1);
+    StringBuilder ppm = new StringBuilder("P3\n6 4\n255\n");
+    for (int k = 0; k < 6 * 4 * 3; k++) {
+      ppm.append(random.nextInt(256)).append('\n');
+    }
+    File file = this.folder.newFile("in.ppm");
+    Files.writeString(file.toPath(), ppm);
+    this.input = file.getPath();
+  }
+
+  /**
+   * Returns a script with a line whose image is thrown away before it's read, a line whose image
+   * is never read, and an image name that is used again for a new image.
+   *
+   * @param prefix what the paths of the saved images start with
+   * @return the lines of the script
+   */
+  private List<String> script(String prefix) {
+    return List.of("load " + this.input + " a",
+            "sepia a d",
+            "brighten 10 a b",
+            "greyscale a unused",
+            "blur b c",
+            "save " + prefix + "first.ppm c",
+            "darken 5 a d",
+            "brighten 20 d b",
+            "save " + prefix + "second.ppm b");
+  }
+
+  /**
+   * Runs a script on a new controller.
+   *
+   * @param lines the lines of the script
+   * @param optimize whether the controller optimizes scripts
+   * @param images where the controller keeps its images
+   * @return the messages the script showed
+   */
+  private static List<String> run(List<String> lines, boolean optimize,
+                                  RecordingStorage images) {
+    ExecutionSettings settings = new ExecutionSettings();
+    settings.setOptimizingScripts(optimize);
+    BufferedView view = new BufferedView();
+    new ImageProcessorControllerImpl(view, new StringReader(""), images, settings)
+            .runScript(lines);
+    return view.getMessages();
+  }
+
+  /**
+   * Checks that two files hold exactly the same bytes.
+   *
+   * @param expected the path of the expected file
+   * @param actual the path of the actual file
+   * @throws IOException if either file couldn't be read
+   */
+  private static void assertSameFile(String expected, String actual) throws IOException {
+    assertArrayEquals(Files.readAllBytes(new File(expected).toPath()),
+            Files.readAllBytes(new File(actual).toPath()));
+  }
+
+  @Test
+  public void testLinesThatNeverReachASaveAreNotLive() {
+    ScriptAnalyzer script = ScriptAnalyzer.analyze(this.script("out-"));
+    boolean[] live = {true, false, true, false, true, true, true, true, true};
+    assertEquals(live.length, script.size());
+    for (int i = 0; i < live.length; i++) {
+      assertEquals("line " + i, live[i], script.isLive(i));
+    }
+    // the first b is done with once blur has read it, even though the name is used again later
+    assertEquals(List.of("b"), script.lastUsedBy(4));
+    assertEquals(List.of("c"), script.lastUsedBy(5));
+    assertEquals(List.of("a"), script.lastUsedBy(6));
+    assertEquals(List.of("d"), script.lastUsedBy(7));
+    assertEquals(List.of("b"), script.lastUsedBy(8));
+    assertEquals(List.of(), script.lastUsedBy(2));
+  }
+
+  @Test
+  public void testOptimizedScriptSkipsLinesAndFreesImages() throws IOException {
+    String plain = this.folder.getRoot().getPath() + File.separator + "plain-";
+    String optimized = this.folder.getRoot().getPath() + File.separator + "optimized-";
+    RecordingStorage everything = new RecordingStorage();
+    assertEquals(List.of(), run(this.script(plain), false, everything));
+    assertEquals(List.of("a", "d", "b", "unused", "c", "d", "b"), everything.added);
+    assertEquals(List.of(), everything.removed);
+
+    RecordingStorage images = new RecordingStorage();
+    assertEquals(List.of(), run(this.script(optimized), true, images));
+    assertEquals(List.of("a", "b", "c", "d", "b"), images.added);
+    assertEquals(List.of("b", "c", "a", "d", "b"), images.removed);
+    assertTrue(images.getImages().isEmpty());
+    assertSameFile(plain + "first.ppm", optimized + "first.ppm");
+    assertSameFile(plain + "second.ppm", optimized + "second.ppm");
+  }
+
+  @Test
+  public void testScriptThatRunsAnotherScriptIsRunOneLineAtATime() throws IOException {
+    String plain = this.folder.getRoot().getPath() + File.separator + "plain.ppm";
+    String optimized = this.folder.getRoot().getPath() + File.separator + "optimized.ppm";
+    File outer = this.folder.newFile("outer.txt");
+    File inner = this.folder.newFile("inner.txt");
+    Files.write(outer.toPath(), List.of("load " + this.input + " a",
+            "-file " + inner.getPath()));
+    // which lines of the other script run and which images it uses can't be known in advance
+    assertNull(ScriptAnalyzer.analyze(Files.readAllLines(outer.toPath())));
+
+    Files.write(inner.toPath(), List.of("brighten 10 a b", "greyscale a unused",
+            "save " + plain + " b"));
+    RecordingStorage everything = new RecordingStorage();
+    assertEquals(List.of(), run(List.of("-file " + outer.getPath()), false, everything));
+    assertEquals(List.of("a", "b", "unused"), everything.added);
+
+    Files.write(inner.toPath(), List.of("brighten 10 a b", "greyscale a unused",
+            "save " + optimized + " b"));
+    RecordingStorage images = new RecordingStorage();
+    assertEquals(List.of(), run(List.of("-file " + outer.getPath()), true, images));
+    // the other script is optimized on its own once it's reached
+    assertEquals(List.of("a", "b"), images.added);
+    assertEquals(List.of("a", "b"), images.removed);
+    assertSameFile(plain, optimized);
+  }
+
+  @Test
+  public void testScriptEndsAtQuit() {
+    ScriptAnalyzer script = ScriptAnalyzer.analyze(List.of("load in.ppm a", "", "q",
+            "not a command"));
+    assertEquals(1, script.size());
+    // a load whose image is never saved doesn't have to run
+    assertFalse(script.isLive(0));
+    assertNull(ScriptAnalyzer.analyze(List.of("load in.ppm a", "brighten 10 a")));
+  }
+}
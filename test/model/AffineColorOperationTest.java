@@ -0,0 +1,92 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for folding chains of color operations into one matrix, checked against running the exact
+ * operations of the same commands one after the other.
+ */
+public class AffineColorOperationTest {
+  private static final double[][] SEPIA = {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168},
+      {0.272, 0.534, 0.131}};
+
+  @Test
+  public void testFoldedChainStaysWithinBound() {
+    PointOperation[] exact = {LookupTableOperation.offset(20, 255),
+        AffineColorOperation.grey(.2126, .7152, .0722, 255, true),
+        LookupTableOperation.offset(-10, 255),
+        new AffineColorOperation(SEPIA, 255, true),
+        AffineColorOperation.grey(.2126, .7152, .0722, 255, true),
+        AffineColorOperation.grey(1, 0, 0, 255, true)};
+    PointOperation[] inexact = {AffineColorOperation.offset(20, 255, false),
+        AffineColorOperation.grey(.2126, .7152, .0722, 255, false),
+        AffineColorOperation.offset(-10, 255, false),
+        new AffineColorOperation(SEPIA, 255, false),
+        AffineColorOperation.grey(.2126, .7152, .0722, 255, false),
+        AffineColorOperation.grey(1, 0, 0, 255, false)};
+    PointOperation folded = inexact[0];
+    for (int k = 1; k < inexact.length; k++) {
+      folded = folded.fuse(inexact[k]);
+      assertNotNull(folded);
+    }
+    // greyscale, sepia and luma add less than 3 each, and sepia stretches what came before it by
+    // up to 40%, so together they add less than (3 * 1.4 + 3) + 3
+    double bound = 10.2;
+
+    Random random = new Random(1);
+    int largest = 0;
+    for (int round = 0; round < 20000; round++) {
+      // components that no step of the chain has to clamp
+      int rgb = PackedImage.pack(30 + random.nextInt(121), 30 + random.nextInt(121),
+              30 + random.nextInt(121));
+      int expected = rgb;
+      for (PointOperation operation : exact) {
+        expected = operation.apply(expected);
+      }
+      int actual = folded.apply(rgb);
+      for (int shift = 0; shift <= 16; shift = shift + 8) {
+        int difference = ((actual >> shift) & 0xFF) - ((expected >> shift) & 0xFF);
+        assertTrue("folding never darkens: " + difference, difference >= 0);
+        assertTrue("difference " + difference, difference < bound);
+        largest = Math.max(largest, difference);
+      }
+    }
+    // the chain does round differently, or the test would prove nothing
+    assertTrue(largest > 0);
+  }
+
+  @Test
+  public void testSingleGreyscaleIsWithinThreeLevels() {
+    PointOperation exact = AffineColorOperation.grey(.2126, .7152, .0722, 255, true);
+    PointOperation inexact = AffineColorOperation.grey(.2126, .7152, .0722, 255, false);
+    for (int rgb = 0; rgb < 1 << 24; rgb = rgb + 4099) {
+      int difference = PackedImage.red(inexact.apply(rgb)) - PackedImage.red(exact.apply(rgb));
+      assertTrue(difference >= 0 && difference < 3);
+    }
+  }
+
+  @Test
+  public void testClampingInsideChainIsLost() {
+    PointOperation folded = AffineColorOperation.offset(100, 255, false)
+            .fuse(AffineColorOperation.offset(-100, 255, false));
+    int rgb = PackedImage.pack(200, 100, 0);
+    // run one at a time, the brighten clamps red at 255 before the darken
+    assertEquals(PackedImage.pack(155, 100, 0), LookupTableOperation.offset(100, 255)
+            .fuse(LookupTableOperation.offset(-100, 255)).apply(rgb));
+    assertEquals(rgb, folded.apply(rgb));
+  }
+
+  @Test
+  public void testExactOperationsDontFold() {
+    PointOperation exact = AffineColorOperation.grey(.2126, .7152, .0722, 255, true);
+    PointOperation inexact = AffineColorOperation.offset(5, 255, false);
+    assertNull(exact.fuse(inexact));
+    assertNull(inexact.fuse(exact));
+  }
+}
@@ -0,0 +1,179 @@
+package model;
+
+import static model.TestImages.assertClose;
+import static model.TestImages.flatImage;
+import static model.TestImages.randomImage;
+
+import org.junit.Test;
+
+/**
+ * Tests for the box and Gaussian blurs of a BoxBlur, each checked against averaging every pixel of
+ * the box in doubles.
+ */
+public class BoxBlurTest {
+
+  /**
+   * Runs every step of a blur over a whole image.
+   *
+   * @param blur the blur
+   * @param image the image it blurs
+   * @return the result
+   */
+  private static ImageModel run(BoxBlur blur, ImageModel image) {
+    PackedImage result = new PackedImage(image.getHeight(), image.getWidth(), "result.png");
+    blur.blurRows(0, image.getHeight());
+    blur.blurColumns(0, image.getWidth());
+    blur.writeRows(result, 0, image.getHeight());
+    return result;
+  }
+
+  /**
+   * Averages every pixel of an image with the pixels of a square box around it, in doubles,
+   * rounding the averages to the nearest whole number.
+   *
+   * @param image the image
+   * @param radius how far the box reaches from each pixel
+   * @param border how to treat the pixels past the edges
+   * @return the result
+   */
+  private static ImageModel boxReference(ImageModel image, int radius, BorderMode border) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    double area = (2.0 * radius + 1) * (2.0 * radius + 1);
+    PackedImage result = new PackedImage(height, width, "reference.png");
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        double[] sums = new double[3];
+        for (int x = -radius; x <= radius; x++) {
+          for (int y = -radius; y <= radius; y++) {
+            int sourceRow = border.map(i + x, height);
+            int sourceColumn = border.map(j + y, width);
+            if (sourceRow < 0 || sourceColumn < 0) {
+              continue;
+            }
+            int pixel = image.getRGB(sourceRow, sourceColumn);
+            sums[0] = sums[0] + PackedImage.red(pixel);
+            sums[1] = sums[1] + PackedImage.green(pixel);
+            sums[2] = sums[2] + PackedImage.blue(pixel);
+          }
+        }
+        row[j] = PackedImage.pack((int) Math.round(sums[0] / area),
+                (int) Math.round(sums[1] / area), (int) Math.round(sums[2] / area));
+      }
+      result.setRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Runs three box passes of the radii a Gaussian blur is made of over an image, every row and
+   * then every column, in doubles, rounding only at the end to the nearest whole number.
+   *
+   * @param image the image
+   * @param radius how far the blur reaches from each pixel
+   * @param border how to treat the pixels past the edges, at every pass
+   * @return the result
+   */
+  private static ImageModel gaussianReference(ImageModel image, int radius, BorderMode border) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int[] radii = {(radius + 2) / 3, (radius + 1) / 3, radius / 3};
+    double[][][] planes = new double[3][height][width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int pixel = image.getRGB(i, j);
+        planes[0][i][j] = PackedImage.red(pixel);
+        planes[1][i][j] = PackedImage.green(pixel);
+        planes[2][i][j] = PackedImage.blue(pixel);
+      }
+    }
+    for (double[][] plane : planes) {
+      for (int r : radii) {
+        for (int i = 0; i < height; i++) {
+          double[] line = plane[i].clone();
+          for (int j = 0; j < width; j++) {
+            double sum = 0;
+            for (int y = -r; y <= r; y++) {
+              int k = border.map(j + y, width);
+              sum = sum + (k < 0 ? 0 : line[k]);
+            }
+            plane[i][j] = sum / (2 * r + 1);
+          }
+        }
+      }
+      for (int r : radii) {
+        for (int j = 0; j < width; j++) {
+          double[] line = new double[height];
+          for (int i = 0; i < height; i++) {
+            line[i] = plane[i][j];
+          }
+          for (int i = 0; i < height; i++) {
+            double sum = 0;
+            for (int x = -r; x <= r; x++) {
+              int k = border.map(i + x, height);
+              sum = sum + (k < 0 ? 0 : line[k]);
+            }
+            plane[i][j] = sum / (2 * r + 1);
+          }
+        }
+      }
+    }
+    PackedImage result = new PackedImage(height, width, "reference.png");
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        row[j] = PackedImage.pack((int) Math.round(planes[0][i][j]),
+                (int) Math.round(planes[1][i][j]), (int) Math.round(planes[2][i][j]));
+      }
+      result.setRow(i, row);
+    }
+    return result;
+  }
+
+  @Test
+  public void testBoxBlurFromTableIsExact() {
+    ImageModel image = randomImage(19, 26, 1);
+    // the table is only used once something else has worked it out
+    IntegralImage.of(image);
+    for (int radius : new int[] {1, 4, 30}) {
+      BoxBlur blur = new BoxBlur(image, radius, false, BorderMode.ZERO);
+      assertClose(boxReference(image, radius, BorderMode.ZERO), run(blur, image), 0);
+    }
+  }
+
+  @Test
+  public void testBoxBlurMatchesReference() {
+    ImageModel image = randomImage(19, 26, 2);
+    for (BorderMode border : BorderMode.values()) {
+      for (int radius : new int[] {0, 1, 4, 30}) {
+        BoxBlur blur = new BoxBlur(image, radius, false, border);
+        // the passes round the averages of the rows to 8 bits below the point
+        assertClose(boxReference(image, radius, border), run(blur, image), 1);
+      }
+    }
+  }
+
+  @Test
+  public void testGaussianBlurMatchesReference() {
+    ImageModel image = randomImage(19, 26, 3);
+    for (BorderMode border : BorderMode.values()) {
+      for (int radius : new int[] {1, 3, 8, 40}) {
+        BoxBlur blur = new BoxBlur(image, radius, true, border);
+        assertClose(gaussianReference(image, radius, border), run(blur, image), 1);
+      }
+    }
+  }
+
+  @Test
+  public void testBlursKeepFlatImage() {
+    ImageModel image = flatImage(11, 7, 100, 200, 37);
+    for (BorderMode border : new BorderMode[] {BorderMode.CLAMP, BorderMode.MIRROR,
+        BorderMode.WRAP}) {
+      for (int radius : new int[] {1, 5, 25}) {
+        assertClose(image, run(new BoxBlur(image, radius, false, border), image), 0);
+        assertClose(image, run(new BoxBlur(image, radius, true, border), image), 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import static model.TestImages.assertClose;
+import static model.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for how a BudgetedImageStorage spills images, reads them back and counts what it keeps in
+ * memory.
+ */
+public class BudgetedImageStorageTest {
+
+  @Test
+  public void testSpilledImageIsReadBackWithTheSamePixels() {
+    BudgetedImageStorage storage = new BudgetedImageStorage(400);
+    // nothing but the storage keeps the first image, so it has to come back from the spill file
+    storage.addImage("a", randomImage(10, 10, 1));
+    storage.addImage("b", randomImage(10, 10, 2));
+    assertEquals(1, storage.getSpills());
+    assertEquals(400, storage.getResidentBytes());
+    assertEquals(300, storage.getSpillFileBytes());
+    System.gc();
+
+    assertClose(randomImage(10, 10, 1), storage.getImage("a"), 0);
+    assertEquals(1, storage.getRestores());
+    assertEquals(2, storage.getSpills());
+    assertEquals(400, storage.getResidentBytes());
+    assertClose(randomImage(10, 10, 2), storage.getImage("b"), 0);
+  }
+
+  @Test
+  public void testSpilledImageStillInUseComesBackAsTheSameObject() {
+    BudgetedImageStorage storage = new BudgetedImageStorage(400);
+    PackedImage first = randomImage(10, 10, 1);
+    storage.addImage("a", first);
+    storage.addImage("b", randomImage(10, 10, 2));
+    assertEquals(1, storage.getSpills());
+
+    assertSame(first, storage.getImage("a"));
+    assertEquals(0, storage.getRestores());
+    assertEquals(2, storage.getSpills());
+    // images that were spilled before are only dropped again, not written twice
+    storage.getImage("b");
+    storage.getImage("a");
+    assertEquals(2, storage.getSpills());
+    assertEquals(600, storage.getSpillFileBytes());
+  }
+
+  @Test
+  public void testViewsCountTheImageTheyKeepOnce() {
+    BudgetedImageStorage storage = new BudgetedImageStorage(10000);
+    PackedImage image = randomImage(10, 10, 1);
+    storage.addImage("a", image);
+    storage.addImage("flipped", RemappedImage.horizontalFlip(image));
+    storage.addImage("both", RemappedImage.verticalFlip(storage.getImage("flipped")));
+    assertEquals(400, storage.getResidentBytes());
+    storage.removeImage("a");
+    storage.removeImage("flipped");
+    // the last view still keeps the pixels in memory
+    assertEquals(400, storage.getResidentBytes());
+    storage.removeImage("both");
+    assertEquals(0, storage.getResidentBytes());
+  }
+
+  @Test
+  public void testSpaceOfRemovedImagesIsReused() {
+    BudgetedImageStorage storage = new BudgetedImageStorage(400);
+    storage.addImage("a", randomImage(10, 10, 1));
+    storage.addImage("b", randomImage(10, 10, 2));
+    storage.addImage("c", randomImage(10, 10, 3));
+    assertEquals(600, storage.getSpillFileBytes());
+    storage.removeImage("a");
+    storage.addImage("d", randomImage(10, 10, 4));
+    assertEquals(600, storage.getSpillFileBytes());
+    storage.removeImage("b");
+    storage.removeImage("c");
+    assertEquals(0, storage.getSpillFileBytes());
+    assertEquals(400, storage.getResidentBytes());
+  }
+}
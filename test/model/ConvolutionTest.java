@@ -0,0 +1,323 @@
+package model;
+
+import static model.TestImages.assertClose;
+import static model.TestImages.flatImage;
+import static model.TestImages.randomImage;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for the ways a Convolution adds up a kernel, each checked against running every cell of
+ * the kernel by itself in doubles.
+ */
+public class ConvolutionTest {
+
+  /**
+   * Runs every kernel that isn't separable and has at least 7 rows through a Fourier transform,
+   * whatever the crossover on this machine would be.
+   */
+  @BeforeClass
+  public static void setCrossover() {
+    System.setProperty("imageprocessor.fftCrossover", "7");
+  }
+
+  /**
+   * Creates a box kernel, whose weights all add up to 1.
+   *
+   * @param size the size of the kernel
+   * @return the kernel
+   */
+  private static double[][] box(int size) {
+    double[][] kernel = new double[size][size];
+    for (double[] row : kernel) {
+      Arrays.fill(row, 1.0 / (size * size));
+    }
+    return kernel;
+  }
+
+  /**
+   * Creates a separable kernel out of a row of binomial weights, like the kernel of blur.
+   *
+   * @param size the size of the kernel
+   * @return the kernel
+   */
+  private static double[][] binomial(int size) {
+    double[] weights = new double[size];
+    weights[0] = 1;
+    for (int k = 1; k < size; k++) {
+      for (int y = k; y > 0; y--) {
+        weights[y] = weights[y] + weights[y - 1];
+      }
+    }
+    double total = Math.pow(2, size - 1);
+    double[][] kernel = new double[size][size];
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        kernel[x][y] = weights[x] * weights[y] / (total * total);
+      }
+    }
+    return kernel;
+  }
+
+  /**
+   * Creates a kernel of random weights that isn't a short sum of separable terms. The weights add
+   * up to 1, and are all positive unless negative ones are asked for.
+   *
+   * @param size the size of the kernel
+   * @param negative whether some of the weights may be negative
+   * @param seed where the weights come from
+   * @return the kernel
+   */
+  private static double[][] randomKernel(int size, boolean negative, long seed) {
+    Random random = new Random(seed);
+    double[][] kernel = new double[size][size];
+    double total = 0;
+    for (double[] row : kernel) {
+      for (int y = 0; y < size; y++) {
+        row[y] = negative ? random.nextDouble() - 0.4 : random.nextDouble();
+        total = total + row[y];
+      }
+    }
+    for (double[] row : kernel) {
+      for (int y = 0; y < size; y++) {
+        row[y] = row[y] / total;
+      }
+    }
+    return kernel;
+  }
+
+  /**
+   * Runs a convolution over a whole image.
+   *
+   * @param convolution the convolution
+   * @param image the image
+   * @return the result
+   */
+  private static ImageModel run(Convolution convolution, ImageModel image) {
+    PackedImage result = new PackedImage(image.getHeight(), image.getWidth(), "result.png");
+    convolution.convolve(image, result, 0, image.getHeight());
+    return result;
+  }
+
+  /**
+   * Runs a kernel over an image one cell at a time in doubles, truncating only the sum of each
+   * pixel.
+   *
+   * @param image the image
+   * @param kernel the kernel
+   * @param border how to treat the pixels past the edges
+   * @return the result
+   */
+  private static ImageModel reference(ImageModel image, double[][] kernel, BorderMode border) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int radius = kernel.length / 2;
+    PackedImage result = new PackedImage(height, width, "reference.png");
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        double[] sums = new double[3];
+        for (int x = 0; x < kernel.length; x++) {
+          for (int y = 0; y < kernel.length; y++) {
+            int sourceRow = border.map(i + x - radius, height);
+            int sourceColumn = border.map(j + y - radius, width);
+            if (sourceRow < 0 || sourceColumn < 0) {
+              continue;
+            }
+            int pixel = image.getRGB(sourceRow, sourceColumn);
+            sums[0] = sums[0] + kernel[x][y] * PackedImage.red(pixel);
+            sums[1] = sums[1] + kernel[x][y] * PackedImage.green(pixel);
+            sums[2] = sums[2] + kernel[x][y] * PackedImage.blue(pixel);
+          }
+        }
+        row[j] = PackedImage.pack(clamp(sums[0]), clamp(sums[1]), clamp(sums[2]));
+      }
+      result.setRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Runs a kernel over an image one cell at a time, truncating every product on its own before
+   * adding them up, like blur and sharpen always have.
+   *
+   * @param image the image
+   * @param kernel the kernel
+   * @param border how to treat the pixels past the edges
+   * @return the result
+   */
+  private static ImageModel truncatedReference(ImageModel image, double[][] kernel,
+                                               BorderMode border) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int radius = kernel.length / 2;
+    PackedImage result = new PackedImage(height, width, "reference.png");
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int[] sums = new int[3];
+        for (int x = 0; x < kernel.length; x++) {
+          for (int y = 0; y < kernel.length; y++) {
+            int sourceRow = border.map(i + x - radius, height);
+            int sourceColumn = border.map(j + y - radius, width);
+            if (sourceRow < 0 || sourceColumn < 0) {
+              continue;
+            }
+            int pixel = image.getRGB(sourceRow, sourceColumn);
+            sums[0] = sums[0] + (int) (kernel[x][y] * PackedImage.red(pixel));
+            sums[1] = sums[1] + (int) (kernel[x][y] * PackedImage.green(pixel));
+            sums[2] = sums[2] + (int) (kernel[x][y] * PackedImage.blue(pixel));
+          }
+        }
+        row[j] = PackedImage.pack(clamp(sums[0]), clamp(sums[1]), clamp(sums[2]));
+      }
+      result.setRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Creates the kernel of sharpen, which has negative weights.
+   *
+   * @return the kernel
+   */
+  private static double[][] sharpen() {
+    double[][] kernel = new double[5][5];
+    for (int x = 0; x < 5; x++) {
+      for (int y = 0; y < 5; y++) {
+        boolean edge = x == 0 || y == 0 || x == 4 || y == 4;
+        kernel[x][y] = edge ? -0.125 : 0.25;
+      }
+    }
+    kernel[2][2] = 1;
+    return kernel;
+  }
+
+  /**
+   * Truncates a sum and keeps it inside the range of a component.
+   *
+   * @param sum the sum
+   * @return the component
+   */
+  private static int clamp(double sum) {
+    return Math.max(0, Math.min(255, (int) sum));
+  }
+
+  @Test
+  public void testSeparableMatchesReference() {
+    ImageModel image = randomImage(23, 31, 1);
+    double[][] kernel = binomial(7);
+    for (BorderMode border : BorderMode.values()) {
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FASTEST, border);
+      // sums that land right next to a whole number may truncate either way
+      assertClose(reference(image, kernel, border), run(convolution, image), 1);
+    }
+  }
+
+  @Test
+  public void testSeparableKeepsFlatImage() {
+    ImageModel image = flatImage(40, 40, 100, 200, 37);
+    Convolution convolution = new Convolution(box(31), ConvolutionMode.FASTEST, BorderMode.CLAMP);
+    assertClose(image, run(convolution, image), 0);
+  }
+
+  @Test
+  public void testSeparableKernelLargerThanImage() {
+    ImageModel image = randomImage(9, 12, 2);
+    ImageModel flat = flatImage(9, 12, 100, 200, 37);
+    double[][] kernel = box(31);
+    for (BorderMode border : BorderMode.values()) {
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FASTEST, border);
+      assertClose(reference(image, kernel, border), run(convolution, image), 1);
+      if (border != BorderMode.ZERO) {
+        assertClose(flat, run(convolution, flat), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testFftMatchesReference() {
+    ImageModel image = randomImage(23, 31, 3);
+    double[][] kernel = randomKernel(9, true, 4);
+    for (BorderMode border : BorderMode.values()) {
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FASTEST, border);
+      assertClose(reference(image, kernel, border), run(convolution, image), 1);
+    }
+  }
+
+  @Test
+  public void testFftKeepsFlatImage() {
+    ImageModel image = flatImage(40, 40, 100, 200, 37);
+    Convolution convolution = new Convolution(randomKernel(21, false, 5),
+            ConvolutionMode.FASTEST, BorderMode.CLAMP);
+    assertClose(image, run(convolution, image), 0);
+  }
+
+  @Test
+  public void testFftKernelLargerThanImage() {
+    ImageModel image = randomImage(9, 12, 6);
+    ImageModel flat = flatImage(9, 12, 100, 200, 37);
+    double[][] kernel = randomKernel(41, false, 7);
+    for (BorderMode border : BorderMode.values()) {
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FASTEST, border);
+      assertClose(reference(image, kernel, border), run(convolution, image), 1);
+      if (border != BorderMode.ZERO) {
+        assertClose(flat, run(convolution, flat), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testKernelLargerThanLargestUsualTile() {
+    // a kernel this large needs a tile past the usual largest one to leave any useful rows
+    ImageModel image = randomImage(6, 7, 8);
+    double[][] kernel = randomKernel(301, false, 9);
+    Convolution convolution = new Convolution(kernel, ConvolutionMode.FASTEST, BorderMode.MIRROR);
+    assertClose(reference(image, kernel, BorderMode.MIRROR), run(convolution, image), 1);
+  }
+
+  @Test
+  public void testExactMatchesTruncatedProducts() {
+    ImageModel image = randomImage(23, 31, 10);
+    for (double[][] kernel : new double[][][] {binomial(3), sharpen(), randomKernel(9, true, 11)}) {
+      for (BorderMode border : BorderMode.values()) {
+        Convolution convolution = new Convolution(kernel, ConvolutionMode.EXACT, border);
+        assertClose(truncatedReference(image, kernel, border), run(convolution, image), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testFixedPointMatchesReference() {
+    ImageModel image = randomImage(23, 31, 12);
+    for (double[][] kernel : new double[][][] {binomial(3), sharpen(), randomKernel(9, true, 13)}) {
+      for (BorderMode border : BorderMode.values()) {
+        Convolution convolution = new Convolution(kernel, ConvolutionMode.FIXED_POINT, border);
+        assertClose(reference(image, kernel, border), run(convolution, image), 1);
+      }
+    }
+  }
+
+  @Test
+  public void testFixedPointKeepsFlatImage() {
+    ImageModel image = flatImage(20, 30, 100, 200, 37);
+    for (double[][] kernel : new double[][][] {binomial(3), box(7), randomKernel(21, false, 14)}) {
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FIXED_POINT,
+              BorderMode.MIRROR);
+      assertClose(image, run(convolution, image), 0);
+    }
+  }
+
+  @Test
+  public void testFixedPointKernelLargerThanImage() {
+    ImageModel image = randomImage(9, 12, 15);
+    double[][] kernel = randomKernel(25, true, 16);
+    for (BorderMode border : BorderMode.values()) {
+      Convolution convolution = new Convolution(kernel, ConvolutionMode.FIXED_POINT, border);
+      assertClose(reference(image, kernel, border), run(convolution, image), 1);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package model;
+
+import static model.TestImages.assertClose;
+import static model.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests that a chain of exact point operations run through a DeferredImage gives the same pixels
+ * as running each operation on its own.
+ */
+public class DeferredImageTest {
+  private static final double[][] SEPIA = {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168},
+      {0.272, 0.534, 0.131}};
+
+  /**
+   * Returns a chain of exact operations like the commands run them: brighten, greyscale, darken
+   * twice, sepia, the value and the red component.
+   *
+   * @return the operations, in the order they run
+   */
+  private static List<PointOperation> exactChain() {
+    return List.of(LookupTableOperation.offset(30, 255),
+            AffineColorOperation.grey(.2126, .7152, .0722, 255, true),
+            LookupTableOperation.offset(-20, 255),
+            LookupTableOperation.offset(-25, 255),
+            new AffineColorOperation(SEPIA, 255, true),
+            ComponentOperation.value(),
+            AffineColorOperation.grey(1, 0, 0, 255, true));
+  }
+
+  /**
+   * Runs operations one after the other, each over the whole image and one pixel at a time.
+   *
+   * @param image the image
+   * @param operations the operations
+   * @return the result
+   */
+  private static ImageModel sequential(ImageModel image, List<PointOperation> operations) {
+    PackedImage result = new PackedImage(image.getHeight(), image.getWidth(), "result.png");
+    int[] row = new int[image.getWidth()];
+    for (int i = 0; i < image.getHeight(); i++) {
+      image.getRow(i, row);
+      for (PointOperation operation : operations) {
+        for (int j = 0; j < row.length; j++) {
+          row[j] = operation.apply(row[j]);
+        }
+      }
+      result.setRow(i, row);
+    }
+    return result;
+  }
+
+  @Test
+  public void testExactChainMatchesSequential() {
+    ImageModel image = randomImage(13, 17, 1);
+    ImageModel deferred = image;
+    for (PointOperation operation : exactChain()) {
+      deferred = DeferredImage.of(deferred, operation);
+    }
+    // the two darkens are fused into one table, nothing else can be
+    assertEquals(6, ((DeferredImage) deferred).pendingOperations());
+    assertSame(image, ((DeferredImage) deferred).getSource());
+    assertClose(sequential(image, exactChain()), deferred, 0);
+    int[] region = new int[6 * 5];
+    deferred.getRegion(4, 7, 6, 5, region);
+    for (int i = 0; i < 6; i++) {
+      for (int j = 0; j < 5; j++) {
+        assertEquals(deferred.getRGB(4 + i, 7 + j), region[i * 5 + j]);
+      }
+    }
+  }
+
+  @Test
+  public void testFlipsInsideChainMatchSequential() {
+    ImageModel image = randomImage(13, 17, 2);
+    List<PointOperation> chain = exactChain();
+    ImageModel deferred = DeferredImage.of(image, chain.get(0));
+    deferred = RemappedImage.horizontalFlip(deferred);
+    deferred = DeferredImage.of(deferred, chain.get(1));
+    deferred = RemappedImage.verticalFlip(deferred);
+    deferred = DeferredImage.of(deferred, chain.get(2));
+    // the flips are moved underneath the chain, which keeps growing
+    assertEquals(3, ((DeferredImage) deferred).pendingOperations());
+    ImageModel flipped = RemappedImage.verticalFlip(RemappedImage.horizontalFlip(image));
+    assertClose(sequential(flipped, chain.subList(0, 3)), deferred, 0);
+  }
+}
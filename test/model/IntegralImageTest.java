@@ -0,0 +1,87 @@
+package model;
+
+import static model.TestImages.flatImage;
+import static model.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for the sums, means and variances an IntegralImage looks up, each checked against adding
+ * up every pixel of the rectangle.
+ */
+public class IntegralImageTest {
+
+  /**
+   * Returns a color component of a pixel.
+   *
+   * @param rgb the packed pixel
+   * @param channel the color component: 0 for red, 1 for green and 2 for blue
+   * @return the component
+   */
+  private static int component(int rgb, int channel) {
+    return (rgb >> (16 - 8 * channel)) & 0xFF;
+  }
+
+  @Test
+  public void testSumMeanAndVarianceMatchEveryPixel() {
+    ImageModel image = randomImage(17, 23, 1);
+    IntegralImage table = IntegralImage.of(image);
+    Random random = new Random(2);
+    for (int round = 0; round < 200; round++) {
+      int row = random.nextInt(17);
+      int col = random.nextInt(23);
+      int height = 1 + random.nextInt(17 - row);
+      int width = 1 + random.nextInt(23 - col);
+      for (int channel = 0; channel < 3; channel++) {
+        long sum = 0;
+        long squares = 0;
+        for (int i = row; i < row + height; i++) {
+          for (int j = col; j < col + width; j++) {
+            int value = component(image.getRGB(i, j), channel);
+            sum = sum + value;
+            squares = squares + value * value;
+          }
+        }
+        double area = height * width;
+        double mean = sum / area;
+        assertEquals(sum, table.sum(channel, row, col, height, width));
+        assertEquals(mean, table.mean(channel, row, col, height, width), 1e-9);
+        assertEquals(squares / area - mean * mean,
+                table.variance(channel, row, col, height, width), 1e-6);
+      }
+    }
+  }
+
+  @Test
+  public void testFlatImageHasNoVariance() {
+    IntegralImage table = IntegralImage.of(flatImage(9, 12, 100, 200, 37));
+    assertEquals(PackedImage.pack(100, 200, 37), table.average(0, 0, 9, 12));
+    assertEquals(200.0, table.mean(1, 2, 3, 4, 5), 0);
+    for (int channel = 0; channel < 3; channel++) {
+      assertEquals(0.0, table.variance(channel, 0, 0, 9, 12), 0);
+    }
+  }
+
+  @Test
+  public void testTableIsOnlyWorkedOutOnce() {
+    ImageModel image = randomImage(5, 6, 3);
+    assertNull(IntegralImage.cached(image));
+    IntegralImage table = IntegralImage.of(image);
+    assertSame(table, IntegralImage.of(image));
+    assertSame(table, IntegralImage.cached(image));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegionOutsideImage() {
+    IntegralImage.of(randomImage(5, 6, 4)).sum(0, 3, 3, 3, 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyRegionHasNoMean() {
+    IntegralImage.of(randomImage(5, 6, 5)).mean(0, 1, 1, 0, 3);
+  }
+}
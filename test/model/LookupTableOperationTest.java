@@ -0,0 +1,123 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for lookup table operations, checked against working out each component by hand and
+ * against running the operations of a chain one after the other.
+ */
+public class LookupTableOperationTest {
+
+  /**
+   * Returns a chain of every kind of table: brighten, gamma, levels, darken and threshold.
+   *
+   * @return the operations, in the order they run
+   */
+  private static LookupTableOperation[] chain() {
+    return new LookupTableOperation[] {LookupTableOperation.offset(25, 255),
+        LookupTableOperation.gamma(1.8, 255),
+        LookupTableOperation.levels(20, 230, 0.7, 255),
+        LookupTableOperation.offset(-40, 255),
+        LookupTableOperation.threshold(100, 255)};
+  }
+
+  @Test
+  public void testOffsetMatchesClampedAdd() {
+    for (int value : new int[] {-300, -50, -1, 0, 1, 50, 300}) {
+      PointOperation exact = LookupTableOperation.offset(value, 255);
+      PointOperation folded = AffineColorOperation.offset(value, 255, false);
+      for (int component = 0; component <= 255; component++) {
+        int expected = Math.max(0, Math.min(255, component + value));
+        int rgb = PackedImage.pack(component, 255 - component, component / 2);
+        assertEquals(PackedImage.pack(expected, Math.max(0, Math.min(255, 255 - component
+                + value)), Math.max(0, Math.min(255, component / 2 + value))), exact.apply(rgb));
+        // adding a whole number doesn't round, so a single folded offset is the same table
+        assertEquals(exact.apply(rgb), folded.apply(rgb));
+      }
+    }
+  }
+
+  @Test
+  public void testFusedChainMatchesSequential() {
+    LookupTableOperation[] operations = chain();
+    PointOperation fused = operations[0];
+    for (int k = 1; k < operations.length - 1; k++) {
+      fused = fused.fuse(operations[k]);
+    }
+    // without the threshold, so most of the components don't end up at 0 or 255
+    for (int rgb = 0; rgb < 1 << 24; rgb = rgb + 997) {
+      int expected = rgb;
+      for (int k = 0; k < operations.length - 1; k++) {
+        expected = operations[k].apply(expected);
+      }
+      assertEquals(expected, fused.apply(rgb));
+    }
+
+    fused = fused.fuse(operations[operations.length - 1]);
+    for (int rgb = 0; rgb < 1 << 24; rgb = rgb + 997) {
+      int expected = rgb;
+      for (LookupTableOperation operation : operations) {
+        expected = operation.apply(expected);
+      }
+      assertEquals(expected, fused.apply(rgb));
+    }
+  }
+
+  @Test
+  public void testRowMatchesPixels() {
+    Random random = new Random(1);
+    int[] row = new int[50];
+    for (int j = 0; j < row.length; j++) {
+      row[j] = random.nextInt(1 << 24);
+    }
+    int[] copy = row.clone();
+    PointOperation fused = chain()[0].fuse(chain()[2]);
+    // only the first 40 are changed
+    fused.applyToRow(row, 40);
+    for (int j = 0; j < row.length; j++) {
+      assertEquals(j < 40 ? fused.apply(copy[j]) : copy[j], row[j]);
+    }
+  }
+
+  @Test
+  public void testComponentsKeepTheirOwnTables() {
+    int[] invert = new int[256];
+    int[] half = new int[256];
+    int[] same = new int[256];
+    for (int value = 0; value <= 255; value++) {
+      invert[value] = 255 - value;
+      half[value] = value / 2;
+      same[value] = value;
+    }
+    PointOperation first = new LookupTableOperation(invert, half, same);
+    PointOperation fused = first.fuse(LookupTableOperation.offset(10, 255));
+    assertEquals(PackedImage.pack(255 - 200 + 10, 100 / 2 + 10, 30 + 10),
+            fused.apply(PackedImage.pack(200, 100, 30)));
+    assertEquals(PackedImage.pack(255, 10, 255), fused.apply(PackedImage.pack(0, 0, 255)));
+  }
+
+  @Test
+  public void testDoesntFuseWithOtherOperations() {
+    assertNull(LookupTableOperation.offset(10, 255)
+            .fuse(AffineColorOperation.offset(10, 255, false)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShortTableIsRejected() {
+    new LookupTableOperation(new int[256], new int[255], new int[256]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGammaMustBePositive() {
+    LookupTableOperation.gamma(0, 255);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBlackPointMustBeBelowWhitePoint() {
+    LookupTableOperation.levels(200, 200, 1, 255);
+  }
+}
@@ -0,0 +1,61 @@
+package model;
+
+import static model.TestImages.assertClose;
+import static model.TestImages.randomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for the flipped, transposed and cropped views of a RemappedImage.
+ */
+public class RemappedImageTest {
+
+  @Test
+  public void testFlipsMovePixels() {
+    ImageModel image = randomImage(5, 8, 1);
+    ImageModel horizontal = RemappedImage.horizontalFlip(image);
+    ImageModel vertical = RemappedImage.verticalFlip(image);
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 8; j++) {
+        assertEquals(image.getRGB(i, 7 - j), horizontal.getRGB(i, j));
+        assertEquals(image.getRGB(4 - i, j), vertical.getRGB(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testDoubleFlipIsTheImage() {
+    ImageModel image = randomImage(5, 8, 2);
+    assertClose(image, RemappedImage.horizontalFlip(RemappedImage.horizontalFlip(image)), 0);
+    assertClose(image, RemappedImage.verticalFlip(RemappedImage.verticalFlip(image)), 0);
+    assertClose(image, RemappedImage.transpose(RemappedImage.transpose(image)), 0);
+  }
+
+  @Test
+  public void testViewOfViewPointsAtTheImage() {
+    ImageModel image = randomImage(5, 8, 3);
+    ImageModel both = RemappedImage.verticalFlip(RemappedImage.horizontalFlip(image));
+    assertSame(image, ((DerivedImage) both).getSource());
+    // flipping both ways is turning the image half a turn
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 8; j++) {
+        assertEquals(image.getRGB(4 - i, 7 - j), both.getRGB(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testRegionOfFlippedCrop() {
+    ImageModel image = randomImage(6, 9, 4);
+    ImageModel view = RemappedImage.horizontalFlip(RemappedImage.crop(image, 1, 2, 4, 5));
+    int[] region = new int[6];
+    view.getRegion(1, 1, 2, 3, region);
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        assertEquals(image.getRGB(1 + 1 + i, 2 + 4 - (1 + j)), region[i * 3 + j]);
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Images and checks on images shared by the tests of the model and the controller.
+ */
+public final class TestImages {
+
+  /**
+   * Not meant to be created, only holds static methods.
+   */
+  private TestImages() {
+  }
+
+  /**
+   * Creates an image of random pixels.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param seed where the pixels come from
+   * @return the image
+   */
+  public static PackedImage randomImage(int height, int width, long seed) {
+    Random random = new Random(seed);
+    PackedImage image = new PackedImage(height, width, "random.png");
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        row[j] = random.nextInt(1 << 24);
+      }
+      image.setRow(i, row);
+    }
+    return image;
+  }
+
+  /**
+   * Creates an image with the same color everywhere.
+   *
+   * @param height the height of the image
+   * @param width the width of the image
+   * @param red the red component of every pixel
+   * @param green the green component of every pixel
+   * @param blue the blue component of every pixel
+   * @return the image
+   */
+  public static PackedImage flatImage(int height, int width, int red, int green, int blue) {
+    PackedImage image = new PackedImage(height, width, "flat.png");
+    int[] row = new int[width];
+    Arrays.fill(row, PackedImage.pack(red, green, blue));
+    for (int i = 0; i < height; i++) {
+      image.setRow(i, row);
+    }
+    return image;
+  }
+
+  /**
+   * Checks that two images have the same dimensions and that every component of them is at most
+   * a given distance apart.
+   *
+   * @param expected the expected image
+   * @param actual the actual image
+   * @param tolerance the largest difference allowed, 0 for the same pixels
+   */
+  public static void assertClose(ImageModel expected, ImageModel actual, int tolerance) {
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertEquals(expected.getWidth(), actual.getWidth());
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        int want = expected.getRGB(i, j);
+        int got = actual.getRGB(i, j);
+        String where = "at " + i + ", " + j;
+        assertTrue(where, Math.abs(PackedImage.red(want) - PackedImage.red(got)) <= tolerance);
+        assertTrue(where, Math.abs(PackedImage.green(want) - PackedImage.green(got)) <= tolerance);
+        assertTrue(where, Math.abs(PackedImage.blue(want) - PackedImage.blue(got)) <= tolerance);
+      }
+    }
+  }
+}
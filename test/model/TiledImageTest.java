@@ -0,0 +1,89 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests for which tiles a TiledImage asks its source for.
+ */
+public class TiledImageTest {
+
+  /**
+   * A source that works out each pixel from its position and remembers every region it's asked
+   * for.
+   */
+  private static class CountingSource implements TileSource {
+    private final boolean wholeRows;
+    private final List<String> requests = new ArrayList<>();
+
+    /**
+     * Creates a source.
+     *
+     * @param wholeRows whether the source prefers whole rows of tiles
+     */
+    private CountingSource(boolean wholeRows) {
+      this.wholeRows = wholeRows;
+    }
+
+    @Override
+    public synchronized void computeTile(int row, int col, int height, int width, int[] dest) {
+      this.requests.add(row + " " + col + " " + height + " " + width);
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          dest[i * width + j] = color(row + i, col + j);
+        }
+      }
+    }
+
+    @Override
+    public boolean prefersWholeRows() {
+      return this.wholeRows;
+    }
+  }
+
+  /**
+   * Returns the color a counting source gives a pixel.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @return the packed color
+   */
+  private static int color(int row, int col) {
+    return PackedImage.pack(row % 256, col % 256, (row + col) % 256);
+  }
+
+  @Test
+  public void testOnlyTheTileThatIsReadIsProduced() {
+    CountingSource source = new CountingSource(false);
+    TiledImage image = new TiledImage(1000, 700, "big.png", source, 16, 100);
+    assertEquals(color(250, 420), image.getRGB(250, 420));
+    assertEquals(color(299, 499), image.getRGB(299, 499));
+    assertEquals(List.of("200 400 100 100"), source.requests);
+  }
+
+  @Test
+  public void testWholeRowSourceIsAskedForRowsOfTiles() {
+    CountingSource source = new CountingSource(true);
+    TiledImage image = new TiledImage(1000, 700, "big.png", source, 16, 100);
+    int[] row = new int[700];
+    image.getRow(950, row);
+    assertEquals(color(950, 650), row[650]);
+    assertEquals(color(5, 5), image.getRGB(5, 5));
+    assertEquals(List.of("900 0 100 700", "0 0 100 700"), source.requests);
+  }
+
+  @Test
+  public void testComputedImageOnlyWorksOutTilesThatAreRead() {
+    CountingSource source = new CountingSource(false);
+    TiledImage image = new TiledImage(1000, 700, "big.png", source, 16, 100);
+    ComputedTiledImage inverted = new ComputedTiledImage(image, rgb -> rgb ^ 0xFFFFFF, 16);
+    int[] region = new int[4];
+    inverted.getRegion(640, 10, 2, 2, region);
+    assertEquals(color(641, 11) ^ 0xFFFFFF, region[3]);
+    assertEquals(List.of("600 0 100 100"), source.requests);
+    assertEquals(image, inverted.getSource());
+  }
+}